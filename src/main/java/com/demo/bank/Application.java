@@ -1,11 +1,14 @@
 package com.demo.bank;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.context.annotation.Profile;
 import com.demo.bank.account.controller.CliController;
+import com.demo.bank.account.controller.CliScriptRunner;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.Scanner;
@@ -23,14 +26,28 @@ public class Application {
     static class CliRunner implements CommandLineRunner {
 
         private final CliController cliController;
+        private final ConfigurableApplicationContext context;
+        private final String scriptFile;
+        private final String scriptOutput;
 
         @Autowired
-        public CliRunner(CliController cliController) {
+        public CliRunner(CliController cliController, ConfigurableApplicationContext context,
+                         @Value("${cli.script.file:}") String scriptFile,
+                         @Value("${cli.script.output:}") String scriptOutput) {
             this.cliController = cliController;
+            this.context = context;
+            this.scriptFile = scriptFile;
+            this.scriptOutput = scriptOutput;
         }
 
         @Override
         public void run(String... args) {
+            if (!scriptFile.isBlank()) {
+                // Non-interactive: run the script and exit, with a non-zero status if it could not be run
+                CliScriptRunner.Summary summary = cliController.handleRun(scriptOutput.isBlank()
+                        ? new String[]{"Run", scriptFile} : new String[]{"Run", scriptFile, scriptOutput});
+                System.exit(SpringApplication.exit(context, () -> summary != null ? 0 : 1));
+            }
             Scanner scanner = new Scanner(System.in);
             log.info("Welcome to the Bank Account CLI!");
 
@@ -53,18 +70,30 @@ public class Application {
                         case "NewAccount":
                             cliController.handleNewAccount(parts);
                             break;
+                        case "NewAccounts":
+                            cliController.handleNewAccounts(parts);
+                            break;
                         case "Deposit":
                             cliController.handleDeposit(parts);
                             break;
                         case "Withdraw":
                             cliController.handleWithdraw(parts);
                             break;
+                        case "Transfer":
+                            cliController.handleTransfer(parts);
+                            break;
                         case "Balance":
                             cliController.handleBalance(parts);
                             break;
                         case "Convert":
                             cliController.handleConvert(parts);
                             break;
+                        case "DumpRates":
+                            cliController.handleDumpRates(parts);
+                            break;
+                        case "Run":
+                            cliController.handleRun(parts);
+                            break;
                         default:
                             cliController.handleUnknownCommand();
                     }
@@ -2,8 +2,16 @@ package com.demo.bank.account.controller;
 
 import com.demo.bank.account.service.AccountService;
 import com.demo.bank.account.entity.Account;
+import com.demo.bank.account.entity.AccountBalance;
+import com.demo.bank.account.entity.AccountCacheStats;
 import com.demo.bank.account.entity.Currency;
+import com.demo.bank.account.entity.NewAccountRequest;
+import com.demo.bank.account.entity.TransactionRequest;
+import com.demo.bank.account.entity.TransactionResult;
+import com.demo.bank.account.entity.TransferResult;
 import com.demo.bank.utils.GlobalExceptionHandler;
+import com.demo.bank.utils.Money;
+import com.demo.bank.utils.OptimisticRetryStats;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import org.springframework.web.bind.annotation.*;
@@ -13,9 +21,12 @@ import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.HttpStatus;
 
+import java.util.List;
+
 @Slf4j
 @Tag(name = "Bank Account API", description = "Operations for bank accounts")
 @RestController
@@ -52,14 +63,23 @@ public class AccountController {
         }
     }
 
+    @Operation(summary = "Create many bank accounts at once",
+        description = "All accounts are created in one transaction; the response lists them in request order with their account numbers.")
+    @PostMapping("/accounts/batch")
+    public List<Account> createAccounts(@RequestBody List<NewAccountRequest> accounts) {
+        return accountService.createAccounts(accounts);
+    }
+
     @Operation(summary = "Deposit money into an account")
     @PostMapping("/deposit")
     public ResponseEntity<?> deposit(
         @Parameter(description = "Account number") @RequestParam Long accountId,
-        @Parameter(description = "Amount to deposit") @RequestParam double amount,
+        @Parameter(description = "Amount to deposit, with at most two decimal places", schema = @Schema(type = "number"))
+        @RequestParam String amount,
         @Parameter(description = "Currency of the amount") @RequestParam Currency currency) {
+        long minorAmount = Money.parse(amount);
         try {
-            Account account = accountService.deposit(accountId, amount, currency);
+            Account account = accountService.deposit(accountId, minorAmount, currency);
             return ResponseEntity.ok(account);
         } catch (IllegalArgumentException e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Invalid currency: " + currency);
@@ -70,20 +90,75 @@ public class AccountController {
     @PostMapping("/withdraw")
     public ResponseEntity<?> withdraw(
         @Parameter(description = "Account number") @RequestParam Long accountId,
-        @Parameter(description = "Amount to withdraw") @RequestParam double amount,
+        @Parameter(description = "Amount to withdraw, with at most two decimal places", schema = @Schema(type = "number"))
+        @RequestParam String amount,
         @Parameter(description = "Currency of the amount") @RequestParam Currency currency) {
+        long minorAmount = Money.parse(amount);
         try {
-            Account account = accountService.withdraw(accountId, amount, currency);
+            Account account = accountService.withdraw(accountId, minorAmount, currency);
             return ResponseEntity.ok(account);
         } catch (IllegalArgumentException e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Invalid currency: " + currency);
         }
     }
 
+    @Operation(summary = "Transfer money between two accounts",
+        description = "Debits one account and credits the other in one step. The amount is given in the currency parameter "
+            + "and converted into the currency of each account.")
+    @PostMapping("/transfer")
+    public TransferResult transfer(
+        @Parameter(description = "Account number to debit") @RequestParam Long fromAccountId,
+        @Parameter(description = "Account number to credit") @RequestParam Long toAccountId,
+        @Parameter(description = "Amount to transfer, with at most two decimal places", schema = @Schema(type = "number"))
+        @RequestParam String amount,
+        @Parameter(description = "Currency of the amount") @RequestParam Currency currency) {
+        return accountService.transfer(fromAccountId, toAccountId, Money.parse(amount), currency);
+    }
+
+    @Operation(summary = "Apply a batch of deposits and withdrawals",
+        description = "All items are applied in one transaction, in request order per account. "
+            + "The response has one result per item, in request order; a rejected item does not affect the others.")
+    @PostMapping("/transactions/batch")
+    public List<TransactionResult> applyTransactions(@RequestBody List<TransactionRequest> transactions) {
+        return accountService.applyTransactions(transactions);
+    }
+
+    @Operation(summary = "Get optimistic locking retry statistics",
+        description = "Conflicts, retries and give-ups of deposits and withdrawals in optimistic update mode")
+    @GetMapping("/stats/optimistic-retry")
+    public OptimisticRetryStats optimisticRetryStats() {
+        return accountService.getOptimisticRetryStats();
+    }
+
+    @Operation(summary = "Get account cache statistics",
+        description = "Hits, misses and evictions of the account lookups served by the read-through account cache")
+    @GetMapping("/stats/account-cache")
+    public AccountCacheStats accountCacheStats() {
+        return accountService.getAccountCacheStats();
+    }
+
     @Operation(summary = "Get account balance and details")
     @GetMapping("/balance")
     public Account getBalance(
         @Parameter(description = "Account number") @RequestParam Long accountId) {
         return accountService.getAccountById(accountId);
     }
+
+    @Operation(summary = "Get account balance only",
+        description = "Id, balance and currency of the account. The ETag changes with every balance change: "
+            + "a request with the last ETag in If-None-Match gets 304 Not Modified while the balance is unchanged")
+    @ApiResponses({
+        @ApiResponse(responseCode = "200", description = "Current balance"),
+        @ApiResponse(responseCode = "304", description = "Balance unchanged since the ETag in If-None-Match", content = @Content)
+    })
+    @GetMapping("/balance/summary")
+    public ResponseEntity<AccountBalance> getBalanceSummary(
+        @Parameter(description = "Account number") @RequestParam Long accountId) {
+        AccountBalance balance = accountService.getAccountBalance(accountId);
+        // A GET answered with a matching ETag is turned into 304 without a body by Spring MVC
+        return ResponseEntity.ok()
+            .eTag(Long.toString(balance.getVersion()))
+            .cacheControl(CacheControl.noCache())
+            .body(balance);
+    }
 }
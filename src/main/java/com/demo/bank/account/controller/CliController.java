@@ -3,22 +3,45 @@ package com.demo.bank.account.controller;
 import com.demo.bank.account.service.AccountService;
 import com.demo.bank.account.entity.Account;
 import com.demo.bank.account.entity.Currency;
+import com.demo.bank.account.entity.NewAccountRequest;
+import com.demo.bank.account.entity.TransferResult;
+import com.demo.bank.conversion.entity.RateQuote;
+import com.demo.bank.conversion.entity.RateSnapshot;
 import com.demo.bank.conversion.service.CurrencyConversionService;
+import com.demo.bank.utils.Money;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
 @Slf4j
 @Component
 public class CliController {
+    // Accounts created per transaction when opening accounts from a file
+    private static final int NEW_ACCOUNTS_CHUNK = 1000;
 
     private final AccountService accountService;
     private final CurrencyConversionService currencyConversionService;
+    private final CliScriptRunner scriptRunner;
 
     @Autowired
-    public CliController(AccountService accountService, CurrencyConversionService currencyConversionService) {
+    public CliController(AccountService accountService, CurrencyConversionService currencyConversionService,
+                         CliScriptRunner scriptRunner) {
         this.accountService = accountService;
         this.currencyConversionService = currencyConversionService;
+        this.scriptRunner = scriptRunner;
     }
 
     public void handleNewAccount(String[] parts) {
@@ -40,16 +63,75 @@ public class CliController {
         log.info("Account created. Account number: {}, Currency: {}", newAcc.getId(), newAcc.getCurrency());
     }
 
+    /**
+     * Opens one account per line of the file, each line in the NewAccount format: [First Name] [Last Name] [Currency].
+     * Invalid lines are reported and skipped.
+     */
+    public void handleNewAccounts(String[] parts) {
+        if (parts.length != 2) {
+            log.info("Usage: NewAccounts [File]");
+            return;
+        }
+        Path file = Path.of(parts[1]);
+        List<Account> created = new ArrayList<>();
+        int skipped = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file)) {
+            List<NewAccountRequest> chunk = new ArrayList<>(NEW_ACCOUNTS_CHUNK);
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                String[] fields = line.trim().split("\\s+");
+                Currency currency = fields.length == 3 ? parseCurrency(fields[2]) : null;
+                if (currency == null) {
+                    log.warn("Line {} skipped: expected [First Name] [Last Name] [Currency]", lineNumber);
+                    skipped++;
+                    continue;
+                }
+                chunk.add(new NewAccountRequest(fields[0], fields[1], currency));
+                if (chunk.size() == NEW_ACCOUNTS_CHUNK) {
+                    created.addAll(accountService.createAccounts(chunk));
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                created.addAll(accountService.createAccounts(chunk));
+            }
+        } catch (NoSuchFileException e) {
+            log.error("File not found: {}", file.toAbsolutePath());
+            return;
+        } catch (Exception e) {
+            log.error("Account creation failed after {} accounts: {}", created.size(), e.getMessage());
+            return;
+        }
+        if (created.isEmpty()) {
+            log.info("No accounts created. Skipped lines: {}", skipped);
+        } else {
+            log.info("{} accounts created. Account numbers: {} to {}, Skipped lines: {}", created.size(),
+                    created.get(0).getId(), created.get(created.size() - 1).getId(), skipped);
+        }
+    }
+
+    private static Currency parseCurrency(String code) {
+        try {
+            return Currency.valueOf(code.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
     public void handleDeposit(String[] parts) {
         if (parts.length != 4) {
             log.info("Usage: Deposit [Amount] [Currency] [Account number]");
             return;
         }
-        String depositAmountStr = parts[1].replace(',', '.');
-        double depositAmount;
+        long depositAmount;
         try {
-            depositAmount = Double.parseDouble(depositAmountStr);
-        } catch (NumberFormatException e) {
+            depositAmount = Money.parse(parts[1]);
+        } catch (IllegalArgumentException e) {
             log.warn("Invalid deposit amount");
             return;
         }
@@ -70,7 +152,7 @@ public class CliController {
         }
         try {
             Account acc = accountService.deposit(accountId, depositAmount, currencyEnum);
-            log.info("Deposit successful. Account: {}, New balance: {} {}", acc.getFullName(), acc.getBalance(), acc.getCurrency());
+            log.info("Deposit successful. Account: {}, New balance: {} {}", acc.getFullName(), Money.format(acc.getBalance()), acc.getCurrency());
         } catch (Exception e) {
             log.warn("Deposit failed: {}", e.getMessage());
         }
@@ -81,11 +163,10 @@ public class CliController {
             log.info("Usage: Withdraw [Amount] [Currency] [Account number]");
             return;
         }
-        String withdrawAmountStr = parts[1].replace(',', '.');
-        double withdrawAmount;
+        long withdrawAmount;
         try {
-            withdrawAmount = Double.parseDouble(withdrawAmountStr);
-        } catch (NumberFormatException e) {
+            withdrawAmount = Money.parse(parts[1]);
+        } catch (IllegalArgumentException e) {
             log.warn("Invalid withdraw amount");
             return;
         }
@@ -106,12 +187,49 @@ public class CliController {
         }
         try {
             Account acc = accountService.withdraw(accountId, withdrawAmount, currencyEnum);
-            log.info("Withdraw successful. Account: {}, New balance: {} {}", acc.getFullName(), acc.getBalance(), acc.getCurrency());
+            log.info("Withdraw successful. Account: {}, New balance: {} {}", acc.getFullName(), Money.format(acc.getBalance()), acc.getCurrency());
         } catch (Exception e) {
             log.warn("Withdraw failed: {}", e.getMessage());
         }
     }
 
+    public void handleTransfer(String[] parts) {
+        if (parts.length != 5) {
+            log.info("Usage: Transfer [Amount] [Currency] [From account number] [To account number]");
+            return;
+        }
+        long amount;
+        try {
+            amount = Money.parse(parts[1]);
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid transfer amount");
+            return;
+        }
+        Currency currency = parseCurrency(parts[2]);
+        if (currency == null) {
+            log.warn("Invalid currency. Allowed: USD, EUR, RON");
+            return;
+        }
+        long fromAccountId;
+        long toAccountId;
+        try {
+            fromAccountId = Long.parseLong(parts[3]);
+            toAccountId = Long.parseLong(parts[4]);
+        } catch (NumberFormatException e) {
+            log.warn("Invalid account number");
+            return;
+        }
+        try {
+            TransferResult result = accountService.transfer(fromAccountId, toAccountId, amount, currency);
+            log.info("Transfer successful. {} {} from {} (new balance: {} {}) to {} (new balance: {} {})",
+                    Money.format(amount), currency,
+                    result.getFromAccount().getFullName(), Money.format(result.getFromAccount().getBalance()), result.getFromAccount().getCurrency(),
+                    result.getToAccount().getFullName(), Money.format(result.getToAccount().getBalance()), result.getToAccount().getCurrency());
+        } catch (Exception e) {
+            log.warn("Transfer failed: {}", e.getMessage());
+        }
+    }
+
     public void handleBalance(String[] parts) {
         if (parts.length != 2) {
             log.info("Usage: Balance [Account number]");
@@ -122,7 +240,7 @@ public class CliController {
         Account balAcc = accountService.getAccountById(balanceId);
         if (balAcc != null) {
             log.info("Account holder: {}, Balance: {} {}",
-                       balAcc.getFullName(), balAcc.getBalance(), balAcc.getCurrency());
+                       balAcc.getFullName(), Money.format(balAcc.getBalance()), balAcc.getCurrency());
         } else {
             log.error("Account not found.");
         }
@@ -134,12 +252,11 @@ public class CliController {
             return;
         }
 
-        String convertAmountStr = parts[1].replace(',', '.');
-        double convertAmount;
+        long convertAmount;
         try {
-            convertAmount = Double.parseDouble(convertAmountStr);
-        } catch (NumberFormatException e) {
-            log.error("Invalid amount format. Use e.g. 5.0 or 5,0");
+            convertAmount = Money.parse(parts[1]);
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid amount format. Use e.g. 5.0 or 5,0, at most two decimal places");
             return;
         }
 
@@ -151,16 +268,80 @@ public class CliController {
         String fromCurrency = parts[2].toUpperCase();
         String toCurrency = parts[3].toUpperCase();
         try {
-            double rate = currencyConversionService.convert(Currency.valueOf(fromCurrency), Currency.valueOf(toCurrency), 1.0);
-            double converted = currencyConversionService.convert(Currency.valueOf(fromCurrency), Currency.valueOf(toCurrency), convertAmount);
-            log.info("{} {} = {} {} (Rate: {})",
-                       convertAmount, fromCurrency, converted, toCurrency, rate);
+            // One rate lookup, so the amount is converted at exactly the rate shown
+            RateQuote quote = currencyConversionService.quote(Currency.valueOf(fromCurrency), Currency.valueOf(toCurrency), convertAmount);
+            log.info("{} {} = {} {} (Rate: {}, {}{})",
+                       Money.format(convertAmount), fromCurrency, Money.format(quote.getConvertedAmount()), toCurrency,
+                       Money.formatRate(quote.getRate()), quote.getSource(), quote.getRateDate() != null ? " of " + quote.getRateDate() : "");
         } catch (Exception e) {
             log.error("Conversion failed: {}", e.getMessage());
         }
     }
 
+    public void handleDumpRates(String[] parts) {
+        if (parts.length != 2) {
+            log.info("Usage: DumpRates [File]");
+            return;
+        }
+        Path file = Path.of(parts[1]);
+        try {
+            RateSnapshot snapshot = currencyConversionService.dumpRates(file);
+            log.info("Rates of {} written to {}", snapshot.getDate(), file.toAbsolutePath());
+        } catch (Exception e) {
+            log.error("Dump failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Runs a command file, or standard input for {@code -}, in script mode (see {@link CliScriptRunner}), writing the
+     * results to the output file if one is given and to standard output otherwise.
+     *
+     * @return the summary of the run, or null if the commands could not be read or the results written
+     */
+    public CliScriptRunner.Summary handleRun(String[] parts) {
+        if (parts.length != 2 && parts.length != 3) {
+            log.info("Usage: Run [File, or - for standard input] [Output file]");
+            return null;
+        }
+        Path file = parts[1].equals("-") ? null : Path.of(parts[1]);
+        Path outputFile = parts.length == 3 ? Path.of(parts[2]) : null;
+        CliScriptRunner.Summary summary;
+        try {
+            summary = runScript(file, outputFile);
+        } catch (NoSuchFileException e) {
+            log.error("File not found: {}", e.getFile());
+            return null;
+        } catch (Exception e) {
+            log.error("Script failed: {}", e.getMessage());
+            return null;
+        }
+        log.info("Script finished: {} commands in {} ms ({} commands/s). Succeeded: {}, Failed: {}, Invalid: {}",
+                summary.getCommands(), summary.getElapsed().toMillis(), Math.round(summary.getCommandsPerSecond()),
+                summary.getSucceeded(), summary.getFailed(), summary.getInvalid());
+        return summary;
+    }
+
+    private CliScriptRunner.Summary runScript(Path file, Path outputFile) throws IOException {
+        if (file == null) {
+            // Standard input is not closed: the interactive loop may still read from it
+            return runScript(new InputStreamReader(System.in, StandardCharsets.UTF_8), outputFile);
+        }
+        try (Reader input = Files.newBufferedReader(file)) {
+            return runScript(input, outputFile);
+        }
+    }
+
+    private CliScriptRunner.Summary runScript(Reader input, Path outputFile) throws IOException {
+        if (outputFile == null) {
+            // Flushed by the runner, and left open for the log
+            return scriptRunner.run(input, new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        }
+        try (Writer output = Files.newBufferedWriter(outputFile)) {
+            return scriptRunner.run(input, output);
+        }
+    }
+
     public void handleUnknownCommand() {
-        log.info("Unknown command. Valid commands: NewAccount, Deposit, Withdraw, Balance, Convert, Quit");
+        log.info("Unknown command. Valid commands: NewAccount, NewAccounts, Deposit, Withdraw, Transfer, Balance, Convert, DumpRates, Run, Quit");
     }
 }
@@ -0,0 +1,336 @@
+package com.demo.bank.account.controller;
+
+import com.demo.bank.account.entity.Account;
+import com.demo.bank.account.entity.Currency;
+import com.demo.bank.account.entity.TransferResult;
+import com.demo.bank.account.service.AccountService;
+import com.demo.bank.utils.Money;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import lombok.Getter;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Non-interactive CLI: replays a stream of commands, one per line, as fast as the database allows.
+ * <p>
+ * Lines are read through a large buffer and split on spaces and tabs without regular expressions. Deposit, Withdraw
+ * and Balance are queued by account number to a fixed set of lanes, each running its commands one at a time in
+ * stream order: the commands of one account keep their order, the commands of different accounts run in parallel.
+ * Transfer and NewAccount involve more than one lane, so they wait for every queued command to finish and run
+ * alone. Blank lines and lines starting with {@code #} are skipped.
+ * <p>
+ * Every command produces one tab-separated result line, {@code <line number> OK|FAILED|INVALID <detail>}, written
+ * through a buffered writer. Results of different accounts can come out in any order relative to each other.
+ */
+@Component
+public class CliScriptRunner {
+    private static final int BUFFER_SIZE = 1 << 16;
+    // Commands waiting per lane before the reader blocks
+    private static final int LANE_QUEUE_SIZE = 1024;
+    // The longest command, Transfer, has five fields: one more is enough to tell a line has too many
+    private static final int MAX_FIELDS = 6;
+
+    private final AccountService accountService;
+    private final int parallelism;
+
+    @Autowired
+    public CliScriptRunner(AccountService accountService, @Value("${cli.script.parallelism:8}") int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Script parallelism must be positive");
+        }
+        this.accountService = accountService;
+        this.parallelism = parallelism;
+    }
+
+    @Getter
+    public static class Summary {
+        private final long commands;
+        private final long succeeded;
+        private final long failed;
+        // Lines that could not be parsed into a command
+        private final long invalid;
+        private final Duration elapsed;
+
+        Summary(long succeeded, long failed, long invalid, Duration elapsed) {
+            this.commands = succeeded + failed + invalid;
+            this.succeeded = succeeded;
+            this.failed = failed;
+            this.invalid = invalid;
+            this.elapsed = elapsed;
+        }
+
+        public double getCommandsPerSecond() {
+            long nanos = elapsed.toNanos();
+            return nanos == 0 ? 0.0 : commands * 1e9 / nanos;
+        }
+    }
+
+    /**
+     * Runs every command of the input and flushes the results to the output; neither is closed.
+     */
+    public Summary run(Reader input, Writer output) throws IOException {
+        BufferedReader reader = input instanceof BufferedReader buffered ? buffered : new BufferedReader(input, BUFFER_SIZE);
+        Execution execution = new Execution(output instanceof BufferedWriter buffered ? buffered : new BufferedWriter(output, BUFFER_SIZE));
+        long start = System.nanoTime();
+        try {
+            String[] fields = new String[MAX_FIELDS];
+            String line;
+            long lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                int count = split(line, fields);
+                if (count > 0 && fields[0].charAt(0) != '#') {
+                    execution.submit(lineNumber, fields, count);
+                }
+            }
+        } catch (Throwable e) {
+            // Still wait for the queued commands and stop the lanes, without hiding why reading stopped
+            try {
+                execution.finish();
+            } catch (IOException | RuntimeException finishFailure) {
+                e.addSuppressed(finishFailure);
+            }
+            throw e;
+        }
+        execution.finish();
+        return execution.summary(Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    /**
+     * Splits the line on runs of spaces and tabs. Stops once the array is full, so a count equal to its length
+     * means there may be more fields.
+     *
+     * @return the number of fields stored
+     */
+    static int split(String line, String[] fields) {
+        int count = 0;
+        int length = line.length();
+        int i = 0;
+        while (i < length && count < fields.length) {
+            while (i < length && isSeparator(line.charAt(i))) {
+                i++;
+            }
+            if (i == length) {
+                break;
+            }
+            int start = i;
+            while (i < length && !isSeparator(line.charAt(i))) {
+                i++;
+            }
+            fields[count++] = line.substring(start, i);
+        }
+        return count;
+    }
+
+    private static boolean isSeparator(char c) {
+        return c == ' ' || c == '\t';
+    }
+
+    private static Currency currency(String code) {
+        try {
+            return Currency.valueOf(code.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid currency: " + code);
+        }
+    }
+
+    private static long accountNumber(String text) {
+        try {
+            return Long.parseLong(text);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid account number: " + text);
+        }
+    }
+
+    private static String balance(Account account) {
+        return account.getId() + "\t" + Money.format(account.getBalance()) + " " + account.getCurrency();
+    }
+
+    // State of one run: the lanes, the shared writer and the counters
+    private final class Execution {
+        private final Lane[] lanes = new Lane[parallelism];
+        private final BufferedWriter writer;
+        private final ReentrantLock writeLock = new ReentrantLock();
+        private final AtomicReference<IOException> writeFailure = new AtomicReference<>();
+        private final LongAdder succeeded = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder invalid = new LongAdder();
+
+        Execution(BufferedWriter writer) {
+            this.writer = writer;
+            for (int i = 0; i < lanes.length; i++) {
+                lanes[i] = new Lane();
+                Thread thread = new Thread(lanes[i], "cli-script-" + i);
+                thread.setDaemon(true);
+                thread.start();
+            }
+        }
+
+        void submit(long line, String[] fields, int count) {
+            String command = fields[0];
+            try {
+                switch (command) {
+                    case "Deposit", "Withdraw" -> {
+                        expectFields(count, 4, command + " [Amount] [Currency] [Account number]");
+                        long amount = Money.parse(fields[1]);
+                        Currency currency = currency(fields[2]);
+                        long accountId = accountNumber(fields[3]);
+                        boolean deposit = command.equals("Deposit");
+                        toLane(accountId, line, () -> balance(deposit
+                                ? accountService.deposit(accountId, amount, currency)
+                                : accountService.withdraw(accountId, amount, currency)));
+                    }
+                    case "Balance" -> {
+                        expectFields(count, 2, "Balance [Account number]");
+                        long accountId = accountNumber(fields[1]);
+                        toLane(accountId, line, () -> {
+                            Account account = accountService.getAccountById(accountId);
+                            if (account == null) {
+                                throw new IllegalArgumentException("Account not found");
+                            }
+                            return balance(account);
+                        });
+                    }
+                    case "Transfer" -> {
+                        expectFields(count, 5, "Transfer [Amount] [Currency] [From account number] [To account number]");
+                        long amount = Money.parse(fields[1]);
+                        Currency currency = currency(fields[2]);
+                        long fromAccountId = accountNumber(fields[3]);
+                        long toAccountId = accountNumber(fields[4]);
+                        alone(line, () -> {
+                            TransferResult result = accountService.transfer(fromAccountId, toAccountId, amount, currency);
+                            return balance(result.getFromAccount()) + "\t" + balance(result.getToAccount());
+                        });
+                    }
+                    case "NewAccount" -> {
+                        expectFields(count, 4, "NewAccount [First Name] [Last Name] [Currency]");
+                        String firstName = fields[1];
+                        String lastName = fields[2];
+                        Currency currency = currency(fields[3]);
+                        alone(line, () -> balance(accountService.createAccount(firstName, lastName, currency)));
+                    }
+                    default -> throw new IllegalArgumentException("Unsupported command: " + command
+                            + ". Scripts can run NewAccount, Deposit, Withdraw, Transfer and Balance");
+                }
+            } catch (IllegalArgumentException e) {
+                invalid.increment();
+                write(line + "\tINVALID\t" + e.getMessage());
+            }
+        }
+
+        private void expectFields(int count, int expected, String usage) {
+            if (count != expected) {
+                throw new IllegalArgumentException("Usage: " + usage);
+            }
+        }
+
+        private void toLane(long accountId, long line, Supplier<String> operation) {
+            lanes[(int) Math.floorMod(accountId, (long) lanes.length)].put(() -> execute(line, operation));
+        }
+
+        // Runs on the reading thread once every lane is idle, so it is ordered after everything read before it
+        private void alone(long line, Supplier<String> operation) {
+            awaitLanes();
+            execute(line, operation);
+        }
+
+        private void execute(long line, Supplier<String> operation) {
+            String result;
+            try {
+                result = line + "\tOK\t" + operation.get();
+                succeeded.increment();
+            } catch (RuntimeException e) {
+                result = line + "\tFAILED\t" + e.getMessage();
+                failed.increment();
+            } catch (Error e) {
+                // Must not end the lane thread either: whatever was queued behind it, and awaitLanes, would wait forever
+                result = line + "\tFAILED\t" + e;
+                failed.increment();
+            }
+            write(result);
+        }
+
+        private void write(String result) {
+            writeLock.lock();
+            try {
+                writer.write(result);
+                writer.newLine();
+            } catch (IOException e) {
+                writeFailure.compareAndSet(null, e);
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        private void awaitLanes() {
+            CountDownLatch idle = new CountDownLatch(lanes.length);
+            for (Lane lane : lanes) {
+                lane.put(idle::countDown);
+            }
+            try {
+                idle.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the script commands");
+            }
+        }
+
+        void finish() throws IOException {
+            try {
+                awaitLanes();
+            } finally {
+                for (Lane lane : lanes) {
+                    lane.put(Lane.STOP);
+                }
+            }
+            writer.flush();
+            if (writeFailure.get() != null) {
+                throw writeFailure.get();
+            }
+        }
+
+        Summary summary(Duration elapsed) {
+            return new Summary(succeeded.sum(), failed.sum(), invalid.sum(), elapsed);
+        }
+    }
+
+    private static final class Lane implements Runnable {
+        private static final Runnable STOP = () -> { };
+
+        private final BlockingQueue<Runnable> queue = new ArrayBlockingQueue<>(LANE_QUEUE_SIZE);
+
+        void put(Runnable task) {
+            try {
+                queue.put(task);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while queueing a script command");
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (Runnable task = queue.take(); task != STOP; task = queue.take()) {
+                    task.run();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -1,9 +1,13 @@
 package com.demo.bank.account.entity;
 
+import com.demo.bank.utils.MoneyJson;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Version;
 import jakarta.persistence.Enumerated;
 import jakarta.persistence.EnumType;
 import lombok.Getter;
@@ -11,14 +15,21 @@ import lombok.Getter;
 @Getter
 @Entity
 public class Account {
+    // Pooled sequence: ids are reserved in blocks, so new accounts can be inserted in JDBC batches
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "account_seq")
+    @SequenceGenerator(name = "account_seq", sequenceName = "account_seq", allocationSize = 50)
     private Long id;
     private String firstName;
     private String lastName;
-    private double balance;
+    // In minor units of the account currency, see Money
+    @JsonSerialize(using = MoneyJson.AmountSerializer.class)
+    private long balance;
     @Enumerated(EnumType.STRING)
     private Currency currency;
+    // Optimistic locking: an update based on a stale read fails instead of overwriting a newer balance
+    @Version
+    private long version;
 
     public Account() {}
 
@@ -26,20 +37,40 @@ public class Account {
         this.firstName = firstName;
         this.lastName = lastName;
         this.currency = currency;
-        this.balance = 0.0;
+        this.balance = 0;
+    }
+
+    // Account restored from outside of the database, with its id
+    public Account(Long id, String firstName, String lastName, Currency currency, long balance, long version) {
+        this.id = id;
+        this.firstName = firstName;
+        this.lastName = lastName;
+        this.currency = currency;
+        this.balance = balance;
+        this.version = version;
+    }
+
+    // Copy of the account at another balance and version, for balances kept outside of the persistence context
+    public Account(Account account, long balance, long version) {
+        this.id = account.id;
+        this.firstName = account.firstName;
+        this.lastName = account.lastName;
+        this.currency = account.currency;
+        this.balance = balance;
+        this.version = version;
     }
 
     public String getFullName() {
         return firstName + " " + lastName;
     }
 
-    public void deposit(double amount) {
+    public void deposit(long amount) {
         if (amount > 0) {
-            balance += amount;
+            balance = Math.addExact(balance, amount);
         }
     }
 
-    public boolean withdraw(double amount) {
+    public boolean withdraw(long amount) {
         if (amount > 0 && amount <= balance) {
             balance -= amount;
             return true;
@@ -0,0 +1,31 @@
+package com.demo.bank.account.entity;
+
+import com.demo.bank.utils.MoneyJson;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import lombok.Getter;
+
+/**
+ * Balance of an account without the rest of it, read straight into this object rather than through a managed entity.
+ */
+@Getter
+public class AccountBalance {
+    private final Long id;
+    @JsonSerialize(using = MoneyJson.AmountSerializer.class)
+    private final long balance;
+    private final Currency currency;
+    // Changes with every balance change: sent as the ETag rather than in the body
+    @JsonIgnore
+    private final long version;
+
+    public AccountBalance(Long id, long balance, Currency currency, long version) {
+        this.id = id;
+        this.balance = balance;
+        this.currency = currency;
+        this.version = version;
+    }
+
+    public static AccountBalance of(Account account) {
+        return new AccountBalance(account.getId(), account.getBalance(), account.getCurrency(), account.getVersion());
+    }
+}
@@ -0,0 +1,26 @@
+package com.demo.bank.account.entity;
+
+import lombok.Getter;
+
+@Getter
+public class AccountCacheStats {
+    private final long hits;
+    private final long misses;
+    // Accounts dropped to make room for others
+    private final long evictions;
+    private final long size;
+    private final long maxSize;
+
+    public AccountCacheStats(long hits, long misses, long evictions, long size, long maxSize) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.size = size;
+        this.maxSize = maxSize;
+    }
+
+    public double getHitRatio() {
+        long total = hits + misses;
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+}
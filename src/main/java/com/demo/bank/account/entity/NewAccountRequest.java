@@ -0,0 +1,23 @@
+package com.demo.bank.account.entity;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * One account of a bulk account opening.
+ */
+@Getter
+@Setter
+public class NewAccountRequest {
+    private String firstName;
+    private String lastName;
+    private Currency currency;
+
+    public NewAccountRequest() {}
+
+    public NewAccountRequest(String firstName, String lastName, Currency currency) {
+        this.firstName = firstName;
+        this.lastName = lastName;
+        this.currency = currency;
+    }
+}
@@ -0,0 +1,31 @@
+package com.demo.bank.account.entity;
+
+import com.demo.bank.utils.MoneyJson;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * One deposit or withdrawal of a transaction batch.
+ */
+@Getter
+@Setter
+public class TransactionRequest {
+    private Long accountId;
+    private TransactionType type;
+    // In minor units, given as a decimal number in JSON
+    @JsonSerialize(using = MoneyJson.AmountSerializer.class)
+    @JsonDeserialize(using = MoneyJson.AmountDeserializer.class)
+    private long amount;
+    private Currency currency;
+
+    public TransactionRequest() {}
+
+    public TransactionRequest(Long accountId, TransactionType type, long amount, Currency currency) {
+        this.accountId = accountId;
+        this.type = type;
+        this.amount = amount;
+        this.currency = currency;
+    }
+}
@@ -0,0 +1,36 @@
+package com.demo.bank.account.entity;
+
+import com.demo.bank.utils.MoneyJson;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import lombok.Getter;
+
+/**
+ * Outcome of one item of a transaction batch: the account balance after it was applied, or why it was rejected.
+ */
+@Getter
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TransactionResult {
+    private final Long accountId;
+    private final TransactionType type;
+    private final boolean success;
+    @JsonSerialize(using = MoneyJson.AmountSerializer.class)
+    private final Long balance;
+    private final String error;
+
+    private TransactionResult(Long accountId, TransactionType type, boolean success, Long balance, String error) {
+        this.accountId = accountId;
+        this.type = type;
+        this.success = success;
+        this.balance = balance;
+        this.error = error;
+    }
+
+    public static TransactionResult applied(TransactionRequest request, long balance) {
+        return new TransactionResult(request.getAccountId(), request.getType(), true, balance, null);
+    }
+
+    public static TransactionResult rejected(TransactionRequest request, String error) {
+        return new TransactionResult(request.getAccountId(), request.getType(), false, null, error);
+    }
+}
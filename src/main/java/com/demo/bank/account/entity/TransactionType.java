@@ -0,0 +1,6 @@
+package com.demo.bank.account.entity;
+
+public enum TransactionType {
+    DEPOSIT,
+    WITHDRAW;
+}
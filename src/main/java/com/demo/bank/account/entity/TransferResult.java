@@ -0,0 +1,25 @@
+package com.demo.bank.account.entity;
+
+import com.demo.bank.utils.MoneyJson;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import lombok.Getter;
+
+/**
+ * Outcome of a transfer: both accounts after it, and the amount that left and reached each one in its own currency.
+ */
+@Getter
+public class TransferResult {
+    private final Account fromAccount;
+    private final Account toAccount;
+    @JsonSerialize(using = MoneyJson.AmountSerializer.class)
+    private final long debitedAmount;
+    @JsonSerialize(using = MoneyJson.AmountSerializer.class)
+    private final long creditedAmount;
+
+    public TransferResult(Account fromAccount, Account toAccount, long debitedAmount, long creditedAmount) {
+        this.fromAccount = fromAccount;
+        this.toAccount = toAccount;
+        this.debitedAmount = debitedAmount;
+        this.creditedAmount = creditedAmount;
+    }
+}
@@ -1,9 +1,55 @@
 package com.demo.bank.account.repository;
 
 import com.demo.bank.account.entity.Account;
+import com.demo.bank.account.entity.AccountBalance;
+import com.demo.bank.account.entity.Currency;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+
+import java.util.Optional;
 
 public interface AccountRepository extends JpaRepository<Account, Long> {
-    // No custom methods needed
-}
+    /*
+     * Atomic balance updates: the change is applied by the database in one conditional UPDATE, and the
+     * updated row is read back in the same statement through H2's data change delta table
+     * (the equivalent of UPDATE ... RETURNING). Both only match an account holding the given currency,
+     * so a caller can try the update before knowing the account currency. The version is incremented
+     * like Hibernate does, so optimistic writers based on an earlier read still detect the change.
+     * Amounts are in minor units, like the balance column.
+     */
+
+    /**
+     * @return the account after the deposit, or empty if there is no account with that id and currency
+     */
+    @Transactional
+    @Query(value = "SELECT * FROM FINAL TABLE (UPDATE account SET balance = balance + :amount, version = version + 1 "
+            + "WHERE id = :id AND currency = :currency)", nativeQuery = true)
+    Optional<Account> depositAndGet(@Param("id") Long id, @Param("amount") long amount, @Param("currency") String currency);
 
+    /**
+     * @return the account after the withdrawal, or empty if there is no account with that id and currency,
+     * or its balance is lower than the amount
+     */
+    @Transactional
+    @Query(value = "SELECT * FROM FINAL TABLE (UPDATE account SET balance = balance - :amount, version = version + 1 "
+            + "WHERE id = :id AND currency = :currency AND balance >= :amount)", nativeQuery = true)
+    Optional<Account> withdrawAndGet(@Param("id") Long id, @Param("amount") long amount, @Param("currency") String currency);
+
+    @Query("select a.currency from Account a where a.id = :id")
+    Optional<Currency> findCurrencyById(@Param("id") Long id);
+
+    /**
+     * Reads the balance columns only, into a plain object: no entity is hydrated or tracked by the persistence
+     * context, and the read-only transaction and hint skip the flush and dirty checking around the query.
+     */
+    @Transactional(readOnly = true)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    @Query("select new com.demo.bank.account.entity.AccountBalance(a.id, a.balance, a.currency, a.version) "
+            + "from Account a where a.id = :id")
+    Optional<AccountBalance> findBalanceById(@Param("id") Long id);
+}
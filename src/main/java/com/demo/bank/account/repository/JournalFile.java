@@ -0,0 +1,214 @@
+package com.demo.bank.account.repository;
+
+import com.demo.bank.account.entity.Account;
+import com.demo.bank.account.entity.Currency;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Binary formats of the transaction journal (big-endian).
+ * <p>
+ * A segment holds records back to back, each one the image of an account after a change:
+ * <pre>
+ * int    payload length (0 marks the end of the written part of the segment)
+ * int    CRC32 of the payload
+ * byte   record type
+ * long   sequence number
+ * long   account id
+ * long   account version
+ * long   balance in minor units
+ * 3B     currency code (ASCII)
+ * short  length, then UTF-8 bytes of the first name; the same for the last name
+ * </pre>
+ * A snapshot holds the image of every account:
+ * <pre>
+ * int   magic "SNAP"
+ * short format version
+ * long  sequence number of the last journal record it includes
+ * int   number of accounts
+ * records, in the segment format
+ * </pre>
+ */
+final class JournalFile {
+    static final int RECORD_HEADER_SIZE = 4 + 4;
+    private static final byte ACCOUNT_IMAGE = 2;
+    private static final int SNAPSHOT_MAGIC = 0x534E4150;
+    private static final short SNAPSHOT_VERSION = 1;
+    private static final int CODE_LENGTH = 3;
+    private static final int MAX_NAME_LENGTH = 0xFFFF;
+
+    private JournalFile() {
+    }
+
+    record Entry(long sequence, Account account) {
+    }
+
+    record Snapshot(long sequence, List<Account> accounts) {
+    }
+
+    static byte[] encode(long sequence, Account account) {
+        byte[] firstName = name(account.getFirstName());
+        byte[] lastName = name(account.getLastName());
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 8 + 8 + 8 + 8 + CODE_LENGTH + 2 + firstName.length + 2 + lastName.length);
+        buffer.put(ACCOUNT_IMAGE);
+        buffer.putLong(sequence);
+        buffer.putLong(account.getId());
+        buffer.putLong(account.getVersion());
+        buffer.putLong(account.getBalance());
+        buffer.put(account.getCurrency().name().getBytes(StandardCharsets.US_ASCII));
+        buffer.putShort((short) firstName.length);
+        buffer.put(firstName);
+        buffer.putShort((short) lastName.length);
+        buffer.put(lastName);
+        return buffer.array();
+    }
+
+    static Entry decode(ByteBuffer payload) {
+        byte type = payload.get();
+        if (type != ACCOUNT_IMAGE) {
+            throw new IllegalArgumentException("Unknown journal record type: " + type);
+        }
+        long sequence = payload.getLong();
+        long id = payload.getLong();
+        long version = payload.getLong();
+        long balance = payload.getLong();
+        byte[] code = new byte[CODE_LENGTH];
+        payload.get(code);
+        Currency currency = Currency.valueOf(new String(code, StandardCharsets.US_ASCII));
+        String firstName = readName(payload);
+        String lastName = readName(payload);
+        return new Entry(sequence, new Account(id, firstName, lastName, currency, balance, version));
+    }
+
+    /**
+     * @return the number of bytes a record with this payload takes in a segment
+     */
+    static int recordSize(byte[] payload) {
+        return RECORD_HEADER_SIZE + payload.length;
+    }
+
+    static void writeRecord(ByteBuffer buffer, byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        int start = buffer.position();
+        // The length goes in last, so a reader never takes a partly written record for a complete one
+        buffer.position(start + 4);
+        buffer.putInt((int) crc.getValue());
+        buffer.put(payload);
+        buffer.putInt(start, payload.length);
+    }
+
+    /**
+     * Reads the records of a segment in order, up to its end or to a record torn by a crash.
+     */
+    static List<Entry> readSegment(Path file) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            Entry entry;
+            while ((entry = readRecord(buffer)) != null) {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    private static Entry readRecord(ByteBuffer buffer) {
+        if (buffer.remaining() < RECORD_HEADER_SIZE) {
+            return null;
+        }
+        int length = buffer.getInt();
+        int checksum = buffer.getInt();
+        if (length <= 0 || length > buffer.remaining()) {
+            return null;
+        }
+        ByteBuffer payload = buffer.slice(buffer.position(), length);
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+        if ((int) crc.getValue() != checksum) {
+            return null;
+        }
+        buffer.position(buffer.position() + length);
+        return decode(payload);
+    }
+
+    /**
+     * Writes the snapshot next to the target and atomically moves it into place once it is on disk.
+     */
+    static void writeSnapshot(Path file, long sequence, Collection<Account> accounts) throws IOException {
+        List<byte[]> payloads = new ArrayList<>(accounts.size());
+        int size = 4 + 2 + 8 + 4;
+        for (Account account : accounts) {
+            byte[] payload = encode(sequence, account);
+            payloads.add(payload);
+            size += recordSize(payload);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(SNAPSHOT_MAGIC);
+        buffer.putShort(SNAPSHOT_VERSION);
+        buffer.putLong(sequence);
+        buffer.putInt(payloads.size());
+        for (byte[] payload : payloads) {
+            writeRecord(buffer, payload);
+        }
+        buffer.flip();
+
+        Path absolute = file.toAbsolutePath();
+        Path temp = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    static Snapshot readSnapshot(Path file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        if (buffer.remaining() < 4 + 2 + 8 + 4 || buffer.getInt() != SNAPSHOT_MAGIC) {
+            throw new IllegalArgumentException("Not a journal snapshot file: " + file);
+        }
+        short version = buffer.getShort();
+        if (version != SNAPSHOT_VERSION) {
+            throw new IllegalArgumentException("Unsupported journal snapshot version: " + version);
+        }
+        long sequence = buffer.getLong();
+        int count = buffer.getInt();
+        List<Account> accounts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Entry entry = readRecord(buffer);
+            if (entry == null) {
+                throw new IllegalArgumentException("Corrupt journal snapshot file: " + file);
+            }
+            accounts.add(entry.account());
+        }
+        return new Snapshot(sequence, accounts);
+    }
+
+    private static byte[] name(String name) {
+        byte[] bytes = (name != null ? name : "").getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_NAME_LENGTH) {
+            throw new IllegalArgumentException("Name too long for the journal");
+        }
+        return bytes;
+    }
+
+    private static String readName(ByteBuffer buffer) {
+        byte[] bytes = new byte[Short.toUnsignedInt(buffer.getShort())];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
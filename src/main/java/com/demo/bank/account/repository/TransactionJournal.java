@@ -0,0 +1,355 @@
+package com.demo.bank.account.repository;
+
+import com.demo.bank.account.entity.Account;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Append-only journal of account changes, so balances survive restarts of the in-memory database.
+ * Every change is appended as the image of the account after it to a memory-mapped segment file, and the
+ * segment is forced to disk for all the records appended since the previous sync at once (group sync).
+ * A snapshot of every account is written periodically and at shutdown; the segments it covers are deleted.
+ * <p>
+ * On startup the accounts are rebuilt from the latest snapshot and the records appended after it, and written
+ * back to the database once every singleton is created, so the JPA schema they are written to exists. Records are full images carrying the account version, so replaying a record the
+ * snapshot already includes, or an older image after a newer one, leaves the account as it is.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "account.journal.enabled", havingValue = "true")
+public class TransactionJournal implements SmartInitializingSingleton {
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".snap";
+    // Ids Hibernate reserves per sequence call (Account's allocationSize)
+    private static final int ID_ALLOCATION_SIZE = 50;
+
+    private final Path directory;
+    private final long segmentSize;
+    private final boolean awaitSync;
+    private final ScheduledExecutorService scheduler;
+    private final Consumer<Collection<Account>> restorer;
+    // Latest image of every account: what a snapshot writes
+    private final ConcurrentHashMap<Long, Account> images = new ConcurrentHashMap<>();
+    // Appends waiting for their record to be synced, in sequence order
+    private final ConcurrentLinkedQueue<PendingSync> pendingSyncs = new ConcurrentLinkedQueue<>();
+    private volatile long syncedSequence;
+
+    // Guarded by this
+    private MappedByteBuffer segment;
+    private long nextSequence;
+    private long appendedSequence;
+    private boolean closed;
+
+    @Autowired
+    public TransactionJournal(
+            JdbcTemplate jdbcTemplate,
+            @Value("${account.journal.directory:journal}") Path directory,
+            @Value("${account.journal.segment-size:64MB}") DataSize segmentSize,
+            @Value("${account.journal.sync-interval:2ms}") Duration syncInterval,
+            @Value("${account.journal.await-sync:true}") boolean awaitSync,
+            @Value("${account.journal.snapshot-interval:5m}") Duration snapshotInterval) throws IOException {
+        this(directory, segmentSize.toBytes(), syncInterval, awaitSync, snapshotInterval,
+                accounts -> restoreAccounts(jdbcTemplate, accounts));
+    }
+
+    TransactionJournal(Path directory, long segmentSize, Duration syncInterval, boolean awaitSync, Duration snapshotInterval,
+                       Consumer<Collection<Account>> restorer) throws IOException {
+        if (segmentSize < 1024 || segmentSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Journal segment size must be between 1KB and 2GB");
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.awaitSync = awaitSync;
+        this.restorer = restorer;
+
+        Files.createDirectories(directory);
+        recover();
+        openSegment();
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "journal-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long syncMillis = Math.max(syncInterval.toMillis(), 1);
+        scheduler.scheduleWithFixedDelay(this::sync, syncMillis, syncMillis, TimeUnit.MILLISECONDS);
+        if (!snapshotInterval.isZero() && !snapshotInterval.isNegative()) {
+            long snapshotMillis = snapshotInterval.toMillis();
+            scheduler.scheduleWithFixedDelay(this::snapshotQuietly, snapshotMillis, snapshotMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Writes the recovered accounts to the database. Called by Spring once all singletons exist, before the
+     * application takes any request or command.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        restorer.accept(images.values());
+    }
+
+    /**
+     * Appends the image of the account after a change.
+     *
+     * @return completed once the record is on disk, or right away if account.journal.await-sync is off
+     */
+    public CompletableFuture<Void> append(Account account) {
+        byte[] payload;
+        PendingSync pending;
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("Journal is closed");
+            }
+            long sequence = nextSequence;
+            payload = JournalFile.encode(sequence, account);
+            if (JournalFile.recordSize(payload) + JournalFile.RECORD_HEADER_SIZE > segmentSize) {
+                throw new IllegalArgumentException("Journal record larger than a segment");
+            }
+            if (segment.remaining() < JournalFile.recordSize(payload) + JournalFile.RECORD_HEADER_SIZE) {
+                rollSegment();
+            }
+            JournalFile.writeRecord(segment, payload);
+            nextSequence++;
+            // The image is in place before the sequence is published, so a snapshot up to a sequence includes it
+            images.merge(account.getId(), account, TransactionJournal::latest);
+            appendedSequence = sequence;
+            if (!awaitSync) {
+                return CompletableFuture.completedFuture(null);
+            }
+            pending = new PendingSync(sequence);
+            pendingSyncs.add(pending);
+        }
+        return pending.future;
+    }
+
+    /**
+     * Forces the current segment to disk and completes the appends it covers.
+     */
+    void sync() {
+        MappedByteBuffer current;
+        long target;
+        synchronized (this) {
+            current = segment;
+            target = appendedSequence;
+        }
+        if (target <= syncedSequence) {
+            return;
+        }
+        try {
+            current.force();
+        } catch (UncheckedIOException e) {
+            // Appends keep waiting; the next sync tries again
+            log.error("Failed to sync the transaction journal: {}", e.getMessage());
+            return;
+        }
+        syncedSequence = target;
+        PendingSync pending;
+        while ((pending = pendingSyncs.peek()) != null && pending.sequence <= target) {
+            pendingSyncs.poll();
+            pending.future.complete(null);
+        }
+    }
+
+    /**
+     * Writes the image of every account and deletes the snapshots and segments it replaces.
+     */
+    public void snapshot() throws IOException {
+        long sequence;
+        synchronized (this) {
+            sequence = appendedSequence;
+        }
+        // Images newer than the sequence may be included too; replaying their records after it changes nothing
+        List<Account> accounts = new ArrayList<>(images.values());
+        JournalFile.writeSnapshot(directory.resolve(fileName(SNAPSHOT_PREFIX, sequence, SNAPSHOT_SUFFIX)), sequence, accounts);
+
+        for (Path old : files(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)) {
+            if (sequenceOf(old, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX) < sequence) {
+                Files.deleteIfExists(old);
+            }
+        }
+        // A segment is covered when the segment after it starts at or before the first record past the snapshot
+        List<Path> segments = files(SEGMENT_PREFIX, SEGMENT_SUFFIX);
+        for (int i = 0; i + 1 < segments.size(); i++) {
+            if (sequenceOf(segments.get(i + 1), SEGMENT_PREFIX, SEGMENT_SUFFIX) <= sequence + 1) {
+                Files.deleteIfExists(segments.get(i));
+            }
+        }
+        log.debug("Wrote journal snapshot of {} accounts at sequence {}", accounts.size(), sequence);
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to write journal snapshot: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Syncs the last records and writes a snapshot, so the next start replays nothing.
+     */
+    @PreDestroy
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        scheduler.shutdownNow();
+        try {
+            scheduler.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        sync();
+        snapshotQuietly();
+    }
+
+    public long getLastSequence() {
+        synchronized (this) {
+            return appendedSequence;
+        }
+    }
+
+    private void recover() throws IOException {
+        long snapshotSequence = 0;
+        List<Path> snapshots = files(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+        if (!snapshots.isEmpty()) {
+            JournalFile.Snapshot snapshot = JournalFile.readSnapshot(snapshots.get(snapshots.size() - 1));
+            snapshot.accounts().forEach(account -> images.merge(account.getId(), account, TransactionJournal::latest));
+            snapshotSequence = snapshot.sequence();
+        }
+
+        long lastSequence = snapshotSequence;
+        int replayed = 0;
+        for (Path file : files(SEGMENT_PREFIX, SEGMENT_SUFFIX)) {
+            for (JournalFile.Entry entry : JournalFile.readSegment(file)) {
+                lastSequence = Math.max(lastSequence, entry.sequence());
+                if (entry.sequence() > snapshotSequence) {
+                    images.merge(entry.account().getId(), entry.account(), TransactionJournal::latest);
+                    replayed++;
+                }
+            }
+        }
+        nextSequence = lastSequence + 1;
+        appendedSequence = lastSequence;
+        syncedSequence = lastSequence;
+        if (!images.isEmpty()) {
+            log.info("Recovered {} accounts from the transaction journal ({} records replayed after the snapshot)",
+                    images.size(), replayed);
+        }
+    }
+
+    // Always a new segment: the tail of the previous one may hold a record torn by a crash
+    private void openSegment() throws IOException {
+        Path file = directory.resolve(fileName(SEGMENT_PREFIX, nextSequence, SEGMENT_SUFFIX));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            // The mapping stays valid once the channel is closed
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+    }
+
+    private void rollSegment() {
+        // Records of a full segment are synced here; the sync thread only ever forces the current one
+        segment.force();
+        try {
+            openSegment();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open a new journal segment", e);
+        }
+    }
+
+    private List<Path> files(String prefix, String suffix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            // Fixed-width sequence numbers: name order is sequence order
+            return files.filter(file -> {
+                        String name = file.getFileName().toString();
+                        return name.startsWith(prefix) && name.endsWith(suffix);
+                    })
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static String fileName(String prefix, long sequence, String suffix) {
+        return String.format("%s%020d%s", prefix, sequence, suffix);
+    }
+
+    private static long sequenceOf(Path file, String prefix, String suffix) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length()));
+    }
+
+    private static Account latest(Account current, Account candidate) {
+        return candidate.getVersion() >= current.getVersion() ? candidate : current;
+    }
+
+    /**
+     * Writes the recovered accounts to the database, keeping their ids, and moves the id sequence past them.
+     */
+    private static void restoreAccounts(JdbcTemplate jdbcTemplate, Collection<Account> accounts) {
+        if (accounts.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate("MERGE INTO account (id, first_name, last_name, balance, currency, version) KEY (id) "
+                + "VALUES (?, ?, ?, ?, ?, ?)", accounts, 1000, (statement, account) -> {
+            statement.setLong(1, account.getId());
+            statement.setString(2, account.getFirstName());
+            statement.setString(3, account.getLastName());
+            statement.setLong(4, account.getBalance());
+            statement.setString(5, account.getCurrency().name());
+            statement.setLong(6, account.getVersion());
+        });
+
+        long maxId = accounts.stream().mapToLong(Account::getId).max().orElse(0);
+        // Hibernate hands out the block of ids ending at the sequence value, so the next value must leave a whole
+        // block above the restored ids
+        long restartWith = maxId + ID_ALLOCATION_SIZE + 1;
+        Long current = jdbcTemplate.queryForObject(
+                "SELECT BASE_VALUE FROM INFORMATION_SCHEMA.SEQUENCES WHERE SEQUENCE_NAME = 'ACCOUNT_SEQ'", Long.class);
+        if (current == null || current < restartWith) {
+            jdbcTemplate.execute("ALTER SEQUENCE account_seq RESTART WITH " + restartWith);
+        }
+        log.info("Restored {} accounts from the transaction journal", accounts.size());
+    }
+
+    private static final class PendingSync {
+        private final long sequence;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        private PendingSync(long sequence) {
+            this.sequence = sequence;
+        }
+    }
+}
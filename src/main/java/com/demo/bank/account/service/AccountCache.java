@@ -0,0 +1,140 @@
+package com.demo.bank.account.service;
+
+import com.demo.bank.account.entity.Account;
+import com.demo.bank.account.entity.AccountCacheStats;
+import com.demo.bank.account.entity.Currency;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Bounded read-through cache of accounts by id, in front of the database.
+ * <p>
+ * The entries are split over segments by id, each a small LRU map behind its own lock, so lookups of different
+ * accounts rarely wait for each other. The cache keeps its own copies of the accounts and hands out the same copy to
+ * every reader, so callers must not change them. Writers put the account they have committed; an entry is only
+ * replaced by an account of the same or a newer version, so a lookup that read the row before a concurrent write
+ * cannot put the older balance back. Entries also expire after a while, which bounds how long a change made outside
+ * of this node stays invisible.
+ */
+class AccountCache {
+    private static final int SEGMENT_BITS = 4;
+    private static final int SEGMENTS = 1 << SEGMENT_BITS;
+
+    private record Entry(Account account, long loadedAt) {
+    }
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final int maxSize;
+    private final long ttlNanos;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxSize accounts kept at most, spread evenly over the segments
+     * @param ttl     how long an entry is served before it is read from the database again
+     */
+    AccountCache(int maxSize, Duration ttl) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Account cache size must be positive");
+        }
+        int segmentSize = Math.max(1, (maxSize + SEGMENTS - 1) / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(segmentSize);
+        }
+        this.maxSize = segmentSize * SEGMENTS;
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    /**
+     * @return the cached account, or the one loaded when it is missing or expired; {@code null} if there is none
+     */
+    Account get(Long id, Function<Long, Optional<Account>> loader) {
+        Segment segment = segment(id);
+        Entry entry;
+        synchronized (segment) {
+            entry = segment.get(id);
+        }
+        if (entry != null && System.nanoTime() - entry.loadedAt < ttlNanos) {
+            hits.increment();
+            return entry.account;
+        }
+        misses.increment();
+        // Loaded outside of the segment lock: the other accounts of the segment stay readable meanwhile
+        return loader.apply(id).map(this::put).orElse(null);
+    }
+
+    /**
+     * @return the currency of the account if it is cached, expired or not, as it never changes; {@code null} otherwise.
+     * Not counted as a lookup.
+     */
+    Currency currencyOf(Long id) {
+        Segment segment = segment(id);
+        Entry entry;
+        synchronized (segment) {
+            entry = segment.get(id);
+        }
+        return entry != null ? entry.account.getCurrency() : null;
+    }
+
+    /**
+     * Caches a copy of the account, unless a newer version of it is cached already.
+     *
+     * @return the cached copy
+     */
+    Account put(Account account) {
+        Entry entry = new Entry(new Account(account, account.getBalance(), account.getVersion()), System.nanoTime());
+        Segment segment = segment(account.getId());
+        synchronized (segment) {
+            return segment.merge(account.getId(), entry,
+                    (cached, loaded) -> loaded.account.getVersion() >= cached.account.getVersion() ? loaded : cached).account;
+        }
+    }
+
+    void invalidate(Long id) {
+        Segment segment = segment(id);
+        synchronized (segment) {
+            segment.remove(id);
+        }
+    }
+
+    AccountCacheStats getStats() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return new AccountCacheStats(hits.sum(), misses.sum(), evictions.sum(), size, maxSize);
+    }
+
+    private Segment segment(Long id) {
+        // Ids are sequential: mix the bits so neighbouring accounts land in different segments
+        return segments[(int) ((id * 0x9E3779B97F4A7C15L) >>> (Long.SIZE - SEGMENT_BITS))];
+    }
+
+    // Least recently used map: lookups move an entry to the end, and the entry at the front goes once it is full
+    private class Segment extends LinkedHashMap<Long, Entry> {
+        private final int capacity;
+
+        Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+            if (size() > capacity) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+}
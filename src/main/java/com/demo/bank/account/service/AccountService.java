@@ -1,92 +1,840 @@
 package com.demo.bank.account.service;
 
 import com.demo.bank.account.entity.Account;
+import com.demo.bank.account.entity.AccountBalance;
+import com.demo.bank.account.entity.AccountCacheStats;
 import com.demo.bank.account.entity.Currency;
+import com.demo.bank.account.entity.NewAccountRequest;
+import com.demo.bank.account.entity.TransactionRequest;
+import com.demo.bank.account.entity.TransactionResult;
+import com.demo.bank.account.entity.TransactionType;
+import com.demo.bank.account.entity.TransferResult;
 import com.demo.bank.account.repository.AccountRepository;
+import com.demo.bank.account.repository.TransactionJournal;
+import com.demo.bank.conversion.entity.RateQuote;
+import com.demo.bank.conversion.entity.RateSnapshot;
 import com.demo.bank.conversion.service.CurrencyConversionService;
+import com.demo.bank.utils.Money;
+import com.demo.bank.utils.OptimisticRetry;
+import com.demo.bank.utils.OptimisticRetryStats;
+import com.demo.bank.utils.StripedLock;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionOperations;
 import lombok.extern.slf4j.Slf4j;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
 @Slf4j
 @Service
 public class AccountService {
+    /**
+     * How deposits and withdrawals change the balance.
+     */
+    public enum UpdateMode {
+        // Load the account, change the balance in memory and save it: concurrent updates of one account can be lost
+        READ_MODIFY_WRITE,
+        // One conditional UPDATE applied by the database, which also returns the new balance
+        ATOMIC,
+        // Read-modify-write in one transaction, checked against the account version and retried with backoff on conflict
+        OPTIMISTIC,
+        // Read-modify-write in one transaction under an in-process lock striped by account id: updates of one
+        // account are serialized on this node, updates of different accounts run in parallel
+        STRIPED,
+        // Applied in memory by the single-writer LedgerEngine, which writes the balances to the database in the background
+        LEDGER
+    }
+
     private final AccountRepository accountRepository;
     private final CurrencyConversionService currencyConversionService;
+    private final TransactionOperations transactionOperations;
+    private final UpdateMode updateMode;
+    private final OptimisticRetry optimisticRetry;
+    private final StripedLock accountLocks;
+    private final AccountCache accountCache;
+    private final LedgerEngine ledgerEngine;
+    private final TransactionJournal journal;
+    // Indexed by operation, outcome and conversion ordinals: registered once, only recorded per call
+    private final Timer[][][] operationTimers;
 
     @Autowired
-    public AccountService(AccountRepository accountRepository, CurrencyConversionService currencyConversionService) {
+    public AccountService(
+            AccountRepository accountRepository,
+            CurrencyConversionService currencyConversionService,
+            TransactionOperations transactionOperations,
+            @Value("${account.update-mode:atomic}") UpdateMode updateMode,
+            @Value("${account.optimistic-retry.max-attempts:5}") int maxAttempts,
+            @Value("${account.optimistic-retry.initial-backoff:2ms}") Duration initialBackoff,
+            @Value("${account.optimistic-retry.max-backoff:50ms}") Duration maxBackoff,
+            @Value("${account.striped-lock.stripes:64}") int stripes,
+            @Value("${account.cache.max-size:10000}") int cacheSize,
+            @Value("${account.cache.ttl:1m}") Duration cacheTtl,
+            Optional<LedgerEngine> ledgerEngine,
+            Optional<TransactionJournal> journal,
+            MeterRegistry meterRegistry) {
+        this(accountRepository, currencyConversionService, transactionOperations, updateMode,
+                new OptimisticRetry("account-update", maxAttempts, initialBackoff, maxBackoff), new StripedLock(stripes),
+                cacheSize > 0 ? new AccountCache(cacheSize, cacheTtl) : null,
+                ledgerEngine.orElse(null), journal.orElse(null), meterRegistry);
+    }
+
+    AccountService(
+            AccountRepository accountRepository,
+            CurrencyConversionService currencyConversionService,
+            TransactionOperations transactionOperations,
+            UpdateMode updateMode,
+            OptimisticRetry optimisticRetry,
+            StripedLock accountLocks,
+            AccountCache accountCache,
+            LedgerEngine ledgerEngine,
+            TransactionJournal journal,
+            MeterRegistry meterRegistry) {
+        if (updateMode == UpdateMode.LEDGER && ledgerEngine == null) {
+            throw new IllegalStateException("The ledger update mode requires the ledger engine");
+        }
         this.accountRepository = accountRepository;
         this.currencyConversionService = currencyConversionService;
+        this.transactionOperations = transactionOperations;
+        this.updateMode = updateMode;
+        this.optimisticRetry = optimisticRetry;
+        optimisticRetry.bindTo(meterRegistry);
+        this.accountLocks = accountLocks;
+        // The ledger serves every account from memory already
+        this.accountCache = updateMode == UpdateMode.LEDGER ? null : accountCache;
+        this.ledgerEngine = ledgerEngine;
+        this.journal = journal;
+        this.operationTimers = operationTimers(meterRegistry);
     }
 
     public Account createAccount(String firstName, String lastName, Currency currency) {
-        Account account = new Account(firstName, lastName, currency);
-        return accountRepository.save(account);
+        return measured(Operation.CREATE, null, () -> journaled(accountRepository.save(new Account(firstName, lastName, currency))));
+    }
+
+    /**
+     * Opens all the accounts in one transaction. The ids come from a pooled sequence, so the rows are
+     * inserted in JDBC batches rather than one round trip per account.
+     */
+    public List<Account> createAccounts(List<NewAccountRequest> requests) {
+        return measured(Operation.CREATE_BATCH, null, () ->
+                transactionOperations.execute(status -> createAccountsInTransaction(requests)));
+    }
+
+    private List<Account> createAccountsInTransaction(List<NewAccountRequest> requests) {
+        List<Account> accounts = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            NewAccountRequest request = requests.get(i);
+            if (request == null || isBlank(request.getFirstName()) || isBlank(request.getLastName()) || request.getCurrency() == null) {
+                throw new IllegalArgumentException("Account " + (i + 1) + ": firstName, lastName and currency are required");
+            }
+            accounts.add(new Account(request.getFirstName(), request.getLastName(), request.getCurrency()));
+        }
+        List<Account> created = accountRepository.saveAll(accounts);
+        journaled(created);
+        log.debug("Created {} accounts", created.size());
+        return created;
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
     }
 
+    /**
+     * @return the account, or {@code null} if there is none; read through the account cache when it is enabled, in
+     * which case the account is shared with other readers and must not be changed
+     */
     public Account getAccountById(Long id) {
-        return accountRepository.findById(id).orElse(null);
+        return measured(Operation.BALANCE, null, () -> {
+            if (updateMode == UpdateMode.LEDGER) {
+                return await(ledgerEngine.get(id));
+            }
+            if (accountCache != null) {
+                return accountCache.get(id, accountRepository::findById);
+            }
+            return accountRepository.findById(id).orElse(null);
+        });
+    }
+
+    /**
+     * @return the balance of the account, read with a projection query rather than loading the account
+     * @throws IllegalArgumentException if there is no such account
+     */
+    public AccountBalance getAccountBalance(Long id) {
+        return measured(Operation.BALANCE, null, () -> {
+            if (updateMode == UpdateMode.LEDGER) {
+                // The database lags behind the ledger
+                Account account = await(ledgerEngine.get(id));
+                if (account == null) {
+                    throw new IllegalArgumentException("Account not found");
+                }
+                return AccountBalance.of(account);
+            }
+            return accountRepository.findBalanceById(id).orElseThrow(() -> new IllegalArgumentException("Account not found"));
+        });
     }
 
     // Unified deposit method with currency conversion
-    public Account deposit(Long accountId, double amount, Currency currency) {
+    // Amounts are in minor units of the given currency, see Money
+    public Account deposit(Long accountId, long amount, Currency currency) {
+        return measured(Operation.DEPOSIT, currency, () -> applyDeposit(accountId, amount, currency));
+    }
+
+    private Account applyDeposit(Long accountId, long amount, Currency currency) {
         if (amount <= 0) {
             throw new IllegalArgumentException("Deposit amount must be positive");
         }
-
-        Account account = getAccountById(accountId);
-        if (account == null) {
-            throw new IllegalArgumentException("Account not found");
+        Currency knownCurrency = knownCurrency(accountId);
+        if (updateMode != UpdateMode.ATOMIC) {
+            prefetchRatesUnless(knownCurrency, currency);
         }
+        return updated(accountId, () -> switch (updateMode) {
+            case ATOMIC -> depositAtomic(accountId, amount, currency, knownCurrency);
+            case OPTIMISTIC -> optimisticRetry.execute(() ->
+                    transactionOperations.execute(status -> depositReadModifyWrite(accountId, amount, currency)));
+            // The lock is held until the transaction has committed
+            case STRIPED -> accountLocks.withLock(accountId, () ->
+                    transactionOperations.execute(status -> depositReadModifyWrite(accountId, amount, currency)));
+            case LEDGER -> await(ledgerEngine.deposit(accountId, toLedgerCurrency(accountId, amount, currency)));
+            case READ_MODIFY_WRITE -> depositReadModifyWrite(accountId, amount, currency);
+        });
+    }
 
-        Currency inputCurrency = currency;
-        Currency accountCurrency = account.getCurrency();
-        double finalAmount = amount;
+    private Account depositReadModifyWrite(Long accountId, long amount, Currency currency) {
+        // Not read through the cache: the copies there are shared, and the version checked on save must be the stored one
+        Account account = accountRepository.findById(accountId).orElseThrow(() -> new IllegalArgumentException("Account not found"));
 
-        // Apply currency conversion if needed
-        if (!inputCurrency.equals(accountCurrency)) {
-            try {
-                finalAmount = currencyConversionService.convert(inputCurrency, accountCurrency, amount);
-                double conversionRate = finalAmount / amount;
-                log.info("Converted {} {} to {} {} (rate: {})", amount, inputCurrency, finalAmount, accountCurrency, conversionRate);
-            } catch (Exception e) {
-                throw new RuntimeException("Currency conversion failed: " + e.getMessage());
-            }
-        }
+        long finalAmount = convertToAccountCurrency(amount, currency, account.getCurrency());
         account.deposit(finalAmount);
         return accountRepository.save(account);
     }
 
     // Unified withdraw method with currency conversion
-    public Account withdraw(Long accountId, double amount, Currency currency) {
+    public Account withdraw(Long accountId, long amount, Currency currency) {
+        return measured(Operation.WITHDRAW, currency, () -> applyWithdraw(accountId, amount, currency));
+    }
+
+    private Account applyWithdraw(Long accountId, long amount, Currency currency) {
         if (amount <= 0) {
             throw new IllegalArgumentException("Withdraw amount must be positive");
         }
-
-        Account account = getAccountById(accountId);
-        if (account == null) {
-            throw new IllegalArgumentException("Account not found");
+        Currency knownCurrency = knownCurrency(accountId);
+        if (updateMode != UpdateMode.ATOMIC) {
+            prefetchRatesUnless(knownCurrency, currency);
         }
+        return updated(accountId, () -> switch (updateMode) {
+            case ATOMIC -> withdrawAtomic(accountId, amount, currency, knownCurrency);
+            case OPTIMISTIC -> optimisticRetry.execute(() ->
+                    transactionOperations.execute(status -> withdrawReadModifyWrite(accountId, amount, currency)));
+            case STRIPED -> accountLocks.withLock(accountId, () ->
+                    transactionOperations.execute(status -> withdrawReadModifyWrite(accountId, amount, currency)));
+            case LEDGER -> await(ledgerEngine.withdraw(accountId, toLedgerCurrency(accountId, amount, currency)));
+            case READ_MODIFY_WRITE -> withdrawReadModifyWrite(accountId, amount, currency);
+        });
+    }
 
-        Currency inputCurrency = currency;
-        Currency accountCurrency = account.getCurrency();
-        double finalAmount = amount;
+    private Account withdrawReadModifyWrite(Long accountId, long amount, Currency currency) {
+        Account account = accountRepository.findById(accountId).orElseThrow(() -> new IllegalArgumentException("Account not found"));
 
-        // Apply currency conversion if needed
-        if (!inputCurrency.equals(accountCurrency)) {
-            try {
-                finalAmount = currencyConversionService.convert(inputCurrency, accountCurrency, amount);
-                double conversionRate = finalAmount / amount;
-                log.info("Converted {} {} to {} {} (rate: {})", amount, inputCurrency, finalAmount, accountCurrency, conversionRate);
-            } catch (Exception e) {
-                throw new RuntimeException("Currency conversion failed: " + e.getMessage());
-            }
-        }
+        long finalAmount = convertToAccountCurrency(amount, currency, account.getCurrency());
         boolean success = account.withdraw(finalAmount);
         if (!success) {
             throw new RuntimeException("Withdraw failed. Insufficient balance or invalid amount");
         }
         return accountRepository.save(account);
     }
+
+    /**
+     * Moves money between two accounts in one step: either both balances change or neither does. The amount is
+     * given in {@code currency} and converted into the currency of each account with the same rates.
+     * <p>
+     * Wherever locks are taken, they are taken in a fixed order (row locks in account id order, striped locks in
+     * stripe order), so concurrent transfers in opposite directions cannot deadlock. In ledger mode the two
+     * accounts may live on different shards: the debit is applied first and the credit right after it, so a
+     * reader can briefly see the money in neither account, but it is never lost or duplicated.
+     */
+    public TransferResult transfer(Long fromAccountId, Long toAccountId, long amount, Currency currency) {
+        return measured(Operation.TRANSFER, currency, () -> applyTransfer(fromAccountId, toAccountId, amount, currency));
+    }
+
+    private TransferResult applyTransfer(Long fromAccountId, Long toAccountId, long amount, Currency currency) {
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Transfer amount must be positive");
+        }
+        if (fromAccountId.equals(toAccountId)) {
+            throw new IllegalArgumentException("Cannot transfer to the same account");
+        }
+        // Rates are fetched before anything is locked: as soon as one leg is known to need converting, the
+        // fetch starts while the other account currency is looked up
+        Currency fromCurrency = accountCurrency(fromAccountId);
+        if (fromCurrency != currency) {
+            currencyConversionService.prefetchRates();
+        }
+        Currency toCurrency = accountCurrency(toAccountId);
+        RateSnapshot rates = fromCurrency == currency && toCurrency == currency ? null : currencyConversionService.getRates();
+        long debit = convertForTransfer(rates, amount, currency, fromCurrency);
+        long credit = convertForTransfer(rates, amount, currency, toCurrency);
+
+        TransferResult result;
+        try {
+            result = switch (updateMode) {
+                case ATOMIC -> transactionOperations.execute(status ->
+                        transferAtomic(fromAccountId, fromCurrency, debit, toAccountId, toCurrency, credit));
+                case OPTIMISTIC -> optimisticRetry.execute(() ->
+                        transactionOperations.execute(status -> transferReadModifyWrite(fromAccountId, toAccountId, debit, credit)));
+                case STRIPED -> accountLocks.withLocks(fromAccountId, toAccountId, () ->
+                        transactionOperations.execute(status -> transferReadModifyWrite(fromAccountId, toAccountId, debit, credit)));
+                case READ_MODIFY_WRITE -> transactionOperations.execute(status ->
+                        transferReadModifyWrite(fromAccountId, toAccountId, debit, credit));
+                case LEDGER -> transferLedger(fromAccountId, toAccountId, debit, credit);
+            };
+        } catch (RuntimeException e) {
+            invalidate(fromAccountId);
+            invalidate(toAccountId);
+            throw e;
+        }
+        cached(result.getFromAccount());
+        cached(result.getToAccount());
+        if (journal != null) {
+            awaitJournal(List.of(journal.append(result.getFromAccount()), journal.append(result.getToAccount())));
+        }
+        log.debug("Transferred {} {} from account {} to account {}", Money.format(amount), currency, fromAccountId, toAccountId);
+        return result;
+    }
+
+    private Currency accountCurrency(Long accountId) {
+        if (updateMode == UpdateMode.LEDGER) {
+            return ledgerEngine.currencyOf(accountId);
+        }
+        return accountRepository.findCurrencyById(accountId).orElseThrow(() -> new IllegalArgumentException("Account not found"));
+    }
+
+    private long convertForTransfer(RateSnapshot rates, long amount, Currency currency, Currency accountCurrency) {
+        if (currency == accountCurrency) {
+            return amount;
+        }
+        try {
+            return currencyConversionService.quote(rates, currency, accountCurrency, amount).getConvertedAmount();
+        } catch (Exception e) {
+            throw new RuntimeException("Currency conversion failed: " + e.getMessage());
+        }
+    }
+
+    // Two conditional UPDATEs in one transaction; each locks its row, and the lower account id always goes first
+    private TransferResult transferAtomic(Long fromAccountId, Currency fromCurrency, long debit,
+                                          Long toAccountId, Currency toCurrency, long credit) {
+        Account from;
+        Account to;
+        if (fromAccountId < toAccountId) {
+            from = debitAtomic(fromAccountId, fromCurrency, debit);
+            to = creditAtomic(toAccountId, toCurrency, credit);
+        } else {
+            to = creditAtomic(toAccountId, toCurrency, credit);
+            from = debitAtomic(fromAccountId, fromCurrency, debit);
+        }
+        return new TransferResult(from, to, debit, credit);
+    }
+
+    private Account debitAtomic(Long accountId, Currency currency, long debit) {
+        // Thrown inside the transaction, so a credit already applied is rolled back
+        return accountRepository.withdrawAndGet(accountId, debit, currency.name())
+                .orElseThrow(() -> new RuntimeException("Transfer failed. Insufficient balance"));
+    }
+
+    private Account creditAtomic(Long accountId, Currency currency, long credit) {
+        return accountRepository.depositAndGet(accountId, credit, currency.name())
+                .orElseThrow(() -> new IllegalArgumentException("Account not found"));
+    }
+
+    private TransferResult transferReadModifyWrite(Long fromAccountId, Long toAccountId, long debit, long credit) {
+        Account from = accountRepository.findById(fromAccountId).orElseThrow(() -> new IllegalArgumentException("Account not found"));
+        Account to = accountRepository.findById(toAccountId).orElseThrow(() -> new IllegalArgumentException("Account not found"));
+        if (!from.withdraw(debit)) {
+            throw new RuntimeException("Transfer failed. Insufficient balance");
+        }
+        to.deposit(credit);
+        return new TransferResult(accountRepository.save(from), accountRepository.save(to), debit, credit);
+    }
+
+    private TransferResult transferLedger(Long fromAccountId, Long toAccountId, long debit, long credit) {
+        Account from;
+        try {
+            from = await(ledgerEngine.withdraw(fromAccountId, debit));
+        } catch (RuntimeException e) {
+            if (e instanceof IllegalArgumentException) {
+                throw e;
+            }
+            throw new RuntimeException("Transfer failed. Insufficient balance");
+        }
+        try {
+            return new TransferResult(from, await(ledgerEngine.deposit(toAccountId, credit)), debit, credit);
+        } catch (RuntimeException e) {
+            // The target is known to the ledger, so this only happens while it shuts down: give the money back
+            ledgerEngine.deposit(fromAccountId, debit);
+            throw e;
+        }
+    }
+
+    /*
+     * Metrics. bank.account.operations times every account creation (single or batch), deposit, withdrawal,
+     * transfer and balance lookup, tagged with its outcome: success, rejected (invalid request or unknown account,
+     * answered with 400) or failed (anything else, such as an insufficient balance). Deposits, withdrawals and
+     * transfers are also tagged with whether the amount was in the currency of the accounts, which a failed one
+     * may not have got as far as reading. The timers are registered up front, so a call only records its latency.
+     */
+
+    private enum Operation {
+        CREATE("create", false),
+        CREATE_BATCH("create-batch", false),
+        BALANCE("balance", false),
+        DEPOSIT("deposit", true),
+        WITHDRAW("withdraw", true),
+        TRANSFER("transfer", true);
+
+        private final String tag;
+        private final boolean converts;
+
+        Operation(String tag, boolean converts) {
+            this.tag = tag;
+            this.converts = converts;
+        }
+    }
+
+    private enum Outcome {
+        SUCCESS("success"), REJECTED("rejected"), FAILED("failed");
+
+        private final String tag;
+
+        Outcome(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    private enum Conversion {
+        NONE("none"), UNKNOWN("unknown"), SAME_CURRENCY("same-currency"), CROSS_CURRENCY("cross-currency");
+
+        private final String tag;
+
+        Conversion(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    private static Timer[][][] operationTimers(MeterRegistry meterRegistry) {
+        Timer[][][] timers = new Timer[Operation.values().length][Outcome.values().length][Conversion.values().length];
+        for (Operation operation : Operation.values()) {
+            for (Outcome outcome : Outcome.values()) {
+                for (Conversion conversion : Conversion.values()) {
+                    // Only the combinations an operation can report
+                    if ((conversion == Conversion.NONE) == operation.converts) {
+                        continue;
+                    }
+                    timers[operation.ordinal()][outcome.ordinal()][conversion.ordinal()] = Timer.builder("bank.account.operations")
+                            .description("Latency of account creations, deposits, withdrawals, transfers and balance lookups")
+                            .tag("operation", operation.tag)
+                            .tag("outcome", outcome.tag)
+                            .tag("conversion", conversion.tag)
+                            .register(meterRegistry);
+                }
+            }
+        }
+        return timers;
+    }
+
+    private <T> T measured(Operation operation, Currency currency, Supplier<T> call) {
+        long start = System.nanoTime();
+        Outcome outcome = Outcome.FAILED;
+        Conversion conversion = operation.converts ? Conversion.UNKNOWN : Conversion.NONE;
+        try {
+            T result = call.get();
+            outcome = result != null ? Outcome.SUCCESS : Outcome.REJECTED;
+            if (result instanceof Account account && operation.converts) {
+                conversion = conversion(currency, account.getCurrency(), currency);
+            } else if (result instanceof TransferResult transfer) {
+                conversion = conversion(currency, transfer.getFromAccount().getCurrency(), transfer.getToAccount().getCurrency());
+            }
+            return result;
+        } catch (IllegalArgumentException e) {
+            outcome = Outcome.REJECTED;
+            throw e;
+        } finally {
+            operationTimers[operation.ordinal()][outcome.ordinal()][conversion.ordinal()]
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static Conversion conversion(Currency currency, Currency first, Currency second) {
+        return first == currency && second == currency ? Conversion.SAME_CURRENCY : Conversion.CROSS_CURRENCY;
+    }
+
+    public OptimisticRetryStats getOptimisticRetryStats() {
+        return optimisticRetry.getStats();
+    }
+
+    public AccountCacheStats getAccountCacheStats() {
+        return accountCache != null ? accountCache.getStats() : new AccountCacheStats(0, 0, 0, 0, 0);
+    }
+
+    /*
+     * Rate prefetch. A conversion needs both the account and the rates, so the rate fetch is started before the
+     * account is read and the two overlap: max(db, rates) rather than db + rates. It is skipped when the account
+     * currency is already known, from the account cache or the ledger, to be the amount's, where it would only be
+     * an upstream call nobody uses. The fetch itself is non-blocking and does nothing while the rates are cached.
+     */
+
+    private Currency knownCurrency(Long accountId) {
+        if (updateMode == UpdateMode.LEDGER) {
+            return ledgerEngine.loadedCurrencyOf(accountId);
+        }
+        return accountCache != null ? accountCache.currencyOf(accountId) : null;
+    }
+
+    private void prefetchRatesUnless(Currency knownCurrency, Currency currency) {
+        if (knownCurrency != currency) {
+            currencyConversionService.prefetchRates();
+        }
+    }
+
+    /*
+     * Atomic mode. The first UPDATE assumes the amount is in the account currency, which makes the common
+     * case a single round trip; it is skipped when the account is known to be in another currency. If it
+     * matches no row, the account currency is looked up to tell a missing account or an insufficient balance
+     * from an amount that needs converting first. A deposit that missed almost always needs converting, so it
+     * fetches the rates during that lookup; a withdrawal only once the lookup has shown it does.
+     */
+    private Account depositAtomic(Long accountId, long amount, Currency currency, Currency knownCurrency) {
+        Currency accountCurrency = knownCurrency != currency ? knownCurrency : null;
+        if (accountCurrency == null) {
+            Optional<Account> updated = accountRepository.depositAndGet(accountId, amount, currency.name());
+            if (updated.isPresent()) {
+                return updated.get();
+            }
+            currencyConversionService.prefetchRates();
+            accountCurrency = accountRepository.findCurrencyById(accountId)
+                    .orElseThrow(() -> new IllegalArgumentException("Account not found"));
+        }
+        long finalAmount = convertToAccountCurrency(amount, currency, accountCurrency);
+        return accountRepository.depositAndGet(accountId, finalAmount, accountCurrency.name())
+                .orElseThrow(() -> new IllegalArgumentException("Account not found"));
+    }
+
+    private Account withdrawAtomic(Long accountId, long amount, Currency currency, Currency knownCurrency) {
+        Currency accountCurrency = knownCurrency != currency ? knownCurrency : null;
+        Optional<Account> updated = Optional.empty();
+        if (accountCurrency == null) {
+            updated = accountRepository.withdrawAndGet(accountId, amount, currency.name());
+            if (updated.isPresent()) {
+                return updated.get();
+            }
+            accountCurrency = accountRepository.findCurrencyById(accountId)
+                    .orElseThrow(() -> new IllegalArgumentException("Account not found"));
+        }
+        if (accountCurrency != currency) {
+            long finalAmount = convertToAccountCurrency(amount, currency, accountCurrency);
+            updated = accountRepository.withdrawAndGet(accountId, finalAmount, accountCurrency.name());
+        }
+        return updated.orElseThrow(() -> new RuntimeException("Withdraw failed. Insufficient balance or invalid amount"));
+    }
+
+    /*
+     * Ledger mode. Amounts are converted on the calling thread before they are submitted, so the shards never
+     * wait for exchange rates.
+     */
+
+    private long toLedgerCurrency(Long accountId, long amount, Currency currency) {
+        return convertToAccountCurrency(amount, currency, ledgerEngine.currencyOf(accountId));
+    }
+
+    private static Account await(CompletableFuture<Account> result) {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private long convertToAccountCurrency(long amount, Currency inputCurrency, Currency accountCurrency) {
+        if (inputCurrency.equals(accountCurrency)) {
+            return amount;
+        }
+        try {
+            RateQuote quote = currencyConversionService.quote(inputCurrency, accountCurrency, amount);
+            log.info("Converted {} {} to {} {} at {} ({})", Money.format(amount), inputCurrency,
+                    Money.format(quote.getConvertedAmount()), accountCurrency, Money.formatRate(quote.getRate()), quote.getSource());
+            return quote.getConvertedAmount();
+        } catch (Exception e) {
+            throw new RuntimeException("Currency conversion failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Applies a batch of deposits and withdrawals in one transaction. The affected accounts are loaded
+     * with a single query and the operations of each account are applied in request order; the changed
+     * accounts are flushed together at commit, which Hibernate sends as JDBC batches. A rejected item
+     * (unknown account, insufficient balance, ...) does not affect the others.
+     * <p>
+     * The batch is guarded like single updates in the same mode: in atomic and optimistic mode a conflict with
+     * a concurrent update of one of its accounts, caught by the version check at commit, reruns the whole batch
+     * on fresh reads; in striped mode it holds the locks of all its accounts.
+     *
+     * @return one result per request, in request order
+     */
+    public List<TransactionResult> applyTransactions(List<TransactionRequest> requests) {
+        return switch (updateMode) {
+            case ATOMIC, OPTIMISTIC -> optimisticRetry.execute(() ->
+                    transactionOperations.execute(status -> applyTransactionsReadModifyWrite(requests)));
+            case STRIPED -> accountLocks.withLocks(accountIds(requests), () ->
+                    transactionOperations.execute(status -> applyTransactionsReadModifyWrite(requests)));
+            case READ_MODIFY_WRITE -> transactionOperations.execute(status -> applyTransactionsReadModifyWrite(requests));
+            case LEDGER -> applyTransactionsToLedger(requests);
+        };
+    }
+
+    private static List<Long> accountIds(List<TransactionRequest> requests) {
+        List<Long> ids = new ArrayList<>(requests.size());
+        for (TransactionRequest request : requests) {
+            if (request != null && request.getAccountId() != null) {
+                ids.add(request.getAccountId());
+            }
+        }
+        return ids;
+    }
+
+    private List<TransactionResult> applyTransactionsReadModifyWrite(List<TransactionRequest> requests) {
+        TransactionResult[] results = new TransactionResult[requests.size()];
+
+        // Group the valid items by account, keeping their order within each account
+        Map<Long, List<Integer>> itemsByAccount = new LinkedHashMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            TransactionRequest request = requests.get(i) != null ? requests.get(i) : new TransactionRequest();
+            String error = validate(request);
+            if (error != null) {
+                results[i] = TransactionResult.rejected(request, error);
+            } else {
+                itemsByAccount.computeIfAbsent(request.getAccountId(), id -> new ArrayList<>()).add(i);
+            }
+        }
+
+        Map<Long, Account> accounts = new HashMap<>();
+        for (Account account : accountRepository.findAllById(itemsByAccount.keySet())) {
+            accounts.put(account.getId(), account);
+        }
+
+        // Every converted item of the batch uses the same rates
+        RateSnapshot rates = null;
+        List<Account> changed = new ArrayList<>();
+        for (Map.Entry<Long, List<Integer>> entry : itemsByAccount.entrySet()) {
+            Account account = accounts.get(entry.getKey());
+            boolean accountChanged = false;
+            for (int i : entry.getValue()) {
+                TransactionRequest request = requests.get(i);
+                if (account == null) {
+                    results[i] = TransactionResult.rejected(request, "Account not found");
+                    continue;
+                }
+
+                long finalAmount = request.getAmount();
+                if (request.getCurrency() != account.getCurrency()) {
+                    try {
+                        if (rates == null) {
+                            rates = currencyConversionService.getRates();
+                        }
+                        finalAmount = currencyConversionService.quote(rates, request.getCurrency(), account.getCurrency(),
+                                request.getAmount()).getConvertedAmount();
+                    } catch (Exception e) {
+                        results[i] = TransactionResult.rejected(request, "Currency conversion failed: " + e.getMessage());
+                        continue;
+                    }
+                }
+
+                if (request.getType() == TransactionType.DEPOSIT) {
+                    account.deposit(finalAmount);
+                } else if (!account.withdraw(finalAmount)) {
+                    results[i] = TransactionResult.rejected(request, "Withdraw failed. Insufficient balance or invalid amount");
+                    continue;
+                }
+                accountChanged = true;
+                results[i] = TransactionResult.applied(request, account.getBalance());
+            }
+            if (accountChanged) {
+                changed.add(account);
+            }
+        }
+
+        accountRepository.saveAll(changed);
+        journaled(changed);
+        cachedAfterCommit(changed);
+        log.debug("Applied transaction batch of {} items to {} accounts", requests.size(), changed.size());
+        return Arrays.asList(results);
+    }
+
+    /*
+     * Journal. A change is appended once the database or the ledger has applied it, and the caller is answered
+     * once the record is on disk.
+     */
+
+    private Account journaled(Account account) {
+        if (journal != null) {
+            awaitJournal(List.of(journal.append(account)));
+        }
+        return account;
+    }
+
+    private void journaled(List<Account> accounts) {
+        if (journal == null || accounts.isEmpty()) {
+            return;
+        }
+        // Inside the transaction: flushing assigns the versions the journal records, and fails before anything
+        // is appended if the database rejects the changes
+        accountRepository.flush();
+        List<CompletableFuture<Void>> appended = new ArrayList<>(accounts.size());
+        for (Account account : accounts) {
+            appended.add(journal.append(account));
+        }
+        awaitJournal(appended);
+    }
+
+    private static void awaitJournal(List<CompletableFuture<Void>> appended) {
+        try {
+            CompletableFuture.allOf(appended.toArray(CompletableFuture[]::new)).join();
+        } catch (CompletionException e) {
+            throw new RuntimeException("Journal write failed: " + e.getCause().getMessage());
+        }
+    }
+
+    /*
+     * Account cache. A write puts the account it has committed, so the next read of it is a hit; a write that
+     * fails drops the cached account instead, as the failure may come from a change the cache has not seen.
+     */
+
+    private Account updated(Long accountId, Supplier<Account> update) {
+        Account account;
+        try {
+            account = journaled(update.get());
+        } catch (RuntimeException e) {
+            invalidate(accountId);
+            throw e;
+        }
+        cached(account);
+        return account;
+    }
+
+    private void cached(Account account) {
+        if (accountCache != null) {
+            accountCache.put(account);
+        }
+    }
+
+    private void invalidate(Long accountId) {
+        if (accountCache != null) {
+            accountCache.invalidate(accountId);
+        }
+    }
+
+    // Versions are assigned when the transaction flushes, and a rolled back batch must not reach the cache
+    private void cachedAfterCommit(List<Account> accounts) {
+        if (accountCache == null || accounts.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            accounts.forEach(accountCache::put);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                accounts.forEach(accountCache::put);
+            }
+        });
+    }
+
+    /**
+     * Ledger mode of {@link #applyTransactions}: every item is submitted before any result is awaited, and the
+     * items of one account reach its shard in request order.
+     */
+    private List<TransactionResult> applyTransactionsToLedger(List<TransactionRequest> requests) {
+        TransactionResult[] results = new TransactionResult[requests.size()];
+        List<CompletableFuture<Account>> submitted = new ArrayList<>(Collections.nCopies(requests.size(), null));
+        RateSnapshot rates = null;
+        for (int i = 0; i < requests.size(); i++) {
+            TransactionRequest request = requests.get(i) != null ? requests.get(i) : new TransactionRequest();
+            String error = validate(request);
+            if (error != null) {
+                results[i] = TransactionResult.rejected(request, error);
+                continue;
+            }
+            Currency accountCurrency;
+            try {
+                accountCurrency = ledgerEngine.currencyOf(request.getAccountId());
+            } catch (IllegalArgumentException e) {
+                results[i] = TransactionResult.rejected(request, e.getMessage());
+                continue;
+            }
+
+            long finalAmount = request.getAmount();
+            if (request.getCurrency() != accountCurrency) {
+                try {
+                    if (rates == null) {
+                        rates = currencyConversionService.getRates();
+                    }
+                    finalAmount = currencyConversionService.quote(rates, request.getCurrency(), accountCurrency,
+                            request.getAmount()).getConvertedAmount();
+                } catch (Exception e) {
+                    results[i] = TransactionResult.rejected(request, "Currency conversion failed: " + e.getMessage());
+                    continue;
+                }
+            }
+            submitted.set(i, request.getType() == TransactionType.DEPOSIT
+                    ? ledgerEngine.deposit(request.getAccountId(), finalAmount)
+                    : ledgerEngine.withdraw(request.getAccountId(), finalAmount));
+        }
+
+        List<Account> applied = new ArrayList<>();
+        for (int i = 0; i < requests.size(); i++) {
+            if (submitted.get(i) == null) {
+                continue;
+            }
+            try {
+                Account account = submitted.get(i).join();
+                applied.add(account);
+                results[i] = TransactionResult.applied(requests.get(i), account.getBalance());
+            } catch (CompletionException e) {
+                results[i] = TransactionResult.rejected(requests.get(i), e.getCause().getMessage());
+            }
+        }
+        if (journal != null && !applied.isEmpty()) {
+            awaitJournal(applied.stream().map(journal::append).toList());
+        }
+        log.debug("Applied transaction batch of {} items to the ledger", requests.size());
+        return Arrays.asList(results);
+    }
+
+    private static String validate(TransactionRequest request) {
+        if (request.getAccountId() == null || request.getType() == null || request.getCurrency() == null) {
+            return "accountId, type and currency are required";
+        }
+        if (request.getAmount() <= 0) {
+            return request.getType() == TransactionType.DEPOSIT
+                    ? "Deposit amount must be positive" : "Withdraw amount must be positive";
+        }
+        return null;
+    }
 }
@@ -0,0 +1,352 @@
+package com.demo.bank.account.service;
+
+import com.demo.bank.account.entity.Account;
+import com.demo.bank.account.entity.Currency;
+import com.demo.bank.account.repository.AccountRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionOperations;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Single-writer in-memory ledger behind account.update-mode=ledger. Accounts are partitioned by id onto a
+ * fixed number of shards; each shard is one thread that owns the balances of its accounts, so deposits and
+ * withdrawals are applied without locks or database round trips. Commands reach a shard through a lock-free
+ * queue and complete a future. Changed balances are written to the database in the background, coalesced
+ * per account.
+ * <p>
+ * The ledger must be the only writer of the balances while it runs: changes made to the account table by
+ * anything else after an account was loaded are overwritten, and acknowledged changes not yet written are
+ * lost if the process dies.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "account.update-mode", havingValue = "ledger")
+public class LedgerEngine {
+    // Commands a shard applies before handing the balances they changed to the writer
+    private static final int DRAIN_LIMIT = 256;
+    private static final String UPDATE_BALANCE = "UPDATE account SET balance = ?, version = ? WHERE id = ? AND version < ?";
+
+    private enum CommandType { LOAD, GET, DEPOSIT, WITHDRAW }
+
+    private final Function<Long, Optional<Account>> loader;
+    private final Consumer<Collection<Account>> writer;
+    private final Shard[] shards;
+    private final ScheduledExecutorService writerThread;
+    // Account currencies never change, so callers can convert amounts before submitting without asking the shard
+    private final ConcurrentHashMap<Long, Currency> currencies = new ConcurrentHashMap<>();
+    // Balances changed by the shards and not yet taken by the writer
+    private final ConcurrentLinkedQueue<Account> outbox = new ConcurrentLinkedQueue<>();
+    // Balances taken by the writer and not yet written, guarded by this
+    private final Map<Long, Account> unwritten = new HashMap<>();
+    private volatile boolean running = true;
+
+    @Autowired
+    public LedgerEngine(
+            AccountRepository accountRepository,
+            JdbcTemplate jdbcTemplate,
+            TransactionOperations transactionOperations,
+            @Value("${account.ledger.shards:4}") int shards,
+            @Value("${account.ledger.flush-interval:10ms}") Duration flushInterval) {
+        this(accountRepository::findById,
+                balances -> transactionOperations.executeWithoutResult(status ->
+                        jdbcTemplate.batchUpdate(UPDATE_BALANCE, balances, balances.size(), (statement, account) -> {
+                            statement.setLong(1, account.getBalance());
+                            statement.setLong(2, account.getVersion());
+                            statement.setLong(3, account.getId());
+                            statement.setLong(4, account.getVersion());
+                        })),
+                shards, flushInterval);
+    }
+
+    LedgerEngine(Function<Long, Optional<Account>> loader, Consumer<Collection<Account>> writer, int shards, Duration flushInterval) {
+        if (shards < 1) {
+            throw new IllegalArgumentException("Ledger shard count must be positive");
+        }
+        this.loader = loader;
+        this.writer = writer;
+        this.shards = new Shard[shards];
+        for (int i = 0; i < shards; i++) {
+            this.shards[i] = new Shard(i);
+        }
+        this.writerThread = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ledger-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = Math.max(flushInterval.toMillis(), 1);
+        writerThread.scheduleWithFixedDelay(this::flush, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return the currency of the account, loading the account into its shard on first use
+     * @throws IllegalArgumentException if there is no such account
+     */
+    public Currency currencyOf(long accountId) {
+        Currency currency = currencies.get(accountId);
+        if (currency != null) {
+            return currency;
+        }
+        Account account = loader.apply(accountId).orElseThrow(() -> new IllegalArgumentException("Account not found"));
+        // Queued before the currency is published, so every command for the account reaches the shard after it
+        shard(accountId).submit(new Command(CommandType.LOAD, accountId, 0, account));
+        currencies.putIfAbsent(accountId, account.getCurrency());
+        return account.getCurrency();
+    }
+
+    /**
+     * @return the currency of the account if it is loaded already, or null; never loads it
+     */
+    public Currency loadedCurrencyOf(long accountId) {
+        return currencies.get(accountId);
+    }
+
+    /**
+     * @return the account as last changed by the ledger, or null if there is no such account
+     */
+    public CompletableFuture<Account> get(long accountId) {
+        try {
+            currencyOf(accountId);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return submit(CommandType.GET, accountId, 0);
+    }
+
+    /**
+     * @param amount in minor units of the account currency
+     * @return the account after the deposit
+     */
+    public CompletableFuture<Account> deposit(long accountId, long amount) {
+        return submit(CommandType.DEPOSIT, accountId, amount);
+    }
+
+    /**
+     * @param amount in minor units of the account currency
+     * @return the account after the withdrawal, or a failure if its balance is lower than the amount
+     */
+    public CompletableFuture<Account> withdraw(long accountId, long amount) {
+        return submit(CommandType.WITHDRAW, accountId, amount);
+    }
+
+    public int getShards() {
+        return shards.length;
+    }
+
+    private CompletableFuture<Account> submit(CommandType type, long accountId, long amount) {
+        try {
+            currencyOf(accountId);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        Command command = new Command(type, accountId, amount, null);
+        shard(accountId).submit(command);
+        return command.result;
+    }
+
+    private Shard shard(long accountId) {
+        // Mix the bits first: sequential ids would otherwise fill the shards in turn rather than at random
+        long hash = accountId * 0x9E3779B97F4A7C15L;
+        return shards[Math.floorMod(hash ^ (hash >>> 32), shards.length)];
+    }
+
+    /**
+     * Writes the balances changed since the last flush, one batch for all of them. On failure they are kept
+     * and written with the next flush.
+     */
+    synchronized void flush() {
+        Account account;
+        while ((account = outbox.poll()) != null) {
+            unwritten.merge(account.getId(), account, (written, latest) -> latest.getVersion() > written.getVersion() ? latest : written);
+        }
+        if (unwritten.isEmpty()) {
+            return;
+        }
+        try {
+            writer.accept(unwritten.values());
+            log.debug("Wrote {} ledger balances", unwritten.size());
+            unwritten.clear();
+        } catch (RuntimeException e) {
+            log.warn("Failed to write {} ledger balances, retrying: {}", unwritten.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * Stops the shards once they have applied the commands already queued and writes the last balances.
+     */
+    @PreDestroy
+    public void close() {
+        running = false;
+        for (Shard shard : shards) {
+            LockSupport.unpark(shard.thread);
+        }
+        for (Shard shard : shards) {
+            try {
+                shard.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        writerThread.shutdownNow();
+        flush();
+    }
+
+    private static final class Command {
+        private final CommandType type;
+        private final long accountId;
+        private final long amount;
+        private final Account account;
+        private final CompletableFuture<Account> result = new CompletableFuture<>();
+        // Outcome, set by the shard thread and published once the batch is handed to the writer
+        private Account outcome;
+        private RuntimeException failure;
+
+        private Command(CommandType type, long accountId, long amount, Account account) {
+            this.type = type;
+            this.accountId = accountId;
+            this.amount = amount;
+            this.account = account;
+        }
+    }
+
+    private static final class Balance {
+        private final Account account;
+        private long balance;
+        private long version;
+
+        private Balance(Account account) {
+            this.account = account;
+            this.balance = account.getBalance();
+            this.version = account.getVersion();
+        }
+
+        private Account snapshot() {
+            return new Account(account, balance, version);
+        }
+    }
+
+    private final class Shard implements Runnable {
+        private final ConcurrentLinkedQueue<Command> queue = new ConcurrentLinkedQueue<>();
+        private final Thread thread;
+        private volatile boolean parked;
+        // Owned by the shard thread
+        private final Map<Long, Balance> balances = new HashMap<>();
+        private final Map<Long, Account> changed = new HashMap<>();
+        private final Command[] batch = new Command[DRAIN_LIMIT];
+
+        private Shard(int index) {
+            this.thread = new Thread(this, "ledger-shard-" + index);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        private void submit(Command command) {
+            queue.offer(command);
+            if (!running) {
+                // Raced with close(): the shard may already have stopped polling
+                if (queue.remove(command)) {
+                    command.result.completeExceptionally(new IllegalStateException("Ledger is shut down"));
+                }
+                return;
+            }
+            if (parked) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                Command command = queue.poll();
+                if (command == null) {
+                    if (!running) {
+                        return;
+                    }
+                    // Announce the park before the last look at the queue, so a producer either sees the flag or
+                    // its command is seen here
+                    parked = true;
+                    if (queue.isEmpty() && running) {
+                        LockSupport.park(this);
+                    }
+                    parked = false;
+                    continue;
+                }
+                int size = 0;
+                do {
+                    apply(command);
+                    batch[size++] = command;
+                } while (size < DRAIN_LIMIT && (command = queue.poll()) != null);
+                if (!changed.isEmpty()) {
+                    outbox.addAll(changed.values());
+                    changed.clear();
+                }
+                // Acknowledged once handed to the writer, so a flush after a completed command includes it.
+                // Futures complete on the shard thread: dependent stages must not block
+                for (int i = 0; i < size; i++) {
+                    Command done = batch[i];
+                    batch[i] = null;
+                    if (done.failure != null) {
+                        done.result.completeExceptionally(done.failure);
+                    } else {
+                        done.result.complete(done.outcome);
+                    }
+                }
+            }
+        }
+
+        private void apply(Command command) {
+            if (command.type == CommandType.LOAD) {
+                balances.putIfAbsent(command.accountId, new Balance(command.account));
+                return;
+            }
+            Balance balance = balances.get(command.accountId);
+            if (balance == null) {
+                command.failure = new IllegalArgumentException("Account not found");
+                return;
+            }
+            switch (command.type) {
+                case DEPOSIT -> {
+                    try {
+                        balance.balance = Math.addExact(balance.balance, command.amount);
+                    } catch (ArithmeticException e) {
+                        command.failure = new RuntimeException("Deposit failed. Balance out of range");
+                        return;
+                    }
+                }
+                case WITHDRAW -> {
+                    if (command.amount > balance.balance) {
+                        command.failure = new RuntimeException("Withdraw failed. Insufficient balance or invalid amount");
+                        return;
+                    }
+                    balance.balance -= command.amount;
+                }
+                default -> {
+                    command.outcome = balance.snapshot();
+                    return;
+                }
+            }
+            balance.version++;
+            command.outcome = balance.snapshot();
+            changed.put(command.accountId, command.outcome);
+        }
+    }
+}
@@ -2,17 +2,33 @@ package com.demo.bank.conversion.controller;
 
 import com.demo.bank.account.entity.Currency;
 import com.demo.bank.conversion.service.CurrencyConversionService;
-import com.demo.bank.conversion.entity.ConversionResponse;
+import com.demo.bank.conversion.entity.RateQuote;
+import com.demo.bank.conversion.entity.RateCacheStats;
+import com.demo.bank.conversion.entity.RateSnapshot;
 import com.demo.bank.utils.GlobalExceptionHandler;
+import com.demo.bank.utils.Money;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
+
 @Tag(name = "Currency Conversion API", description = "Convert between currencies using Frankfurter API")
 @RestController
 @RequestMapping("/api/currency")
@@ -28,6 +44,8 @@ import io.swagger.v3.oas.annotations.Parameter;
            content = @Content(schema = @Schema(implementation = GlobalExceptionHandler.class, hidden = true)))
    })
 public class CurrencyConversionController {
+    private static final JsonFactory JSON = new JsonFactory();
+
     private final CurrencyConversionService currencyConversionService;
 
     public CurrencyConversionController(CurrencyConversionService currencyConversionService) {
@@ -36,12 +54,107 @@ public class CurrencyConversionController {
 
     @Operation(summary = "Convert amount from one currency to another")
     @GetMapping("/convert")
-    public ConversionResponse convert(
-        @Parameter(description = "Amount to convert") @RequestParam double amount,
+    public CompletableFuture<RateQuote> convert(
+        @Parameter(description = "Amount to convert, with at most two decimal places", schema = @Schema(type = "number"))
+        @RequestParam String amount,
         @Parameter(description = "Source currency code") @RequestParam Currency from,
-        @Parameter(description = "Target currency code") @RequestParam Currency to) {
-        double converted = currencyConversionService.convert(from, to, amount);
-        double rate = converted / amount;
-        return new ConversionResponse(amount, from, to, rate, converted);
+        @Parameter(description = "Target currency code") @RequestParam Currency to,
+        @Parameter(description = "Convert at the rate in effect on this date (yyyy-MM-dd); latest rate if omitted")
+        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        long minorAmount = Money.parse(amount);
+        // The servlet thread is released while the rate is being fetched
+        return date == null
+                ? currencyConversionService.quoteAsync(from, to, minorAmount)
+                : currencyConversionService.quoteAsync(from, to, minorAmount, date);
+    }
+
+    @Operation(summary = "Convert a batch of amounts",
+        description = "Request body: JSON array of {\"amount\", \"from\", \"to\"} items. All items are converted with the same "
+            + "rates and the results are returned in request order; an item that cannot be converted gets an \"error\" "
+            + "instead of a rate. Both bodies are streamed, so the batch size is not limited by memory.")
+    @PostMapping(value = "/convert/batch", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> convertBatch(InputStream body) throws IOException {
+        JsonParser parser = JSON.createParser(body);
+        if (parser.nextToken() != JsonToken.START_ARRAY) {
+            parser.close();
+            throw new IllegalArgumentException("Request body must be a JSON array of conversions");
+        }
+        RateSnapshot rates = currencyConversionService.getRates();
+
+        StreamingResponseBody results = out -> {
+            try (parser; JsonGenerator generator = JSON.createGenerator(out)) {
+                generator.writeStartArray();
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    writeConversion(generator, parser, rates);
+                }
+                if (parser.currentToken() != JsonToken.END_ARRAY) {
+                    // Part of the response is already sent: end it without closing the array, so it fails to parse
+                    throw new IllegalArgumentException("Expected a conversion object but found " + parser.currentToken());
+                }
+                generator.writeEndArray();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(results);
+    }
+
+    private void writeConversion(JsonGenerator generator, JsonParser parser, RateSnapshot rates) throws IOException {
+        String amount = null;
+        String from = null;
+        String to = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                // Read from the number's text, so no precision is lost to a double
+                case "amount" -> amount = parser.currentToken().isNumeric() ? parser.getText() : null;
+                case "from" -> from = parser.getValueAsString();
+                case "to" -> to = parser.getValueAsString();
+                default -> parser.skipChildren();
+            }
+        }
+
+        generator.writeStartObject();
+        try {
+            if (amount == null || from == null || to == null) {
+                throw new IllegalArgumentException("amount, from and to are required");
+            }
+            RateQuote quote = currencyConversionService.quote(rates, currency(from), currency(to), Money.parse(amount));
+            generator.writeFieldName("amount");
+            generator.writeNumber(Money.format(quote.getAmount()));
+            generator.writeStringField("from", quote.getFrom().name());
+            generator.writeStringField("to", quote.getTo().name());
+            generator.writeFieldName("rate");
+            generator.writeNumber(Money.formatRate(quote.getRate()));
+            generator.writeFieldName("convertedAmount");
+            generator.writeNumber(Money.format(quote.getConvertedAmount()));
+            if (quote.getRateDate() != null) {
+                generator.writeStringField("rateDate", quote.getRateDate().toString());
+            }
+            generator.writeStringField("source", quote.getSource().name());
+        } catch (RuntimeException e) {
+            // One bad item does not fail the batch
+            if (amount != null) {
+                generator.writeFieldName("amount");
+                generator.writeNumber(amount);
+            }
+            generator.writeStringField("from", from);
+            generator.writeStringField("to", to);
+            generator.writeStringField("error", e.getMessage());
+        }
+        generator.writeEndObject();
+    }
+
+    private static Currency currency(String code) {
+        try {
+            return Currency.valueOf(code);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown currency: " + code);
+        }
+    }
+
+    @Operation(summary = "Get exchange rate cache statistics")
+    @GetMapping("/cache/stats")
+    public RateCacheStats cacheStats() {
+        return currencyConversionService.getCacheStats();
     }
 }
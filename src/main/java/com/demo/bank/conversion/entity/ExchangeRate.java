@@ -0,0 +1,22 @@
+package com.demo.bank.conversion.entity;
+
+import lombok.Getter;
+
+import java.time.LocalDate;
+
+/**
+ * A rate as looked up by the repository, with the date it was published for and where it came from.
+ */
+@Getter
+public class ExchangeRate {
+    private final double rate;
+    // Null for fallback and same-currency rates, which are not published by anyone
+    private final LocalDate date;
+    private final RateSource source;
+
+    public ExchangeRate(double rate, LocalDate date, RateSource source) {
+        this.rate = rate;
+        this.date = date;
+        this.source = source;
+    }
+}
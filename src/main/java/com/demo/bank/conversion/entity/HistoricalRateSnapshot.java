@@ -0,0 +1,37 @@
+package com.demo.bank.conversion.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.Getter;
+
+import java.time.LocalDate;
+
+/**
+ * One published rate snapshot in the persisted rate history. The rates are kept in the compact
+ * snapshot file encoding, so a whole history loads with one query and no per-currency rows.
+ */
+@Getter
+@Entity
+public class HistoricalRateSnapshot {
+    @Id
+    private LocalDate rateDate;
+    // Last day on which these rates are known to be the ones in effect (weekends, holidays)
+    private LocalDate coveredThrough;
+    @Column(length = 1024)
+    private byte[] rates;
+
+    public HistoricalRateSnapshot() {}
+
+    public HistoricalRateSnapshot(LocalDate rateDate, LocalDate coveredThrough, byte[] rates) {
+        this.rateDate = rateDate;
+        this.coveredThrough = coveredThrough;
+        this.rates = rates;
+    }
+
+    public void extendCoverage(LocalDate through) {
+        if (through.isAfter(coveredThrough)) {
+            coveredThrough = through;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.demo.bank.conversion.entity;
+
+import lombok.Getter;
+
+@Getter
+public class RateCacheStats {
+    private final long hits;
+    private final long misses;
+    private final long refreshes;
+    // Lookups that joined an upstream fetch already in progress instead of starting their own
+    private final long coalesced;
+    // Fetches started ahead of a lookup that was going to need the rates; not counted as misses
+    private final long prefetches;
+
+    public RateCacheStats(long hits, long misses, long refreshes, long coalesced, long prefetches) {
+        this.hits = hits;
+        this.misses = misses;
+        this.refreshes = refreshes;
+        this.coalesced = coalesced;
+        this.prefetches = prefetches;
+    }
+
+    public double getHitRatio() {
+        long total = hits + misses;
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+}
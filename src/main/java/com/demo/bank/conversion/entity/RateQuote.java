@@ -0,0 +1,43 @@
+package com.demo.bank.conversion.entity;
+
+import com.demo.bank.account.entity.Currency;
+import com.demo.bank.utils.MoneyJson;
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import lombok.Getter;
+
+import java.time.LocalDate;
+
+/**
+ * Result of one rate lookup: the rate and the amount converted at it, so callers never have to work one out from
+ * the other, plus the date the rate was published for and where it came from.
+ */
+@Getter
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class RateQuote {
+    // Amounts in minor units and the rate scaled by 10^8, see Money
+    @JsonSerialize(using = MoneyJson.AmountSerializer.class)
+    private final long amount;
+    private final Currency from;
+    private final Currency to;
+    @JsonSerialize(using = MoneyJson.RateSerializer.class)
+    private final long rate;
+    @JsonSerialize(using = MoneyJson.AmountSerializer.class)
+    private final long convertedAmount;
+    // Null for fallback and same-currency quotes
+    @JsonFormat(shape = JsonFormat.Shape.STRING)
+    private final LocalDate rateDate;
+    private final RateSource source;
+
+    public RateQuote(long amount, Currency from, Currency to, long rate, long convertedAmount, LocalDate rateDate,
+                     RateSource source) {
+        this.amount = amount;
+        this.from = from;
+        this.to = to;
+        this.rate = rate;
+        this.convertedAmount = convertedAmount;
+        this.rateDate = rateDate;
+        this.source = source;
+    }
+}
@@ -0,0 +1,47 @@
+package com.demo.bank.conversion.entity;
+
+import com.demo.bank.account.entity.Currency;
+import lombok.Getter;
+
+import java.time.LocalDate;
+
+/**
+ * Immutable set of exchange rates taken from a single upstream response.
+ * All pairs are derived by triangulation through the snapshot base currency,
+ * so the rates in one snapshot are always consistent with each other.
+ */
+public class RateSnapshot {
+    private static final int CURRENCY_COUNT = Currency.values().length;
+
+    @Getter
+    private final LocalDate date;
+    // crossRates[from.ordinal()][to.ordinal()], NaN when a currency is not quoted
+    private final double[][] crossRates;
+
+    private RateSnapshot(LocalDate date, double[][] crossRates) {
+        this.date = date;
+        this.crossRates = crossRates;
+    }
+
+    /**
+     * Builds the full cross-rate matrix from rates quoted against one base currency.
+     *
+     * @param baseRates units of each currency per one unit of the base, indexed by ordinal; NaN if not quoted
+     */
+    public static RateSnapshot fromBaseRates(LocalDate date, double[] baseRates) {
+        double[][] crossRates = new double[CURRENCY_COUNT][CURRENCY_COUNT];
+        for (int from = 0; from < CURRENCY_COUNT; from++) {
+            for (int to = 0; to < CURRENCY_COUNT; to++) {
+                crossRates[from][to] = from == to ? 1.0 : baseRates[to] / baseRates[from];
+            }
+        }
+        return new RateSnapshot(date, crossRates);
+    }
+
+    /**
+     * @return the rate for the pair, or NaN if the snapshot does not quote one of the currencies
+     */
+    public double getRate(Currency from, Currency to) {
+        return crossRates[from.ordinal()][to.ordinal()];
+    }
+}
@@ -0,0 +1,15 @@
+package com.demo.bank.conversion.entity;
+
+/**
+ * Where the rate of a quote came from.
+ */
+public enum RateSource {
+    // Fetched from the upstream API for this lookup, or for one it joined
+    LIVE,
+    // A snapshot fetched earlier: the rate cache, the rate history or the snapshot file
+    CACHED,
+    // Built-in rates, used while no snapshot quoting the pair is available
+    FALLBACK,
+    // Same currency on both sides: nothing was looked up
+    IDENTITY;
+}
@@ -1,67 +1,370 @@
 package com.demo.bank.conversion.repository;
 
 import com.demo.bank.account.entity.Currency;
+import com.demo.bank.conversion.entity.ExchangeRate;
+import com.demo.bank.conversion.entity.RateCacheStats;
+import com.demo.bank.conversion.entity.RateSnapshot;
+import com.demo.bank.conversion.entity.RateSource;
+import com.demo.bank.utils.CircuitBreaker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
-import org.springframework.web.client.RestTemplate;
-import org.springframework.http.ResponseEntity;
-import org.springframework.web.util.UriComponentsBuilder;
-import org.json.JSONObject;
-import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
-import javax.net.ssl.SSLContext;
-import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
-import org.apache.hc.client5.http.impl.classic.HttpClients;
-import org.apache.hc.client5.http.ssl.SSLConnectionSocketFactory;
-import org.apache.hc.client5.http.ssl.TrustAllStrategy;
-import org.apache.hc.core5.ssl.SSLContextBuilder;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
 @Slf4j
 @Repository
 public class CurrencyConversionRepository {
-    private static final String FRANKFURTER_API_URL = "https://api.frankfurter.dev/v1/latest";
-    //documentation https://frankfurter.dev/
-    private final RestTemplate restTemplate;
+    private static final ExchangeRate IDENTITY = new ExchangeRate(1.0, null, RateSource.IDENTITY);
+
+    private final FrankfurterClient frankfurterClient;
+    // Present only when conversion.rates.source=file; Frankfurter is then never called
+    private final SnapshotFileRateSource fileSource;
+    private final RateHistory rateHistory;
+    // Indexed by currency ordinals, then by rate source ordinal: registered once, only incremented per conversion
+    private final Counter[][][] conversions;
+    private final Counter[][] fallbacks;
+
+    // Rate cache: a single snapshot covering every currency pair
+    private volatile CachedSnapshot cachedSnapshot;
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    // Single-flight: the upstream fetch currently in progress, shared by every caller that needs it
+    private final AtomicReference<CompletableFuture<RateSnapshot>> inFlight = new AtomicReference<>();
+    private final long ttlNanos;
+    private final long refreshAheadNanos;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder prefetches = new LongAdder();
+
+    @Autowired
+    public CurrencyConversionRepository(
+            FrankfurterClient frankfurterClient,
+            Optional<SnapshotFileRateSource> fileSource,
+            RateHistory rateHistory,
+            @Value("${conversion.cache.ttl:1h}") Duration cacheTtl,
+            @Value("${conversion.cache.refresh-ahead:5m}") Duration refreshAhead,
+            MeterRegistry meterRegistry) {
+        this.frankfurterClient = frankfurterClient;
+        this.fileSource = fileSource.orElse(null);
+        this.rateHistory = rateHistory;
+        this.conversions = conversionCounters(meterRegistry);
+        this.fallbacks = fallbackCounters(meterRegistry);
+        this.ttlNanos = cacheTtl.toNanos();
+        this.refreshAheadNanos = Math.min(refreshAhead.toNanos(), ttlNanos);
+    }
+
+    public ExchangeRate getExchangeRate(Currency from, Currency to) {
+        if (from == to) {
+            return counted(from, to, IDENTITY);
+        }
+        return counted(from, to, exchangeRate(lookup(), from, to));
+    }
 
-    public CurrencyConversionRepository() {
-        this.restTemplate = createRestTemplateWithTrustedSSL();
+    public CompletableFuture<ExchangeRate> getExchangeRateAsync(Currency from, Currency to) {
+        if (from == to) {
+            return CompletableFuture.completedFuture(counted(from, to, IDENTITY));
+        }
+        return lookupAsync().thenApply(lookup -> counted(from, to, exchangeRate(lookup, from, to)));
     }
 
-    private RestTemplate createRestTemplateWithTrustedSSL() {
+    /**
+     * Rate for the pair in a snapshot previously obtained from {@link #getSnapshot()}, with the same
+     * fallback as the live lookups. Lets a caller price many amounts against one consistent set of rates.
+     */
+    public ExchangeRate getExchangeRate(RateSnapshot snapshot, Currency from, Currency to) {
+        if (from == to) {
+            return counted(from, to, IDENTITY);
+        }
+        return counted(from, to, exchangeRate(new Lookup(snapshot, RateSource.CACHED), from, to));
+    }
+
+    /**
+     * Rate in effect on the given date, served from the rate history.
+     */
+    public ExchangeRate getExchangeRate(Currency from, Currency to, LocalDate date) {
         try {
-            SSLContext sslContext = SSLContextBuilder.create()
-                    .loadTrustMaterial(TrustAllStrategy.INSTANCE)
-                    .build();
+            return getExchangeRateAsync(from, to, date).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    public CompletableFuture<ExchangeRate> getExchangeRateAsync(Currency from, Currency to, LocalDate date) {
+        if (from == to) {
+            return CompletableFuture.completedFuture(counted(from, to, IDENTITY));
+        }
+        RateSnapshot known = rateHistory.find(date);
+        if (known == null && fileSource != null) {
+            // Frankfurter is never called in file mode: dates the history does not cover are served from the file
+            // if it was published by then, and fail otherwise
+            try {
+                known = fileSnapshotOn(date);
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        RateSource source = known != null ? RateSource.CACHED : RateSource.LIVE;
+        CompletableFuture<RateSnapshot> snapshot = known != null
+                ? CompletableFuture.completedFuture(known)
+                : rateHistory.getSnapshotAsync(date);
+        return snapshot.thenApply(rates -> {
+            double rate = rates.getRate(from, to);
+            if (Double.isNaN(rate)) {
+                throw new RuntimeException("Currency conversion not supported: from " + from + " to " + to + " on " + date);
+            }
+            return counted(from, to, new ExchangeRate(rate, rates.getDate(), source));
+        });
+    }
 
-            CloseableHttpClient httpClient = HttpClients.custom()
-                    .setConnectionManager(org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder.create()
-                            .setSSLSocketFactory(new SSLConnectionSocketFactory(sslContext, (hostname, session) -> true))
-                            .build())
-                    .build();
+    private RateSnapshot fileSnapshotOn(LocalDate date) {
+        if (date.isAfter(LocalDate.now())) {
+            throw new IllegalArgumentException("Date must not be in the future");
+        }
+        RateSnapshot file = fileSource.getSnapshot();
+        if (date.isBefore(file.getDate())) {
+            throw new RuntimeException("No exchange rates available for " + date + ": the rate snapshot file is of "
+                    + file.getDate());
+        }
+        return file;
+    }
 
-            return new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
-        } catch (Exception e) {
-            log.warn("Failed to create SSL-enabled RestTemplate, using default: {}", e.getMessage());
-            return new RestTemplate();
+    /**
+     * @return the current rate snapshot, the last known one if the API is unavailable,
+     * or null if no snapshot was ever fetched
+     */
+    public RateSnapshot getSnapshot() {
+        return lookup().snapshot();
+    }
+
+    /**
+     * Same as {@link #getSnapshot()}, but a cache miss does not block the calling thread.
+     */
+    public CompletableFuture<RateSnapshot> getSnapshotAsync() {
+        return lookupAsync().thenApply(Lookup::snapshot);
+    }
+
+    /**
+     * Starts fetching the rates if the cache has no usable snapshot, without waiting for them. A caller that
+     * needs rates only after other slow work, such as reading an account, calls this first: by the time it
+     * looks the rates up they are cached, or it joins the fetch already in progress.
+     */
+    public void prefetch() {
+        if (fileSource != null || inFlight.get() != null) {
+            return;
+        }
+        CachedSnapshot cached = cachedSnapshot;
+        if (cached == null || (System.nanoTime() - cached.expiresAt >= 0 && !refreshing.get())) {
+            // Not a miss: no lookup is waiting for it yet
+            prefetches.increment();
+            fetchLookup();
         }
     }
 
-    public double getConversionRate(Currency from, Currency to) {
+    /**
+     * Writes the current rates to a snapshot file that can later be served with conversion.rates.source=file.
+     */
+    public RateSnapshot dumpSnapshot(Path file) {
+        RateSnapshot snapshot = getSnapshot();
+        if (snapshot == null) {
+            throw new RuntimeException("No exchange rates available to dump");
+        }
         try {
-            // Try to fetch real conversion rate from Frankfurter API
-            String url = UriComponentsBuilder.fromUriString(FRANKFURTER_API_URL)
-                    .queryParam("base", from.toString())
-                    .queryParam("symbols", to.toString())
-                    .toUriString();
+            RateSnapshotFile.write(file, snapshot, FrankfurterClient.SNAPSHOT_BASE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write rate snapshot file " + file + ": " + e.getMessage(), e);
+        }
+        return snapshot;
+    }
+
+    public RateCacheStats getCacheStats() {
+        return new RateCacheStats(hits.sum(), misses.sum(), refreshes.sum(), coalesced.sum(), prefetches.sum());
+    }
 
-            ResponseEntity<String> response = restTemplate.getForEntity(url, String.class);
-            JSONObject json = new JSONObject(response.getBody());
-            JSONObject rates = json.getJSONObject("rates");
-            return rates.getDouble(to.toString());
-        } catch (Exception e) {
-            // Fallback to mock rates if API fails
-            log.warn("Frankfurter API failed, using mock rates: {}", e.getMessage());
-            return getMockConversionRate(from.toString(), to.toString());
+    private Lookup lookup() {
+        if (fileSource != null) {
+            return new Lookup(fileSource.getSnapshot(), RateSource.CACHED);
         }
+        RateSnapshot cached = getCachedSnapshot();
+        return cached != null ? new Lookup(cached, RateSource.CACHED) : loadSnapshot().join();
+    }
+
+    private CompletableFuture<Lookup> lookupAsync() {
+        if (fileSource != null) {
+            return CompletableFuture.completedFuture(new Lookup(fileSource.getSnapshot(), RateSource.CACHED));
+        }
+        RateSnapshot cached = getCachedSnapshot();
+        return cached != null ? CompletableFuture.completedFuture(new Lookup(cached, RateSource.CACHED)) : loadSnapshot();
+    }
+
+    private RateSnapshot getCachedSnapshot() {
+        CachedSnapshot cached = cachedSnapshot;
+        if (cached == null) {
+            return null;
+        }
+        long now = System.nanoTime();
+        if (now - cached.expiresAt < 0) {
+            hits.increment();
+            if (now - cached.refreshAt >= 0) {
+                scheduleRefresh();
+            }
+            return cached.snapshot;
+        }
+        // Expired, but a refresh is already on its way: keep serving the stale snapshot
+        if (refreshing.get()) {
+            hits.increment();
+            return cached.snapshot;
+        }
+        return null;
+    }
+
+    private CompletableFuture<Lookup> loadSnapshot() {
+        misses.increment();
+        return fetchLookup();
+    }
+
+    private CompletableFuture<Lookup> fetchLookup() {
+        return fetchShared()
+                .thenApply(snapshot -> new Lookup(snapshot, RateSource.LIVE))
+                .exceptionally(e -> {
+                    // Serve the last known rates if there are any, otherwise callers fall back to mock rates
+                    CachedSnapshot lastKnown = cachedSnapshot;
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    if (cause instanceof CircuitBreaker.CallNotPermittedException) {
+                        log.debug("Frankfurter API unavailable: {}", cause.getMessage());
+                    } else {
+                        log.warn("Frankfurter API failed, using {} rates: {}",
+                                lastKnown != null ? "last known" : "mock", cause.getMessage());
+                    }
+                    return new Lookup(lastKnown != null ? lastKnown.snapshot : null, RateSource.CACHED);
+                });
+    }
+
+    private void scheduleRefresh() {
+        if (!refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        fetchShared().whenComplete((snapshot, e) -> {
+            if (e == null) {
+                refreshes.increment();
+            } else {
+                log.warn("Background rate refresh failed, keeping cached snapshot: {}", e.getMessage());
+            }
+            refreshing.set(false);
+        });
+    }
+
+    /**
+     * Starts an upstream fetch, or joins the one already in progress, so a cold start or an
+     * expired cache results in a single Frankfurter call no matter how many callers are waiting.
+     */
+    private CompletableFuture<RateSnapshot> fetchShared() {
+        while (true) {
+            CompletableFuture<RateSnapshot> current = inFlight.get();
+            if (current != null) {
+                coalesced.increment();
+                return current;
+            }
+            CompletableFuture<RateSnapshot> fetch = new CompletableFuture<>();
+            if (!inFlight.compareAndSet(null, fetch)) {
+                continue;
+            }
+            CompletableFuture<RateSnapshot> upstream;
+            try {
+                upstream = frankfurterClient.fetchLatest();
+            } catch (RuntimeException e) {
+                upstream = CompletableFuture.failedFuture(e);
+            }
+            upstream.whenComplete((snapshot, e) -> {
+                // Publish the result before clearing the flight, so later callers find it in the cache
+                if (e == null) {
+                    cachedSnapshot = new CachedSnapshot(snapshot, System.nanoTime());
+                }
+                inFlight.set(null);
+                if (e == null) {
+                    fetch.complete(snapshot);
+                    // After the waiters are released: the history write involves the database
+                    recordHistory(snapshot);
+                } else {
+                    fetch.completeExceptionally(e);
+                }
+            });
+            return fetch;
+        }
+    }
+
+    private void recordHistory(RateSnapshot snapshot) {
+        try {
+            rateHistory.recordLatest(snapshot);
+        } catch (RuntimeException e) {
+            log.warn("Failed to record rate snapshot of {} in history: {}", snapshot.getDate(), e.getMessage());
+        }
+    }
+
+    private ExchangeRate exchangeRate(Lookup lookup, Currency from, Currency to) {
+        RateSnapshot snapshot = lookup.snapshot();
+        double rate = snapshot == null ? Double.NaN : snapshot.getRate(from, to);
+        if (Double.isNaN(rate)) {
+            ExchangeRate fallback = new ExchangeRate(getMockConversionRate(from.toString(), to.toString()), null, RateSource.FALLBACK);
+            fallbacks[from.ordinal()][to.ordinal()].increment();
+            return fallback;
+        }
+        return new ExchangeRate(rate, snapshot.getDate(), lookup.source());
+    }
+
+    // Every conversion looks up exactly one rate, so this counts conversions per pair and by where the rate came from
+    private ExchangeRate counted(Currency from, Currency to, ExchangeRate rate) {
+        conversions[from.ordinal()][to.ordinal()][rate.getSource().ordinal()].increment();
+        return rate;
+    }
+
+    private static Counter[][][] conversionCounters(MeterRegistry meterRegistry) {
+        Currency[] currencies = Currency.values();
+        RateSource[] sources = RateSource.values();
+        Counter[][][] counters = new Counter[currencies.length][currencies.length][sources.length];
+        for (Currency from : currencies) {
+            for (Currency to : currencies) {
+                for (RateSource source : sources) {
+                    counters[from.ordinal()][to.ordinal()][source.ordinal()] = Counter.builder("bank.conversions")
+                            .description("Currency conversions by pair and rate source")
+                            .tag("from", from.name())
+                            .tag("to", to.name())
+                            .tag("source", source.name())
+                            .register(meterRegistry);
+                }
+            }
+        }
+        return counters;
+    }
+
+    private static Counter[][] fallbackCounters(MeterRegistry meterRegistry) {
+        Currency[] currencies = Currency.values();
+        Counter[][] counters = new Counter[currencies.length][currencies.length];
+        for (Currency from : currencies) {
+            for (Currency to : currencies) {
+                counters[from.ordinal()][to.ordinal()] = Counter.builder("bank.conversion.fallbacks")
+                        .description("Conversions priced at the built-in mock rates because no exchange rates were available")
+                        .tag("from", from.name())
+                        .tag("to", to.name())
+                        .register(meterRegistry);
+            }
+        }
+        return counters;
     }
 
     private double getMockConversionRate(String from, String to) {
@@ -77,4 +380,20 @@ public class CurrencyConversionRepository {
         // If not found, throw error
         throw new RuntimeException("Currency conversion not supported: from " + from + " to " + to);
     }
+
+    // A snapshot and how this lookup got it; no snapshot if there are no rates at all
+    private record Lookup(RateSnapshot snapshot, RateSource source) {
+    }
+
+    private final class CachedSnapshot {
+        private final RateSnapshot snapshot;
+        private final long refreshAt;
+        private final long expiresAt;
+
+        private CachedSnapshot(RateSnapshot snapshot, long fetchedAt) {
+            this.snapshot = snapshot;
+            this.expiresAt = fetchedAt + ttlNanos;
+            this.refreshAt = expiresAt - refreshAheadNanos;
+        }
+    }
 }
@@ -0,0 +1,212 @@
+package com.demo.bank.conversion.repository;
+
+import com.demo.bank.account.entity.Currency;
+import com.demo.bank.conversion.entity.RateSnapshot;
+import com.demo.bank.utils.CircuitBreaker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.UriComponentsBuilder;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Non-blocking client for the Frankfurter exchange rate API.
+ */
+@Slf4j
+@Component
+public class FrankfurterClient {
+    //documentation https://frankfurter.dev/
+    // All rates are fetched against one base and every other pair is triangulated from it
+    static final Currency SNAPSHOT_BASE = Currency.EUR;
+
+    private final HttpClient httpClient;
+    private final String baseUrl;
+    private final Duration readTimeout;
+    private final CircuitBreaker circuitBreaker;
+    private final EndpointMeters latestMeters;
+    private final EndpointMeters timeSeriesMeters;
+
+    @Autowired
+    public FrankfurterClient(
+            @Value("${conversion.frankfurter.url:https://api.frankfurter.dev/v1}") String baseUrl,
+            @Value("${conversion.frankfurter.connect-timeout:1s}") Duration connectTimeout,
+            @Value("${conversion.frankfurter.read-timeout:2s}") Duration readTimeout,
+            @Value("${conversion.frankfurter.circuit-breaker.failure-threshold:5}") int failureThreshold,
+            @Value("${conversion.frankfurter.circuit-breaker.slow-call-threshold:1s}") Duration slowCallThreshold,
+            @Value("${conversion.frankfurter.circuit-breaker.open-duration:30s}") Duration openDuration,
+            MeterRegistry meterRegistry) {
+        this(createHttpClientWithTrustedSSL(connectTimeout), baseUrl, readTimeout,
+                new CircuitBreaker("frankfurter", failureThreshold, slowCallThreshold, openDuration), meterRegistry);
+    }
+
+    FrankfurterClient(HttpClient httpClient, String baseUrl, Duration readTimeout, CircuitBreaker circuitBreaker,
+                      MeterRegistry meterRegistry) {
+        this.httpClient = httpClient;
+        this.baseUrl = baseUrl;
+        this.readTimeout = readTimeout;
+        this.circuitBreaker = circuitBreaker;
+        this.latestMeters = new EndpointMeters("latest", meterRegistry);
+        this.timeSeriesMeters = new EndpointMeters("timeseries", meterRegistry);
+    }
+
+    private static HttpClient createHttpClientWithTrustedSSL(Duration connectTimeout) {
+        HttpClient.Builder builder = HttpClient.newBuilder().connectTimeout(connectTimeout);
+        try {
+            SSLContext sslContext = SSLContext.getInstance("TLS");
+            sslContext.init(null, new TrustManager[]{new TrustAllManager()}, null);
+            builder.sslContext(sslContext);
+        } catch (Exception e) {
+            log.warn("Failed to create SSL-enabled HttpClient, using default: {}", e.getMessage());
+        }
+        return builder.build();
+    }
+
+    public CircuitBreaker.State getCircuitState() {
+        return circuitBreaker.getState();
+    }
+
+    /**
+     * Fetches every published rate against the snapshot base in one call.
+     * Futures returned by this client complete on the HTTP client's threads, never on the caller's.
+     * They fail within the read timeout, or immediately while the circuit breaker is open.
+     */
+    public CompletableFuture<RateSnapshot> fetchLatest() {
+        URI uri = UriComponentsBuilder.fromUriString(baseUrl)
+                .path("/latest")
+                .queryParam("base", SNAPSHOT_BASE.toString())
+                .build()
+                .toUri();
+        return get(uri, latestMeters).thenApply(FrankfurterClient::parseSnapshot);
+    }
+
+    /**
+     * Fetches the rates of every business day in the range with one call, oldest first.
+     * Frankfurter starts the series at the last publication on or before {@code start}.
+     */
+    public CompletableFuture<List<RateSnapshot>> fetchTimeSeries(LocalDate start, LocalDate end) {
+        URI uri = UriComponentsBuilder.fromUriString(baseUrl)
+                .path("/" + start + ".." + end)
+                .queryParam("base", SNAPSHOT_BASE.toString())
+                .build()
+                .toUri();
+        return get(uri, timeSeriesMeters).thenApply(FrankfurterClient::parseTimeSeries);
+    }
+
+    private CompletableFuture<String> get(URI uri, EndpointMeters meters) {
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .header("Accept", "application/json")
+                .timeout(readTimeout)
+                .GET()
+                .build();
+
+        long start = System.nanoTime();
+        return circuitBreaker.execute(() -> httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .orTimeout(readTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                .thenApply(response -> {
+                    if (response.statusCode() != 200) {
+                        throw new IllegalStateException("Frankfurter API returned HTTP " + response.statusCode());
+                    }
+                    return response.body();
+                }))
+                .whenComplete((body, e) -> meters.record(start, e));
+    }
+
+    /*
+     * Metrics: bank.frankfurter.requests times every call that reached the API, tagged with the endpoint and
+     * whether it succeeded (timeouts and non-200 responses are errors). Calls refused by the open circuit breaker
+     * never reach it and are only counted, in bank.frankfurter.short-circuited.
+     */
+
+    private record EndpointMeters(Timer success, Timer error, Counter shortCircuited) {
+        EndpointMeters(String endpoint, MeterRegistry meterRegistry) {
+            this(requestTimer(endpoint, "success", meterRegistry), requestTimer(endpoint, "error", meterRegistry),
+                    Counter.builder("bank.frankfurter.short-circuited")
+                            .description("Frankfurter calls refused by the open circuit breaker")
+                            .tag("endpoint", endpoint)
+                            .register(meterRegistry));
+        }
+
+        private static Timer requestTimer(String endpoint, String outcome, MeterRegistry meterRegistry) {
+            return Timer.builder("bank.frankfurter.requests")
+                    .description("Latency of the calls to the Frankfurter exchange rate API")
+                    .tag("endpoint", endpoint)
+                    .tag("outcome", outcome)
+                    .register(meterRegistry);
+        }
+
+        void record(long start, Throwable e) {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof CircuitBreaker.CallNotPermittedException) {
+                shortCircuited.increment();
+                return;
+            }
+            (cause == null ? success : error).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    static RateSnapshot parseSnapshot(String body) {
+        JSONObject json = new JSONObject(body);
+        return toSnapshot(LocalDate.parse(json.getString("date")), json.getJSONObject("rates"));
+    }
+
+    static List<RateSnapshot> parseTimeSeries(String body) {
+        JSONObject rates = new JSONObject(body).getJSONObject("rates");
+        List<RateSnapshot> snapshots = new ArrayList<>(rates.length());
+        // keys() rather than keySet(): the latter is missing from the android-json flavour of org.json on some classpaths
+        TreeSet<String> dates = new TreeSet<>();
+        rates.keys().forEachRemaining(dates::add);
+        for (String date : dates) {
+            snapshots.add(toSnapshot(LocalDate.parse(date), rates.getJSONObject(date)));
+        }
+        return snapshots;
+    }
+
+    private static RateSnapshot toSnapshot(LocalDate date, JSONObject rates) {
+        double[] baseRates = new double[Currency.values().length];
+        Arrays.fill(baseRates, Double.NaN);
+        baseRates[SNAPSHOT_BASE.ordinal()] = 1.0;
+        for (Currency currency : Currency.values()) {
+            if (rates.has(currency.toString())) {
+                baseRates[currency.ordinal()] = rates.getDouble(currency.toString());
+            }
+        }
+        return RateSnapshot.fromBaseRates(date, baseRates);
+    }
+
+    private static final class TrustAllManager implements X509TrustManager {
+        @Override
+        public void checkClientTrusted(X509Certificate[] chain, String authType) {
+        }
+
+        @Override
+        public void checkServerTrusted(X509Certificate[] chain, String authType) {
+        }
+
+        @Override
+        public X509Certificate[] getAcceptedIssuers() {
+            return new X509Certificate[0];
+        }
+    }
+}
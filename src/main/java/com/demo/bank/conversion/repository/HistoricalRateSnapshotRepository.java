@@ -0,0 +1,11 @@
+package com.demo.bank.conversion.repository;
+
+import com.demo.bank.conversion.entity.HistoricalRateSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface HistoricalRateSnapshotRepository extends JpaRepository<HistoricalRateSnapshot, LocalDate> {
+    List<HistoricalRateSnapshot> findAllByOrderByRateDateAsc();
+}
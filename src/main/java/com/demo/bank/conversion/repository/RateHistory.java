@@ -0,0 +1,216 @@
+package com.demo.bank.conversion.repository;
+
+import com.demo.bank.conversion.entity.HistoricalRateSnapshot;
+import com.demo.bank.conversion.entity.RateSnapshot;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Time series of every rate snapshot the conversion layer has seen, persisted to the database and
+ * indexed in memory by date. As-of lookups are a binary search over that index; only dates the
+ * history does not cover go to Frankfurter, which then fetches a whole window of dates in one call.
+ * <p>
+ * The history outlives a restart only if the database does: with the default in-memory H2 database
+ * and {@code ddl-auto=create-drop} it lasts as long as the process.
+ */
+@Slf4j
+@Component
+public class RateHistory {
+    private final HistoricalRateSnapshotRepository historyRepository;
+    private final FrankfurterClient frankfurterClient;
+    private final long fetchWindowDays;
+
+    // Write side, guarded by this; readers only ever see the immutable index built from it
+    private final TreeMap<LocalDate, HistoricalRateSnapshot> rows = new TreeMap<>();
+    private final Map<LocalDate, RateSnapshot> decoded = new HashMap<>();
+    private volatile Index index = Index.EMPTY;
+    // Orders the database writes, which happen outside of the lock on this
+    private final Object persistLock = new Object();
+    private final ConcurrentHashMap<LocalDate, CompletableFuture<RateSnapshot>> inFlight = new ConcurrentHashMap<>();
+
+    @Autowired
+    public RateHistory(
+            HistoricalRateSnapshotRepository historyRepository,
+            FrankfurterClient frankfurterClient,
+            @Value("${conversion.history.fetch-window:31d}") Duration fetchWindow) {
+        this.historyRepository = historyRepository;
+        this.frankfurterClient = frankfurterClient;
+        this.fetchWindowDays = Math.max(fetchWindow.toDays(), 0);
+    }
+
+    @PostConstruct
+    synchronized void load() {
+        for (HistoricalRateSnapshot row : historyRepository.findAllByOrderByRateDateAsc()) {
+            rows.put(row.getRateDate(), row);
+            decoded.put(row.getRateDate(), RateSnapshotFile.decode(ByteBuffer.wrap(row.getRates())));
+        }
+        publishIndex();
+        log.debug("Loaded {} historical rate snapshots", rows.size());
+    }
+
+    /**
+     * @return the rates in effect on the date, or null if the history does not cover it
+     */
+    public RateSnapshot find(LocalDate date) {
+        return index.find(date.toEpochDay());
+    }
+
+    /**
+     * Looks the date up in the history and, if it is not covered, fetches the missing window from
+     * Frankfurter. Concurrent lookups of the same missing date share one fetch.
+     */
+    public CompletableFuture<RateSnapshot> getSnapshotAsync(LocalDate date) {
+        if (date.isAfter(LocalDate.now())) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Date must not be in the future"));
+        }
+        RateSnapshot snapshot = find(date);
+        if (snapshot != null) {
+            return CompletableFuture.completedFuture(snapshot);
+        }
+
+        CompletableFuture<RateSnapshot> fetch = new CompletableFuture<>();
+        CompletableFuture<RateSnapshot> current = inFlight.putIfAbsent(date, fetch);
+        if (current != null) {
+            return current;
+        }
+        LocalDate end = date.plusDays(fetchWindowDays);
+        if (end.isAfter(LocalDate.now())) {
+            end = LocalDate.now();
+        }
+        LocalDate through = end;
+        frankfurterClient.fetchTimeSeries(date, end).whenComplete((series, e) -> {
+            RateSnapshot result = null;
+            Throwable failure = e;
+            if (failure == null) {
+                try {
+                    record(series, through);
+                    result = find(date);
+                } catch (RuntimeException recordFailure) {
+                    failure = recordFailure;
+                }
+            }
+            inFlight.remove(date, fetch);
+            if (result != null) {
+                fetch.complete(result);
+            } else {
+                fetch.completeExceptionally(new RuntimeException("No exchange rates available for " + date
+                        + (failure != null ? ": " + failure.getMessage() : "")));
+            }
+        });
+        return fetch;
+    }
+
+    /**
+     * Records a snapshot fetched as the latest one: its rates are in effect through today.
+     */
+    public void recordLatest(RateSnapshot snapshot) {
+        LocalDate today = LocalDate.now();
+        record(List.of(snapshot), snapshot.getDate().isAfter(today) ? snapshot.getDate() : today);
+    }
+
+    /**
+     * Adds consecutive publications, oldest first. Each one is in effect until the day before the
+     * next publication, and the last one through {@code through}.
+     */
+    void record(List<RateSnapshot> series, LocalDate through) {
+        List<HistoricalRateSnapshot> changed;
+        synchronized (this) {
+            changed = apply(series, through);
+            if (changed.isEmpty()) {
+                return;
+            }
+            publishIndex();
+        }
+        // The new index is published already: lookups and other recorders do not wait for the database
+        synchronized (persistLock) {
+            try {
+                historyRepository.saveAll(changed);
+            } catch (RuntimeException e) {
+                // The in-memory history stays usable; the rows are written again the next time they change
+                log.warn("Failed to persist {} historical rate snapshots: {}", changed.size(), e.getMessage());
+            }
+        }
+    }
+
+    // Guarded by this
+    private List<HistoricalRateSnapshot> apply(List<RateSnapshot> series, LocalDate through) {
+        List<HistoricalRateSnapshot> changed = new ArrayList<>(series.size());
+        for (int i = 0; i < series.size(); i++) {
+            RateSnapshot snapshot = series.get(i);
+            LocalDate coveredThrough = i + 1 < series.size() ? series.get(i + 1).getDate().minusDays(1) : through;
+            if (coveredThrough.isBefore(snapshot.getDate())) {
+                coveredThrough = snapshot.getDate();
+            }
+
+            HistoricalRateSnapshot row = rows.get(snapshot.getDate());
+            if (row == null) {
+                row = new HistoricalRateSnapshot(snapshot.getDate(), coveredThrough,
+                        RateSnapshotFile.encode(snapshot, FrankfurterClient.SNAPSHOT_BASE));
+                rows.put(snapshot.getDate(), row);
+                decoded.put(snapshot.getDate(), snapshot);
+            } else if (coveredThrough.isAfter(row.getCoveredThrough())) {
+                row.extendCoverage(coveredThrough);
+            } else {
+                continue;
+            }
+            changed.add(row);
+        }
+        return changed;
+    }
+
+    private void publishIndex() {
+        int size = rows.size();
+        long[] dates = new long[size];
+        long[] coveredThrough = new long[size];
+        RateSnapshot[] snapshots = new RateSnapshot[size];
+        int i = 0;
+        for (Map.Entry<LocalDate, HistoricalRateSnapshot> entry : rows.entrySet()) {
+            dates[i] = entry.getKey().toEpochDay();
+            coveredThrough[i] = entry.getValue().getCoveredThrough().toEpochDay();
+            snapshots[i] = decoded.get(entry.getKey());
+            i++;
+        }
+        index = new Index(dates, coveredThrough, snapshots);
+    }
+
+    private static final class Index {
+        private static final Index EMPTY = new Index(new long[0], new long[0], new RateSnapshot[0]);
+
+        private final long[] dates;
+        private final long[] coveredThrough;
+        private final RateSnapshot[] snapshots;
+
+        private Index(long[] dates, long[] coveredThrough, RateSnapshot[] snapshots) {
+            this.dates = dates;
+            this.coveredThrough = coveredThrough;
+            this.snapshots = snapshots;
+        }
+
+        private RateSnapshot find(long epochDay) {
+            int i = Arrays.binarySearch(dates, epochDay);
+            if (i < 0) {
+                // Not a publication date: use the last publication before it, if it is still in effect
+                i = -i - 2;
+                if (i < 0 || epochDay > coveredThrough[i]) {
+                    return null;
+                }
+            }
+            return snapshots[i];
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.demo.bank.conversion.repository;
+
+import com.demo.bank.account.entity.Currency;
+import com.demo.bank.conversion.entity.RateSnapshot;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * Compact binary format for a rate snapshot (big-endian):
+ * <pre>
+ * int   magic "RATE"
+ * short format version
+ * 3B    base currency code (ASCII)
+ * long  snapshot date as epoch day
+ * short number of entries
+ * entries: 3B currency code (ASCII), double units per one unit of the base
+ * </pre>
+ * Currencies are stored by code rather than ordinal, so a file stays readable when the Currency enum changes.
+ */
+public final class RateSnapshotFile {
+    private static final int MAGIC = 0x52415445;
+    private static final short VERSION = 1;
+    private static final int CODE_LENGTH = 3;
+    private static final int HEADER_SIZE = 4 + 2 + CODE_LENGTH + 8 + 2;
+    private static final int ENTRY_SIZE = CODE_LENGTH + 8;
+
+    private RateSnapshotFile() {
+    }
+
+    /**
+     * Maps the file into memory and decodes it. Entries for currencies unknown to this build are skipped.
+     */
+    public static RateSnapshot read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return decode(buffer);
+        }
+    }
+
+    /**
+     * Writes the snapshot next to the target and atomically moves it into place,
+     * so a reader watching the file never sees a partially written snapshot.
+     */
+    public static void write(Path file, RateSnapshot snapshot, Currency base) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(encode(snapshot, base));
+
+        Path absolute = file.toAbsolutePath();
+        Path temp = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static byte[] encode(RateSnapshot snapshot, Currency base) {
+        Currency[] quoted = Arrays.stream(Currency.values())
+                .filter(currency -> !Double.isNaN(snapshot.getRate(base, currency)))
+                .toArray(Currency[]::new);
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + quoted.length * ENTRY_SIZE);
+        buffer.putInt(MAGIC);
+        buffer.putShort(VERSION);
+        buffer.put(code(base));
+        buffer.putLong(snapshot.getDate().toEpochDay());
+        buffer.putShort((short) quoted.length);
+        for (Currency currency : quoted) {
+            buffer.put(code(currency));
+            buffer.putDouble(snapshot.getRate(base, currency));
+        }
+        return buffer.array();
+    }
+
+    public static RateSnapshot decode(ByteBuffer buffer) {
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+            throw new IllegalArgumentException("Not a rate snapshot file");
+        }
+        short version = buffer.getShort();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported rate snapshot file version: " + version);
+        }
+        Currency base = currency(buffer);
+        if (base == null) {
+            throw new IllegalArgumentException("Unknown base currency in rate snapshot file");
+        }
+        LocalDate date = LocalDate.ofEpochDay(buffer.getLong());
+        int count = Short.toUnsignedInt(buffer.getShort());
+        if (buffer.remaining() < count * ENTRY_SIZE) {
+            throw new IllegalArgumentException("Truncated rate snapshot file");
+        }
+
+        double[] baseRates = new double[Currency.values().length];
+        Arrays.fill(baseRates, Double.NaN);
+        baseRates[base.ordinal()] = 1.0;
+        for (int i = 0; i < count; i++) {
+            Currency currency = currency(buffer);
+            double rate = buffer.getDouble();
+            if (currency != null) {
+                baseRates[currency.ordinal()] = rate;
+            }
+        }
+        return RateSnapshot.fromBaseRates(date, baseRates);
+    }
+
+    private static byte[] code(Currency currency) {
+        return currency.name().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static Currency currency(ByteBuffer buffer) {
+        byte[] code = new byte[CODE_LENGTH];
+        buffer.get(code);
+        String name = new String(code, StandardCharsets.US_ASCII);
+        for (Currency currency : Currency.values()) {
+            if (currency.name().equals(name)) {
+                return currency;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,85 @@
+package com.demo.bank.conversion.repository;
+
+import com.demo.bank.conversion.entity.RateSnapshot;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Offline rate source: serves rates from a local snapshot file instead of calling Frankfurter.
+ * The file is loaded at startup and reloaded whenever its modification time changes.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "conversion.rates.source", havingValue = "file")
+public class SnapshotFileRateSource {
+    private final Path file;
+    private final ScheduledExecutorService watcher;
+    private volatile RateSnapshot snapshot;
+    private volatile FileTime loadedModifiedTime;
+
+    @Autowired
+    public SnapshotFileRateSource(
+            @Value("${conversion.rates.file:rates.bin}") Path file,
+            @Value("${conversion.rates.file-reload-interval:1s}") Duration reloadInterval) {
+        this.file = file;
+        try {
+            load();
+        } catch (IOException | RuntimeException e) {
+            throw new IllegalStateException("Cannot load rate snapshot file " + file.toAbsolutePath() + ": " + e.getMessage(), e);
+        }
+
+        if (reloadInterval.isZero() || reloadInterval.isNegative()) {
+            this.watcher = null;
+        } else {
+            this.watcher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "rate-file-watcher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long intervalMillis = reloadInterval.toMillis();
+            watcher.scheduleWithFixedDelay(this::reloadIfChanged, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public RateSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    void reloadIfChanged() {
+        try {
+            if (!Files.getLastModifiedTime(file).equals(loadedModifiedTime)) {
+                load();
+                log.info("Reloaded rate snapshot file {} (rates of {})", file, snapshot.getDate());
+            }
+        } catch (IOException | RuntimeException e) {
+            // Keep serving the previous snapshot until the file is fixed
+            log.warn("Failed to reload rate snapshot file {}: {}", file, e.getMessage());
+        }
+    }
+
+    private void load() throws IOException {
+        FileTime modifiedTime = Files.getLastModifiedTime(file);
+        snapshot = RateSnapshotFile.read(file);
+        loadedModifiedTime = modifiedTime;
+    }
+
+    @PreDestroy
+    void close() {
+        if (watcher != null) {
+            watcher.shutdownNow();
+        }
+    }
+}
@@ -1,10 +1,19 @@
 package com.demo.bank.conversion.service;
 
 import com.demo.bank.account.entity.Currency;
+import com.demo.bank.conversion.entity.ExchangeRate;
+import com.demo.bank.conversion.entity.RateCacheStats;
+import com.demo.bank.conversion.entity.RateQuote;
+import com.demo.bank.conversion.entity.RateSnapshot;
 import com.demo.bank.conversion.repository.CurrencyConversionRepository;
+import com.demo.bank.utils.Money;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
+
 @Service
 public class CurrencyConversionService {
     private final CurrencyConversionRepository currencyConversionRepository;
@@ -14,9 +23,62 @@ public class CurrencyConversionService {
         this.currencyConversionRepository = currencyConversionRepository;
     }
 
-    public double convert(Currency from, Currency to, double amount) {
-        double rate = currencyConversionRepository.getConversionRate(from, to);
-        return amount * rate;
+    /*
+     * Amounts are in minor units and rates are scaled by 10^8 (see Money): the rate looked up is turned into
+     * a fixed-point one once, and the conversion itself is exact integer arithmetic. Every conversion is a
+     * quote: the rate, the converted amount and where the rate came from, all out of a single lookup.
+     */
+
+    public RateQuote quote(Currency from, Currency to, long amount) {
+        return quote(amount, from, to, currencyConversionRepository.getExchangeRate(from, to));
+    }
+
+    // Non-blocking variant: completes once the rate is available, without holding the caller's thread
+    public CompletableFuture<RateQuote> quoteAsync(Currency from, Currency to, long amount) {
+        return currencyConversionRepository.getExchangeRateAsync(from, to)
+                .thenApply(rate -> quote(amount, from, to, rate));
+    }
+
+    // Quotes at the rate that was in effect on the given date
+    public RateQuote quote(Currency from, Currency to, long amount, LocalDate date) {
+        return quote(amount, from, to, currencyConversionRepository.getExchangeRate(from, to, date));
+    }
+
+    public CompletableFuture<RateQuote> quoteAsync(Currency from, Currency to, long amount, LocalDate date) {
+        return currencyConversionRepository.getExchangeRateAsync(from, to, date)
+                .thenApply(rate -> quote(amount, from, to, rate));
+    }
+
+    /**
+     * Current rates, to be passed to {@link #quote(RateSnapshot, Currency, Currency, long)} for every
+     * item of a batch: the rates are looked up once and all items are priced consistently.
+     */
+    public RateSnapshot getRates() {
+        return currencyConversionRepository.getSnapshot();
     }
-}
 
+    /**
+     * Starts loading the current rates in the background if they are not cached, so that a later conversion
+     * does not wait for the whole upstream call.
+     */
+    public void prefetchRates() {
+        currencyConversionRepository.prefetch();
+    }
+
+    public RateQuote quote(RateSnapshot rates, Currency from, Currency to, long amount) {
+        return quote(amount, from, to, currencyConversionRepository.getExchangeRate(rates, from, to));
+    }
+
+    private static RateQuote quote(long amount, Currency from, Currency to, ExchangeRate rate) {
+        long fixedRate = Money.toFixedRate(rate.getRate());
+        return new RateQuote(amount, from, to, fixedRate, Money.convert(amount, fixedRate), rate.getDate(), rate.getSource());
+    }
+
+    public RateSnapshot dumpRates(Path file) {
+        return currencyConversionRepository.dumpSnapshot(file);
+    }
+
+    public RateCacheStats getCacheStats() {
+        return currencyConversionRepository.getCacheStats();
+    }
+}
@@ -0,0 +1,114 @@
+package com.demo.bank.utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Minimal circuit breaker for asynchronous calls to an external dependency.
+ * <p>
+ * After {@code failureThreshold} consecutive failed or slow calls the breaker opens and every call
+ * fails immediately. Once {@code openDuration} has passed a single probe call is let through
+ * (half-open): if it succeeds the breaker closes again, otherwise it re-opens.
+ */
+@Slf4j
+public class CircuitBreaker {
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long slowCallNanos;
+    private final long openNanos;
+    private final LongSupplier nanoClock;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+
+    public CircuitBreaker(String name, int failureThreshold, Duration slowCallThreshold, Duration openDuration) {
+        this(name, failureThreshold, slowCallThreshold, openDuration, System::nanoTime);
+    }
+
+    CircuitBreaker(String name, int failureThreshold, Duration slowCallThreshold, Duration openDuration, LongSupplier nanoClock) {
+        if (failureThreshold < 1) {
+            throw new IllegalArgumentException("Failure threshold must be at least 1");
+        }
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.slowCallNanos = slowCallThreshold.toNanos();
+        this.openNanos = openDuration.toNanos();
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Runs the call if the breaker permits it, otherwise returns a future that has already failed
+     * with {@link CallNotPermittedException}.
+     */
+    public <T> CompletableFuture<T> execute(Supplier<CompletableFuture<T>> call) {
+        if (!tryAcquirePermission()) {
+            return CompletableFuture.failedFuture(new CallNotPermittedException(name));
+        }
+        long start = nanoClock.getAsLong();
+        CompletableFuture<T> result;
+        try {
+            result = call.get();
+        } catch (RuntimeException e) {
+            onFailure();
+            return CompletableFuture.failedFuture(e);
+        }
+        return result.whenComplete((value, e) -> {
+            if (e != null || nanoClock.getAsLong() - start > slowCallNanos) {
+                onFailure();
+            } else {
+                onSuccess();
+            }
+        });
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    private synchronized boolean tryAcquirePermission() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (nanoClock.getAsLong() - openedAt >= openNanos) {
+                    // Let exactly one probe through; everyone else keeps failing fast until it completes
+                    state = State.HALF_OPEN;
+                    log.info("Circuit breaker '{}' half-open, probing", name);
+                    return true;
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    private synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        if (state != State.CLOSED) {
+            state = State.CLOSED;
+            log.info("Circuit breaker '{}' closed", name);
+        }
+    }
+
+    private synchronized void onFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+            state = State.OPEN;
+            openedAt = nanoClock.getAsLong();
+            log.warn("Circuit breaker '{}' opened after {} failed or slow calls", name, consecutiveFailures);
+        }
+    }
+
+    public static class CallNotPermittedException extends RuntimeException {
+        public CallNotPermittedException(String name) {
+            super("Circuit breaker '" + name + "' is open");
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.demo.bank.utils;
+
+/**
+ * Fixed-point money arithmetic on primitive longs.
+ * <p>
+ * Amounts are counted in minor units (cents): every supported currency has two decimal places, so 12.50 is
+ * stored as 1250. Exchange rates are scaled by 10^8, so a rate of 4.9731 is stored as 497310000. Converting an
+ * amount multiplies it by the rate and rounds half-even to the nearest minor unit, without allocating and without
+ * the drift of binary floating point. Results that do not fit in a long throw {@link ArithmeticException}.
+ */
+public final class Money {
+    public static final int SCALE = 2;
+    public static final long MINOR_UNITS = 100;
+    public static final int RATE_SCALE = 8;
+    public static final long RATE_UNIT = 100_000_000L;
+
+    private Money() {
+    }
+
+    /**
+     * Parses a decimal amount such as {@code 12}, {@code 12.5} or {@code 12,50} (either separator) without
+     * going through a double.
+     *
+     * @return the amount in minor units
+     * @throws IllegalArgumentException if the text is not a decimal number with at most two decimal places
+     */
+    public static long parse(String text) {
+        if (text == null || text.isEmpty()) {
+            throw new IllegalArgumentException("Invalid amount: " + text);
+        }
+        int i = 0;
+        boolean negative = false;
+        char first = text.charAt(0);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            i++;
+        }
+        long whole = 0;
+        int digits = 0;
+        for (; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '.' || c == ',') {
+                break;
+            }
+            if (c < '0' || c > '9') {
+                throw new IllegalArgumentException("Invalid amount: " + text);
+            }
+            whole = whole * 10 + (c - '0');
+            if (++digits > 16) {
+                throw new IllegalArgumentException("Amount too large: " + text);
+            }
+        }
+        long fraction = 0;
+        int decimals = 0;
+        if (i < text.length()) {
+            for (i++; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c < '0' || c > '9') {
+                    throw new IllegalArgumentException("Invalid amount: " + text);
+                }
+                if (++decimals > SCALE) {
+                    throw new IllegalArgumentException("Amount has more than " + SCALE + " decimal places: " + text);
+                }
+                fraction = fraction * 10 + (c - '0');
+            }
+        }
+        if (digits == 0 && decimals == 0) {
+            throw new IllegalArgumentException("Invalid amount: " + text);
+        }
+        for (; decimals < SCALE; decimals++) {
+            fraction *= 10;
+        }
+        long amount = whole * MINOR_UNITS + fraction;
+        return negative ? -amount : amount;
+    }
+
+    /**
+     * @return the amount as a plain decimal with two decimal places, e.g. {@code 12.50}
+     */
+    public static String format(long amount) {
+        return format(amount, SCALE, SCALE);
+    }
+
+    /**
+     * @return the rate as a plain decimal without trailing zeros, e.g. {@code 4.9731}
+     */
+    public static String formatRate(long rate) {
+        return format(rate, RATE_SCALE, 1);
+    }
+
+    private static String format(long value, int scale, int minDecimals) {
+        StringBuilder text = new StringBuilder(24);
+        if (value < 0) {
+            text.append('-');
+        }
+        String digits = Long.toString(Math.abs(value));
+        if (value == Long.MIN_VALUE) {
+            digits = digits.substring(1);
+        }
+        int wholeDigits = digits.length() - scale;
+        if (wholeDigits > 0) {
+            text.append(digits, 0, wholeDigits);
+        } else {
+            text.append('0');
+        }
+        text.append('.');
+        for (int i = wholeDigits; i < 0; i++) {
+            text.append('0');
+        }
+        text.append(digits, Math.max(wholeDigits, 0), digits.length());
+        int end = text.length();
+        int minEnd = text.indexOf(".") + 1 + minDecimals;
+        while (end > minEnd && text.charAt(end - 1) == '0') {
+            end--;
+        }
+        text.setLength(end);
+        return text.toString();
+    }
+
+    /**
+     * @return the rate scaled by 10^8, rounded to the nearest unit of the scale
+     * @throws IllegalArgumentException if the rate is not a positive finite number
+     */
+    public static long toFixedRate(double rate) {
+        long fixed = Double.isFinite(rate) ? Math.round(rate * RATE_UNIT) : 0;
+        if (fixed <= 0) {
+            throw new IllegalArgumentException("Invalid exchange rate: " + rate);
+        }
+        return fixed;
+    }
+
+    /**
+     * @param amount in minor units of the source currency
+     * @param rate   units of the target currency per unit of the source, scaled by 10^8
+     * @return the amount in minor units of the target currency, rounded half-even
+     */
+    public static long convert(long amount, long rate) {
+        // Split the amount so neither product overflows for any realistic rate
+        long whole = amount / RATE_UNIT;
+        long part = amount % RATE_UNIT;
+        long partProduct = Math.multiplyExact(part, rate);
+        long converted = Math.addExact(Math.multiplyExact(whole, rate), partProduct / RATE_UNIT);
+        long remainder = Math.abs(partProduct % RATE_UNIT);
+        long half = RATE_UNIT / 2;
+        if (remainder > half || (remainder == half && (converted & 1) != 0)) {
+            converted += Long.signum(amount) * Long.signum(rate);
+        }
+        return converted;
+    }
+}
@@ -0,0 +1,64 @@
+package com.demo.bank.utils;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+
+/**
+ * JSON mapping of the fixed-point {@link Money} values: amounts in minor units and scaled rates are written and
+ * read as plain decimal numbers, so the API keeps showing {@code 12.50} rather than {@code 1250}.
+ */
+public final class MoneyJson {
+    private MoneyJson() {
+    }
+
+    public static class AmountSerializer extends StdSerializer<Long> {
+        public AmountSerializer() {
+            super(Long.class);
+        }
+
+        @Override
+        public void serialize(Long amount, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            generator.writeNumber(Money.format(amount));
+        }
+    }
+
+    public static class RateSerializer extends StdSerializer<Long> {
+        public RateSerializer() {
+            super(Long.class);
+        }
+
+        @Override
+        public void serialize(Long rate, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            generator.writeNumber(Money.formatRate(rate));
+        }
+    }
+
+    /**
+     * Reads a decimal number, or a string holding one, from its text, so no precision is lost to a double.
+     */
+    public static class AmountDeserializer extends StdDeserializer<Long> {
+        public AmountDeserializer() {
+            super(Long.class);
+        }
+
+        @Override
+        public Long deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            JsonToken token = parser.currentToken();
+            if (token != JsonToken.VALUE_NUMBER_INT && token != JsonToken.VALUE_NUMBER_FLOAT && token != JsonToken.VALUE_STRING) {
+                return (Long) context.handleUnexpectedToken(Long.class, parser);
+            }
+            try {
+                return Money.parse(parser.getText().trim());
+            } catch (IllegalArgumentException e) {
+                return (Long) context.handleWeirdStringValue(Long.class, parser.getText(), e.getMessage());
+            }
+        }
+    }
+}
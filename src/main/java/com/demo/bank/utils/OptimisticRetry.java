@@ -0,0 +1,104 @@
+package com.demo.bank.utils;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Bounded retry loop for operations guarded by optimistic locking.
+ * <p>
+ * An attempt that fails with {@link OptimisticLockingFailureException} is retried after an exponential
+ * backoff with full jitter (a random sleep up to {@code initialBackoff * 2^(attempt - 1)}, capped at
+ * {@code maxBackoff}), so contending writers spread out instead of colliding again. After
+ * {@code maxAttempts} failed attempts the operation gives up. Uncontended operations succeed on the
+ * first attempt and pay nothing beyond the version check.
+ */
+@Slf4j
+public class OptimisticRetry implements MeterBinder {
+    private static final int MAX_BACKOFF_SHIFT = 20;
+
+    private final String name;
+    private final int maxAttempts;
+    private final long initialBackoffNanos;
+    private final long maxBackoffNanos;
+
+    private final LongAdder operations = new LongAdder();
+    private final LongAdder attempts = new LongAdder();
+    private final LongAdder conflicts = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder giveUps = new LongAdder();
+
+    public OptimisticRetry(String name, int maxAttempts, Duration initialBackoff, Duration maxBackoff) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("Max attempts must be at least 1");
+        }
+        this.name = name;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffNanos = initialBackoff.toNanos();
+        this.maxBackoffNanos = maxBackoff.toNanos();
+    }
+
+    public <T> T execute(Supplier<T> operation) {
+        operations.increment();
+        for (int attempt = 1; ; attempt++) {
+            attempts.increment();
+            try {
+                return operation.get();
+            } catch (OptimisticLockingFailureException e) {
+                conflicts.increment();
+                if (attempt >= maxAttempts) {
+                    giveUps.increment();
+                    log.warn("{}: giving up after {} conflicting attempts", name, attempt);
+                    throw new OptimisticLockingFailureException(
+                            "Concurrent update conflict, gave up after " + attempt + " attempts", e);
+                }
+                retries.increment();
+                backOff(attempt);
+            }
+        }
+    }
+
+    public OptimisticRetryStats getStats() {
+        return new OptimisticRetryStats(operations.sum(), attempts.sum(), conflicts.sum(), retries.sum(), giveUps.sum());
+    }
+
+    /**
+     * Exposes the counters of {@link #getStats()} as bank.optimistic.* counters, tagged with the name of this retry.
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        counter(registry, "operations", "Operations run through the retry loop", operations);
+        counter(registry, "attempts", "Attempts, first ones included", attempts);
+        counter(registry, "conflicts", "Attempts that failed on an optimistic locking conflict", conflicts);
+        counter(registry, "retries", "Conflicting attempts that were retried", retries);
+        counter(registry, "give-ups", "Operations abandoned after the maximum number of conflicting attempts", giveUps);
+    }
+
+    private void counter(MeterRegistry registry, String name, String description, LongAdder count) {
+        FunctionCounter.builder("bank.optimistic." + name, count, LongAdder::sum)
+                .description(description)
+                .tag("name", this.name)
+                .register(registry);
+    }
+
+    private void backOff(int attempt) {
+        long ceiling = Math.min(maxBackoffNanos, initialBackoffNanos << Math.min(attempt - 1, MAX_BACKOFF_SHIFT));
+        if (ceiling <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting to retry", e);
+        }
+    }
+}
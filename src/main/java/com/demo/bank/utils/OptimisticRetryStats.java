@@ -0,0 +1,29 @@
+package com.demo.bank.utils;
+
+import lombok.Getter;
+
+@Getter
+public class OptimisticRetryStats {
+    // Operations run through the retry loop
+    private final long operations;
+    // Attempts made, including the first one of each operation
+    private final long attempts;
+    // Attempts that failed with an optimistic locking conflict
+    private final long conflicts;
+    // Conflicts that were followed by another attempt
+    private final long retries;
+    // Operations that failed because every attempt conflicted
+    private final long giveUps;
+
+    public OptimisticRetryStats(long operations, long attempts, long conflicts, long retries, long giveUps) {
+        this.operations = operations;
+        this.attempts = attempts;
+        this.conflicts = conflicts;
+        this.retries = retries;
+        this.giveUps = giveUps;
+    }
+
+    public double getConflictRate() {
+        return attempts == 0 ? 0.0 : (double) conflicts / attempts;
+    }
+}
@@ -0,0 +1,97 @@
+package com.demo.bank.utils;
+
+import java.util.Collection;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Fixed set of locks shared by an unbounded set of keys. Operations on the same key always take the same
+ * lock and run one at a time; operations on different keys only wait for each other when their keys
+ * happen to map to the same stripe, which more stripes make rarer.
+ */
+public class StripedLock {
+    private static final int MAX_STRIPES = 1 << 20;
+
+    private final ReentrantLock[] locks;
+    private final int mask;
+
+    /**
+     * @param stripes number of locks, rounded up to a power of two
+     */
+    public StripedLock(int stripes) {
+        if (stripes < 1 || stripes > MAX_STRIPES) {
+            throw new IllegalArgumentException("Stripe count must be between 1 and " + MAX_STRIPES);
+        }
+        int size = stripes == 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+        this.locks = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        this.mask = size - 1;
+    }
+
+    public <T> T withLock(long key, Supplier<T> operation) {
+        ReentrantLock lock = locks[stripe(key)];
+        lock.lock();
+        try {
+            return operation.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Runs the operation holding the locks of both keys. The locks are always taken in stripe order, so two
+     * operations on the same pair of keys in opposite order cannot deadlock; ordering by key would not be enough,
+     * as two keys can map to their stripes in the opposite order.
+     */
+    public <T> T withLocks(long firstKey, long secondKey, Supplier<T> operation) {
+        int first = stripe(firstKey);
+        int second = stripe(secondKey);
+        if (first == second) {
+            return withLock(firstKey, operation);
+        }
+        ReentrantLock lower = locks[Math.min(first, second)];
+        ReentrantLock higher = locks[Math.max(first, second)];
+        lower.lock();
+        try {
+            higher.lock();
+            try {
+                return operation.get();
+            } finally {
+                higher.unlock();
+            }
+        } finally {
+            lower.unlock();
+        }
+    }
+
+    /**
+     * Runs the operation holding the locks of all the keys, taken in stripe order like {@link #withLocks(long, long, Supplier)}.
+     */
+    public <T> T withLocks(Collection<Long> keys, Supplier<T> operation) {
+        int[] stripes = keys.stream().mapToInt(this::stripe).distinct().sorted().toArray();
+        int locked = 0;
+        try {
+            for (int stripe : stripes) {
+                locks[stripe].lock();
+                locked++;
+            }
+            return operation.get();
+        } finally {
+            for (int i = locked - 1; i >= 0; i--) {
+                locks[stripes[i]].unlock();
+            }
+        }
+    }
+
+    public int getStripes() {
+        return locks.length;
+    }
+
+    int stripe(long key) {
+        // Mix the bits first: sequential ids would otherwise only differ in the low bits the mask keeps
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+}
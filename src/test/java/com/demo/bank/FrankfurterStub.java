@@ -0,0 +1,90 @@
+package com.demo.bank;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Local stand-in for the Frankfurter API, for load tests without network access. Serves {@code /latest} with
+ * fixed rates after a delay of {@code latency} plus a uniformly random part of up to {@code jitter}, and answers
+ * a share of the calls, {@code errorRate}, with HTTP 503 after the same delay. Every request gets its own virtual
+ * thread, so slow responses do not queue behind each other.
+ */
+final class FrankfurterStub implements AutoCloseable {
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final long latencyNanos;
+    private final long jitterNanos;
+    private final double errorRate;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    FrankfurterStub(Duration latency, Duration jitter, double errorRate) throws IOException {
+        if (errorRate < 0 || errorRate > 1) {
+            throw new IllegalArgumentException("Error rate must be between 0 and 1");
+        }
+        this.latencyNanos = latency.toNanos();
+        this.jitterNanos = jitter.toNanos();
+        this.errorRate = errorRate;
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/v1/latest", this::latest);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * @return the base URL to configure as {@code conversion.frankfurter.url}
+     */
+    String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/v1";
+    }
+
+    long getRequests() {
+        return requests.sum();
+    }
+
+    long getFailures() {
+        return failures.sum();
+    }
+
+    private void latest(HttpExchange exchange) throws IOException {
+        requests.increment();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long delay = latencyNanos + (jitterNanos > 0 ? random.nextLong(jitterNanos + 1) : 0);
+        try {
+            Thread.sleep(Duration.ofNanos(delay));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        boolean fail = random.nextDouble() < errorRate;
+        if (fail) {
+            failures.increment();
+        }
+        byte[] body = (fail
+                ? "{\"message\":\"injected failure\"}"
+                : "{\"base\":\"EUR\",\"date\":\"" + LocalDate.now() + "\",\"rates\":{\"USD\":1.1708,\"RON\":5.0765,\"GBP\":0.8676}}")
+                .getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(fail ? 503 : 200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,256 @@
+package com.demo.bank;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * End-to-end load test: the application in the web profile on a random port, with Frankfurter replaced by a
+ * {@link FrankfurterStub}, driven over HTTP by a mix of account creations, deposits, withdrawals, balance lookups
+ * and conversions at a fixed request rate. Reports throughput and p50/p99/p999 latency per endpoint. Not part of
+ * the regular build:
+ * <pre>
+ * mvn test -Pbenchmark -Dtest=LoadBenchmark [-Dload.rate=200] [-Dload.duration=30s] [-Dload.upstream.latency=800ms]
+ * </pre>
+ * System properties, with their defaults:
+ * <ul>
+ * <li>{@code load.rate=200}: requests per second, sent on schedule whether or not earlier ones have completed</li>
+ * <li>{@code load.duration=30s}, {@code load.warmup=5s}: measured time, after a warmup that is not recorded</li>
+ * <li>{@code load.accounts=200}: accounts created before the run, in every currency, that the traffic goes to</li>
+ * <li>{@code load.upstream.latency=50ms}, {@code load.upstream.jitter=20ms}, {@code load.upstream.error-rate=0}:
+ * behaviour of the Frankfurter stand-in</li>
+ * <li>{@code load.rates-ttl=10s}: rate cache lifetime, short so that the run goes through rate refreshes and a slow
+ * or failing upstream shows up; refreshes start a fifth of it before expiry</li>
+ * <li>{@code load.update-mode=atomic}: {@code account.update-mode} of the application</li>
+ * </ul>
+ * Latency is measured from the time a request was due, not from when it was sent, so a stalled server shows as
+ * latency of every request that waited for it rather than as fewer requests.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.profiles.active=web",
+        "conversion.rates.source=live",
+        "account.update-mode=${load.update-mode:atomic}",
+        "logging.level.com.demo.bank=WARN"})
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class LoadBenchmark {
+    private static final String[] CURRENCIES = {"USD", "EUR", "RON"};
+
+    private static FrankfurterStub upstream;
+
+    private final int rate = Integer.getInteger("load.rate", 200);
+    private final Duration duration = duration("load.duration", "30s");
+    private final Duration warmup = duration("load.warmup", "5s");
+    private final int accountCount = Integer.getInteger("load.accounts", 200);
+
+    @LocalServerPort
+    private int port;
+
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    private long[] accounts;
+
+    enum Endpoint {
+        // Weights of the mix, out of 100
+        CREATE_ACCOUNT(5), DEPOSIT(30), WITHDRAW(20), BALANCE(30), CONVERT(15);
+
+        private final int weight;
+
+        Endpoint(int weight) {
+            this.weight = weight;
+        }
+    }
+
+    @DynamicPropertySource
+    static void upstream(DynamicPropertyRegistry registry) throws IOException {
+        upstream = new FrankfurterStub(duration("load.upstream.latency", "50ms"), duration("load.upstream.jitter", "20ms"),
+                Double.parseDouble(System.getProperty("load.upstream.error-rate", "0")));
+        Duration ttl = duration("load.rates-ttl", "10s");
+        registry.add("conversion.frankfurter.url", upstream::getUrl);
+        registry.add("conversion.cache.ttl", ttl::toString);
+        registry.add("conversion.cache.refresh-ahead", () -> ttl.dividedBy(5).toString());
+    }
+
+    @AfterAll
+    static void stopUpstream() {
+        if (upstream != null) {
+            upstream.close();
+        }
+    }
+
+    private static Duration duration(String property, String defaultValue) {
+        return DurationStyle.detectAndParse(System.getProperty(property, defaultValue));
+    }
+
+    @Test
+    void mixedTraffic() throws Exception {
+        accounts = new long[accountCount];
+        for (int i = 0; i < accountCount; i++) {
+            String currency = CURRENCIES[i % CURRENCIES.length];
+            accounts[i] = new JSONObject(send(Endpoint.CREATE_ACCOUNT, post("/api/bank/account?firstName=Load&lastName=Test&currency=" + currency)).body()).getLong("id");
+            send(Endpoint.DEPOSIT, post("/api/bank/deposit?accountId=" + accounts[i] + "&amount=100000000&currency=" + currency));
+        }
+
+        Map<Endpoint, Recorder> recorders = new EnumMap<>(Endpoint.class);
+        for (Endpoint endpoint : Endpoint.values()) {
+            recorders.put(endpoint, new Recorder());
+        }
+        long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+        long start = System.nanoTime();
+        long measureFrom = start + warmup.toNanos();
+        long end = measureFrom + duration.toNanos();
+        long scheduled = 0;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long due = start; due - end < 0; due = start + ++scheduled * interval) {
+                long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                Endpoint endpoint = pick();
+                HttpRequest request = request(endpoint);
+                long dueAt = due;
+                executor.execute(() -> {
+                    boolean ok;
+                    try {
+                        ok = send(endpoint, request).statusCode() < 400;
+                    } catch (RuntimeException e) {
+                        ok = false;
+                    }
+                    if (dueAt - measureFrom >= 0) {
+                        recorders.get(endpoint).record(System.nanoTime() - dueAt, ok);
+                    }
+                });
+            }
+        }
+        report(recorders);
+    }
+
+    private Endpoint pick() {
+        int roll = ThreadLocalRandom.current().nextInt(100);
+        for (Endpoint endpoint : Endpoint.values()) {
+            roll -= endpoint.weight;
+            if (roll < 0) {
+                return endpoint;
+            }
+        }
+        throw new IllegalStateException("Endpoint weights must add up to 100");
+    }
+
+    private HttpRequest request(Endpoint endpoint) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long account = accounts[random.nextInt(accounts.length)];
+        String currency = CURRENCIES[random.nextInt(CURRENCIES.length)];
+        String amount = random.nextInt(1, 500) + "." + random.nextInt(10, 100);
+        return switch (endpoint) {
+            case CREATE_ACCOUNT -> post("/api/bank/account?firstName=Load&lastName=Test&currency=" + currency);
+            case DEPOSIT -> post("/api/bank/deposit?accountId=" + account + "&amount=" + amount + "&currency=" + currency);
+            case WITHDRAW -> post("/api/bank/withdraw?accountId=" + account + "&amount=" + amount + "&currency=" + currency);
+            case BALANCE -> get("/api/bank/balance?accountId=" + account);
+            case CONVERT -> get("/api/currency/convert?amount=" + amount + "&from=" + currency
+                    + "&to=" + CURRENCIES[random.nextInt(CURRENCIES.length)]);
+        };
+    }
+
+    private HttpRequest post(String path) {
+        return HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + path))
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build();
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + path)).GET().build();
+    }
+
+    private HttpResponse<String> send(Endpoint endpoint, HttpRequest request) {
+        try {
+            return client.send(request, HttpResponse.BodyHandlers.ofString());
+        } catch (IOException e) {
+            throw new UncheckedIOException(endpoint + " failed: " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(endpoint + " interrupted");
+        }
+    }
+
+    private void report(Map<Endpoint, Recorder> recorders) {
+        double seconds = duration.toNanos() / 1e9;
+        System.out.printf("%nTarget %d requests/s for %s; upstream latency %s + up to %s, error rate %s%n", rate, duration,
+                System.getProperty("load.upstream.latency", "50ms"), System.getProperty("load.upstream.jitter", "20ms"),
+                System.getProperty("load.upstream.error-rate", "0"));
+        System.out.printf("%-16s %10s %8s %10s %10s %10s %10s %10s%n",
+                "endpoint", "requests", "errors", "req/s", "p50 ms", "p99 ms", "p999 ms", "max ms");
+        Recorder all = new Recorder();
+        for (Map.Entry<Endpoint, Recorder> entry : recorders.entrySet()) {
+            print(entry.getKey().name(), entry.getValue(), seconds);
+            all.addAll(entry.getValue());
+        }
+        print("ALL", all, seconds);
+        System.out.printf("Upstream: %d requests, %d failed%n", upstream.getRequests(), upstream.getFailures());
+    }
+
+    private static void print(String name, Recorder recorder, double seconds) {
+        long[] sorted = recorder.sorted();
+        System.out.printf("%-16s %10d %8d %10.1f %10.2f %10.2f %10.2f %10.2f%n", name, sorted.length, recorder.errors,
+                sorted.length / seconds, percentile(sorted, 0.5), percentile(sorted, 0.99), percentile(sorted, 0.999),
+                percentile(sorted, 1.0));
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return Double.NaN;
+        }
+        int index = Math.max(0, (int) Math.ceil(percentile * sorted.length) - 1);
+        return sorted[index] / 1e6;
+    }
+
+    // Latencies of one endpoint, in nanoseconds; failed requests count in both
+    private static final class Recorder {
+        private long[] latencies = new long[1024];
+        private int count;
+        private long errors;
+
+        synchronized void record(long nanos, boolean ok) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = nanos;
+            if (!ok) {
+                errors++;
+            }
+        }
+
+        synchronized void addAll(Recorder other) {
+            long[] values = other.sorted();
+            for (long value : values) {
+                record(value, true);
+            }
+            errors += other.errors;
+        }
+
+        synchronized long[] sorted() {
+            long[] values = Arrays.copyOf(latencies, count);
+            Arrays.sort(values);
+            return values;
+        }
+    }
+}
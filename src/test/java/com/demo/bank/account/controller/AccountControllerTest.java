@@ -1,17 +1,28 @@
 package com.demo.bank.account.controller;
 
 import com.demo.bank.account.entity.Account;
+import com.demo.bank.account.entity.AccountBalance;
+import com.demo.bank.account.entity.AccountCacheStats;
 import com.demo.bank.account.entity.Currency;
+import com.demo.bank.account.entity.TransactionRequest;
+import com.demo.bank.account.entity.TransactionResult;
+import com.demo.bank.account.entity.TransactionType;
+import com.demo.bank.account.entity.TransferResult;
 import com.demo.bank.account.service.AccountService;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.json.JsonCompareMode;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
 import java.lang.reflect.Field;
+import java.util.List;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -19,6 +30,8 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 import org.mockito.Mock;
 import org.junit.jupiter.api.BeforeEach;
 import com.demo.bank.utils.GlobalExceptionHandler;
+import com.demo.bank.utils.OptimisticRetryStats;
+import org.springframework.dao.OptimisticLockingFailureException;
 
 @ExtendWith(MockitoExtension.class)
 @Import(GlobalExceptionHandler.class)
@@ -75,10 +88,10 @@ class AccountControllerTest {
     void testDeposit_Success_SameCurrency() throws Exception {
         // Given
         Account mockAccount = new Account("John", "Doe", Currency.USD);
-        mockAccount.deposit(100.0);
+        mockAccount.deposit(100_00);
         setAccountId(mockAccount, 1L);
 
-        when(accountService.deposit(1L, 100.0, Currency.USD)).thenReturn(mockAccount);
+        when(accountService.deposit(1L, 100_00, Currency.USD)).thenReturn(mockAccount);
 
         // When & Then
         mockMvc.perform(post("/api/bank/deposit")
@@ -92,17 +105,17 @@ class AccountControllerTest {
                 .andExpect(jsonPath("$.currency").value("USD"))
                 .andExpect(jsonPath("$.balance").value(100.0));
 
-        verify(accountService).deposit(1L, 100.0, Currency.USD);
+        verify(accountService).deposit(1L, 100_00, Currency.USD);
     }
 
     @Test
     void testDeposit_Success_DifferentCurrency() throws Exception {
         // Given - depositing EUR into USD account with conversion
         Account mockAccount = new Account("John", "Doe", Currency.USD);
-        mockAccount.deposit(118.0); // 100 EUR converted to 118 USD
+        mockAccount.deposit(118_00); // 100 EUR converted to 118 USD
         setAccountId(mockAccount, 1L);
 
-        when(accountService.deposit(1L, 100.0, Currency.EUR)).thenReturn(mockAccount);
+        when(accountService.deposit(1L, 100_00, Currency.EUR)).thenReturn(mockAccount);
 
         // When & Then
         mockMvc.perform(post("/api/bank/deposit")
@@ -114,13 +127,13 @@ class AccountControllerTest {
                 .andExpect(jsonPath("$.balance").value(118.0))
                 .andExpect(jsonPath("$.currency").value("USD"));
 
-        verify(accountService).deposit(1L, 100.0, Currency.EUR);
+        verify(accountService).deposit(1L, 100_00, Currency.EUR);
     }
 
     @Test
     void testDeposit_InvalidAmount_Negative() throws Exception {
         // Given
-        when(accountService.deposit(anyLong(), anyDouble(), any(Currency.class)))
+        when(accountService.deposit(anyLong(), anyLong(), any(Currency.class)))
                 .thenThrow(new IllegalArgumentException("Deposit amount must be positive"));
 
         // When & Then
@@ -130,13 +143,25 @@ class AccountControllerTest {
                 .param("currency", "USD"))
                 .andExpect(status().isBadRequest());
 
-        verify(accountService).deposit(1L, -50.0, Currency.USD);
+        verify(accountService).deposit(1L, -50_00, Currency.USD);
+    }
+
+    @Test
+    void testDeposit_InvalidAmount_TooManyDecimals() throws Exception {
+        mockMvc.perform(post("/api/bank/deposit")
+                .param("accountId", "1")
+                .param("amount", "10.005")
+                .param("currency", "USD"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Amount has more than 2 decimal places: 10.005"));
+
+        verify(accountService, never()).deposit(anyLong(), anyLong(), any(Currency.class));
     }
 
     @Test
     void testDeposit_AccountNotFound() throws Exception {
         // Given
-        when(accountService.deposit(999L, 100.0, Currency.USD))
+        when(accountService.deposit(999L, 100_00, Currency.USD))
                 .thenThrow(new IllegalArgumentException("Account not found"));
 
         // When & Then
@@ -146,18 +171,18 @@ class AccountControllerTest {
                 .param("currency", "USD"))
                 .andExpect(status().isBadRequest());
 
-        verify(accountService).deposit(999L, 100.0, Currency.USD);
+        verify(accountService).deposit(999L, 100_00, Currency.USD);
     }
 
     @Test
     void testWithdraw_Success_SameCurrency() throws Exception {
         // Given
         Account mockAccount = new Account("John", "Doe", Currency.USD);
-        mockAccount.deposit(200.0);
-        mockAccount.withdraw(50.0);
+        mockAccount.deposit(200_00);
+        mockAccount.withdraw(50_00);
         setAccountId(mockAccount, 1L);
 
-        when(accountService.withdraw(1L, 50.0, Currency.USD)).thenReturn(mockAccount);
+        when(accountService.withdraw(1L, 50_00, Currency.USD)).thenReturn(mockAccount);
 
         // When & Then
         mockMvc.perform(post("/api/bank/withdraw")
@@ -169,18 +194,18 @@ class AccountControllerTest {
                 .andExpect(jsonPath("$.balance").value(150.0))
                 .andExpect(jsonPath("$.currency").value("USD"));
 
-        verify(accountService).withdraw(1L, 50.0, Currency.USD);
+        verify(accountService).withdraw(1L, 50_00, Currency.USD);
     }
 
     @Test
     void testWithdraw_Success_DifferentCurrency() throws Exception {
         // Given - withdrawing EUR from USD account with conversion
         Account mockAccount = new Account("John", "Doe", Currency.USD);
-        mockAccount.deposit(200.0);
-        mockAccount.withdraw(59.0); // 50 EUR converted to 59 USD
+        mockAccount.deposit(200_00);
+        mockAccount.withdraw(59_00); // 50 EUR converted to 59 USD
         setAccountId(mockAccount, 1L);
 
-        when(accountService.withdraw(1L, 50.0, Currency.EUR)).thenReturn(mockAccount);
+        when(accountService.withdraw(1L, 50_00, Currency.EUR)).thenReturn(mockAccount);
 
         // When & Then
         mockMvc.perform(post("/api/bank/withdraw")
@@ -191,13 +216,13 @@ class AccountControllerTest {
                 .andExpect(jsonPath("$.id").value(1))
                 .andExpect(jsonPath("$.balance").value(141.0));
 
-        verify(accountService).withdraw(1L, 50.0, Currency.EUR);
+        verify(accountService).withdraw(1L, 50_00, Currency.EUR);
     }
 
     @Test
     void testWithdraw_InvalidAmount_Negative() throws Exception {
         // Given
-        when(accountService.withdraw(anyLong(), anyDouble(), any(Currency.class)))
+        when(accountService.withdraw(anyLong(), anyLong(), any(Currency.class)))
                 .thenThrow(new IllegalArgumentException("Withdraw amount must be positive"));
 
         // When & Then
@@ -207,13 +232,13 @@ class AccountControllerTest {
                 .param("currency", "USD"))
                 .andExpect(status().isBadRequest());
 
-        verify(accountService).withdraw(1L, -25.0, Currency.USD);
+        verify(accountService).withdraw(1L, -25_00, Currency.USD);
     }
 
     @Test
     void testWithdraw_AccountNotFound() throws Exception {
         // Given
-        when(accountService.withdraw(999L, 50.0, Currency.USD))
+        when(accountService.withdraw(999L, 50_00, Currency.USD))
                 .thenThrow(new IllegalArgumentException("Account not found"));
 
         // When & Then
@@ -223,14 +248,14 @@ class AccountControllerTest {
                 .param("currency", "USD"))
                 .andExpect(status().isBadRequest());
 
-        verify(accountService).withdraw(999L, 50.0, Currency.USD);
+        verify(accountService).withdraw(999L, 50_00, Currency.USD);
     }
 
     @Test
     void testGetBalance_Success() throws Exception {
         // Given
         Account mockAccount = new Account("John", "Doe", Currency.USD);
-        mockAccount.deposit(250.0);
+        mockAccount.deposit(250_00);
         setAccountId(mockAccount, 1L);
 
         when(accountService.getAccountById(1L)).thenReturn(mockAccount);
@@ -262,6 +287,44 @@ class AccountControllerTest {
         verify(accountService).getAccountById(999L);
     }
 
+    @Test
+    void testGetBalanceSummary_returnsBalanceWithETag() throws Exception {
+        when(accountService.getAccountBalance(1L)).thenReturn(new AccountBalance(1L, 250_00, Currency.USD, 7));
+
+        mockMvc.perform(get("/api/bank/balance/summary")
+                .param("accountId", "1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"7\""))
+                .andExpect(header().string("Cache-Control", "no-cache"))
+                .andExpect(content().json("{\"id\":1,\"balance\":250.00,\"currency\":\"USD\"}", JsonCompareMode.STRICT));
+    }
+
+    @Test
+    void testGetBalanceSummary_unchangedBalanceIsNotModified() throws Exception {
+        when(accountService.getAccountBalance(1L)).thenReturn(new AccountBalance(1L, 250_00, Currency.USD, 7));
+
+        mockMvc.perform(get("/api/bank/balance/summary")
+                .param("accountId", "1")
+                .header("If-None-Match", "\"7\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+        mockMvc.perform(get("/api/bank/balance/summary")
+                .param("accountId", "1")
+                .header("If-None-Match", "\"6\""))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.balance").value(250.0));
+    }
+
+    @Test
+    void testGetBalanceSummary_accountNotFound() throws Exception {
+        when(accountService.getAccountBalance(999L)).thenThrow(new IllegalArgumentException("Account not found"));
+
+        mockMvc.perform(get("/api/bank/balance/summary")
+                .param("accountId", "999"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Account not found"));
+    }
+
     @Test
     void testCreateAccount_MissingParameters() throws Exception {
         // When & Then - Missing lastName parameter
@@ -303,4 +366,146 @@ class AccountControllerTest {
 
         verifyNoInteractions(accountService);
     }
+
+    @Test
+    void testCreateAccounts_Success() throws Exception {
+        Account john = new Account("John", "Doe", Currency.USD);
+        setAccountId(john, 1L);
+        Account jane = new Account("Jane", "Smith", Currency.EUR);
+        setAccountId(jane, 2L);
+        when(accountService.createAccounts(anyList())).thenReturn(List.of(john, jane));
+
+        mockMvc.perform(post("/api/bank/accounts/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[{\"firstName\":\"John\",\"lastName\":\"Doe\",\"currency\":\"USD\"},"
+                        + "{\"firstName\":\"Jane\",\"lastName\":\"Smith\",\"currency\":\"EUR\"}]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(1))
+                .andExpect(jsonPath("$[1].id").value(2))
+                .andExpect(jsonPath("$[1].currency").value("EUR"));
+        verify(accountService).createAccounts(argThat(requests -> requests.size() == 2
+                && requests.get(0).getFirstName().equals("John") && requests.get(1).getCurrency() == Currency.EUR));
+    }
+
+    @Test
+    void testCreateAccounts_InvalidItem() throws Exception {
+        when(accountService.createAccounts(anyList()))
+                .thenThrow(new IllegalArgumentException("Account 1: firstName, lastName and currency are required"));
+
+        mockMvc.perform(post("/api/bank/accounts/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[{\"firstName\":\"John\"}]"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Account 1: firstName, lastName and currency are required"));
+    }
+
+    @Test
+    void testOptimisticRetryStats() throws Exception {
+        when(accountService.getOptimisticRetryStats()).thenReturn(new OptimisticRetryStats(10, 12, 2, 2, 0));
+
+        mockMvc.perform(get("/api/bank/stats/optimistic-retry"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.attempts").value(12))
+                .andExpect(jsonPath("$.conflicts").value(2))
+                .andExpect(jsonPath("$.giveUps").value(0))
+                .andExpect(jsonPath("$.conflictRate").value(2.0 / 12));
+    }
+
+    @Test
+    void testAccountCacheStats() throws Exception {
+        when(accountService.getAccountCacheStats()).thenReturn(new AccountCacheStats(95, 5, 1, 40, 10000));
+
+        mockMvc.perform(get("/api/bank/stats/account-cache"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.hits").value(95))
+                .andExpect(jsonPath("$.evictions").value(1))
+                .andExpect(jsonPath("$.size").value(40))
+                .andExpect(jsonPath("$.hitRatio").value(0.95));
+    }
+
+    @Test
+    void testDeposit_ConcurrentUpdateConflict() throws Exception {
+        when(accountService.deposit(1L, 50_00, Currency.USD))
+                .thenThrow(new OptimisticLockingFailureException("Concurrent update conflict, gave up after 5 attempts"));
+
+        mockMvc.perform(post("/api/bank/deposit")
+                .param("accountId", "1")
+                .param("amount", "50.0")
+                .param("currency", "USD"))
+                .andExpect(status().isConflict())
+                .andExpect(content().string("Concurrent update conflict, gave up after 5 attempts"));
+    }
+
+    @Test
+    void testApplyTransactions_returnsResultPerItem() throws Exception {
+        TransactionRequest deposit = new TransactionRequest(1L, TransactionType.DEPOSIT, 50_00, Currency.USD);
+        TransactionRequest withdraw = new TransactionRequest(2L, TransactionType.WITHDRAW, 500_00, Currency.EUR);
+        when(accountService.applyTransactions(anyList())).thenReturn(List.of(
+                TransactionResult.applied(deposit, 150_00),
+                TransactionResult.rejected(withdraw, "Withdraw failed. Insufficient balance or invalid amount")));
+
+        mockMvc.perform(post("/api/bank/transactions/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[{\"accountId\":1,\"type\":\"DEPOSIT\",\"amount\":50.0,\"currency\":\"USD\"},"
+                        + "{\"accountId\":2,\"type\":\"WITHDRAW\",\"amount\":500.0,\"currency\":\"EUR\"}]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].success").value(true))
+                .andExpect(jsonPath("$[0].balance").value(150.0))
+                .andExpect(jsonPath("$[1].success").value(false))
+                .andExpect(jsonPath("$[1].error").value("Withdraw failed. Insufficient balance or invalid amount"))
+                .andExpect(jsonPath("$[1].balance").doesNotExist());
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<TransactionRequest>> requests = ArgumentCaptor.forClass(List.class);
+        verify(accountService).applyTransactions(requests.capture());
+        assertEquals(2, requests.getValue().size());
+        assertEquals(TransactionType.WITHDRAW, requests.getValue().get(1).getType());
+        assertEquals(Currency.EUR, requests.getValue().get(1).getCurrency());
+        assertEquals(500_00, requests.getValue().get(1).getAmount());
+    }
+
+    @Test
+    void testApplyTransactions_amountWithTooManyDecimals() throws Exception {
+        mockMvc.perform(post("/api/bank/transactions/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[{\"accountId\":1,\"type\":\"DEPOSIT\",\"amount\":0.001,\"currency\":\"USD\"}]"))
+                .andExpect(status().isBadRequest());
+
+        verify(accountService, never()).applyTransactions(anyList());
+    }
+
+    @Test
+    void testTransfer_Success() throws Exception {
+        Account from = new Account("John", "Doe", Currency.USD);
+        setAccountId(from, 1L);
+        Account to = new Account("Jane", "Smith", Currency.EUR);
+        setAccountId(to, 2L);
+        to.deposit(85_00);
+        when(accountService.transfer(1L, 2L, 100_00, Currency.USD)).thenReturn(new TransferResult(from, to, 100_00, 85_00));
+
+        mockMvc.perform(post("/api/bank/transfer")
+                .param("fromAccountId", "1")
+                .param("toAccountId", "2")
+                .param("amount", "100.0")
+                .param("currency", "USD"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.fromAccount.id").value(1))
+                .andExpect(jsonPath("$.toAccount.balance").value(85.0))
+                .andExpect(jsonPath("$.debitedAmount").value(100.0))
+                .andExpect(jsonPath("$.creditedAmount").value(85.0));
+    }
+
+    @Test
+    void testTransfer_SameAccount() throws Exception {
+        when(accountService.transfer(1L, 1L, 100_00, Currency.USD))
+                .thenThrow(new IllegalArgumentException("Cannot transfer to the same account"));
+
+        mockMvc.perform(post("/api/bank/transfer")
+                .param("fromAccountId", "1")
+                .param("toAccountId", "1")
+                .param("amount", "100.0")
+                .param("currency", "USD"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Cannot transfer to the same account"));
+    }
 }
@@ -0,0 +1,72 @@
+package com.demo.bank.account.controller;
+
+import com.demo.bank.account.entity.Currency;
+import com.demo.bank.utils.JmhBenchmarks;
+import com.demo.bank.utils.Money;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH throughput of turning a CLI command line into its typed arguments, the work done per line before the
+ * account service is called: the regular expression split of the interactive prompt against the splitter of
+ * script mode ({@link CliScriptRunner#split}), each followed by the amount, currency and account number parsing
+ * of the command handlers. Every thread parses its own lines. Not part of the regular build:
+ * <pre>
+ * mvn test -Pbenchmark -Dtest=CliCommandParsingBenchmark [-Dbenchmark.threads=1,4,16]
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CliCommandParsingBenchmark {
+    private static final String[] LINES = {
+            "Deposit 125.50 USD 17",
+            "Withdraw 3 eur 1042",
+            "Deposit 0.99 RON 5",
+            "Withdraw  19999.99\tUSD 310",
+    };
+
+    private final String[] fields = new String[6];
+    private int next;
+
+    private String nextLine() {
+        next = (next + 1) & (LINES.length - 1);
+        return LINES[next];
+    }
+
+    @Benchmark
+    public long interactiveSplit() {
+        String[] parts = nextLine().trim().split("\\s+");
+        return parse(parts[1], parts[2], parts[3]);
+    }
+
+    @Benchmark
+    public long scriptSplit() {
+        CliScriptRunner.split(nextLine(), fields);
+        return parse(fields[1], fields[2], fields[3]);
+    }
+
+    private static long parse(String amount, String currency, String accountId) {
+        return Money.parse(amount) + Currency.valueOf(currency.toUpperCase()).ordinal() + Long.parseLong(accountId);
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void commandParsing() throws Exception {
+        JmhBenchmarks.run(CliCommandParsingBenchmark.class);
+    }
+}
@@ -2,12 +2,25 @@ package com.demo.bank.account.controller;
 
 import com.demo.bank.account.entity.Account;
 import com.demo.bank.account.entity.Currency;
+import com.demo.bank.account.entity.NewAccountRequest;
+import com.demo.bank.account.entity.TransferResult;
 import com.demo.bank.account.service.AccountService;
+import com.demo.bank.conversion.entity.RateQuote;
+import com.demo.bank.conversion.entity.RateSnapshot;
+import com.demo.bank.conversion.entity.RateSource;
 import com.demo.bank.conversion.service.CurrencyConversionService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.*;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.Mockito.*;
 
 class CliControllerTest {
@@ -47,33 +60,34 @@ class CliControllerTest {
     @Test
     void testHandleDeposit_validInput() {
         Account mockAccount = mock(Account.class);
-        when(accountService.deposit(1L, 100.0, Currency.USD)).thenReturn(mockAccount);
+        when(accountService.deposit(1L, 100_00, Currency.USD)).thenReturn(mockAccount);
         when(mockAccount.getFullName()).thenReturn("John Doe");
-        when(mockAccount.getBalance()).thenReturn(200.0);
+        when(mockAccount.getBalance()).thenReturn(200_00L);
         when(mockAccount.getCurrency()).thenReturn(Currency.USD);
 
         cliController.handleDeposit(new String[]{"Deposit", "100", "USD", "1"});
 
-        verify(accountService).deposit(1L, 100.0, Currency.USD);
+        verify(accountService).deposit(1L, 100_00, Currency.USD);
     }
 
     @Test
     void testHandleDeposit_invalidAmount() {
         cliController.handleDeposit(new String[]{"Deposit", "abc", "USD", "1"});
-        verify(accountService, never()).deposit(anyLong(), anyDouble(), any(Currency.class));
+        cliController.handleDeposit(new String[]{"Deposit", "10.005", "USD", "1"});
+        verify(accountService, never()).deposit(anyLong(), anyLong(), any(Currency.class));
     }
 
     @Test
     void testHandleWithdraw_validInput() {
         Account mockAccount = mock(Account.class);
-        when(accountService.withdraw(1L, 50.0, Currency.USD)).thenReturn(mockAccount);
+        when(accountService.withdraw(1L, 50_00, Currency.USD)).thenReturn(mockAccount);
         when(mockAccount.getFullName()).thenReturn("John Doe");
-        when(mockAccount.getBalance()).thenReturn(150.0);
+        when(mockAccount.getBalance()).thenReturn(150_00L);
         when(mockAccount.getCurrency()).thenReturn(Currency.USD);
 
         cliController.handleWithdraw(new String[]{"Withdraw", "50", "USD", "1"});
 
-        verify(accountService).withdraw(1L, 50.0, Currency.USD);
+        verify(accountService).withdraw(1L, 50_00, Currency.USD);
     }
 
     @Test
@@ -81,7 +95,7 @@ class CliControllerTest {
         Account mockAccount = mock(Account.class);
         when(accountService.getAccountById(1L)).thenReturn(mockAccount);
         when(mockAccount.getFullName()).thenReturn("John Doe");
-        when(mockAccount.getBalance()).thenReturn(150.0);
+        when(mockAccount.getBalance()).thenReturn(150_00L);
         when(mockAccount.getCurrency()).thenReturn(Currency.USD);
 
         cliController.handleBalance(new String[]{"Balance", "1"});
@@ -91,13 +105,30 @@ class CliControllerTest {
 
     @Test
     void testHandleConvert_validInput() {
-        when(currencyConversionService.convert(Currency.USD, Currency.EUR, 1.0)).thenReturn(0.9);
-        when(currencyConversionService.convert(Currency.USD, Currency.EUR, 100.0)).thenReturn(90.0);
+        when(currencyConversionService.quote(Currency.USD, Currency.EUR, 100_00)).thenReturn(
+                new RateQuote(100_00, Currency.USD, Currency.EUR, 90_000_000L, 90_00, LocalDate.of(2025, 9, 1), RateSource.LIVE));
 
         cliController.handleConvert(new String[]{"Convert", "100", "USD", "EUR"});
 
-        verify(currencyConversionService).convert(Currency.USD, Currency.EUR, 1.0);
-        verify(currencyConversionService).convert(Currency.USD, Currency.EUR, 100.0);
+        // One rate lookup: the amount is converted at the rate that is shown
+        verify(currencyConversionService, times(1)).quote(Currency.USD, Currency.EUR, 100_00);
+        verifyNoMoreInteractions(currencyConversionService);
+    }
+
+    @Test
+    void testHandleDumpRates_validInput() {
+        RateSnapshot snapshot = mock(RateSnapshot.class);
+        when(currencyConversionService.dumpRates(Path.of("rates.bin"))).thenReturn(snapshot);
+
+        cliController.handleDumpRates(new String[]{"DumpRates", "rates.bin"});
+
+        verify(currencyConversionService).dumpRates(Path.of("rates.bin"));
+    }
+
+    @Test
+    void testHandleDumpRates_missingFile() {
+        cliController.handleDumpRates(new String[]{"DumpRates"});
+        verify(currencyConversionService, never()).dumpRates(any());
     }
 
     @Test
@@ -105,4 +136,76 @@ class CliControllerTest {
         cliController.handleUnknownCommand();
         // No service interaction, just log output
     }
+
+    @Test
+    void testHandleNewAccounts_createsValidLinesInOneCall(@TempDir Path tempDir) throws Exception {
+        Path file = tempDir.resolve("customers.txt");
+        Files.write(file, List.of("John Doe USD", "", "Jane Smith eur", "Broken line", "Ann Lee GBP"));
+        when(accountService.createAccounts(anyList())).thenAnswer(invocation -> {
+            List<NewAccountRequest> requests = invocation.getArgument(0);
+            return requests.stream().map(request -> mock(Account.class)).toList();
+        });
+
+        cliController.handleNewAccounts(new String[]{"NewAccounts", file.toString()});
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<NewAccountRequest>> requests = ArgumentCaptor.forClass(List.class);
+        verify(accountService, times(1)).createAccounts(requests.capture());
+        assertEquals(2, requests.getValue().size());
+        assertEquals("Jane", requests.getValue().get(1).getFirstName());
+        assertEquals(Currency.EUR, requests.getValue().get(1).getCurrency());
+    }
+
+    @Test
+    void testHandleNewAccounts_missingFile(@TempDir Path tempDir) {
+        cliController.handleNewAccounts(new String[]{"NewAccounts", tempDir.resolve("missing.txt").toString()});
+        verify(accountService, never()).createAccounts(anyList());
+    }
+
+    @Test
+    void testHandleNewAccounts_invalidUsage() {
+        cliController.handleNewAccounts(new String[]{"NewAccounts"});
+        verify(accountService, never()).createAccounts(anyList());
+    }
+
+    @Test
+    void testHandleRun_writesResultsToOutputFile(@TempDir Path tempDir) throws Exception {
+        Path file = tempDir.resolve("commands.txt");
+        Path results = tempDir.resolve("results.txt");
+        Files.writeString(file, "Deposit 10 USD 1\nWithdraw 5 USD 1\n");
+        when(accountService.deposit(1L, 10_00, Currency.USD)).thenReturn(new Account(1L, "John", "Doe", Currency.USD, 10_00, 1));
+        when(accountService.withdraw(1L, 5_00, Currency.USD)).thenReturn(new Account(1L, "John", "Doe", Currency.USD, 5_00, 2));
+        CliController controller = new CliController(accountService, currencyConversionService, new CliScriptRunner(accountService, 2));
+
+        CliScriptRunner.Summary summary = controller.handleRun(new String[]{"Run", file.toString(), results.toString()});
+
+        assertEquals(2, summary.getSucceeded());
+        assertEquals(List.of("1\tOK\t1\t10.00 USD", "2\tOK\t1\t5.00 USD"), Files.readAllLines(results));
+    }
+
+    @Test
+    void testHandleRun_missingFile(@TempDir Path tempDir) {
+        assertNull(cliController.handleRun(new String[]{"Run", tempDir.resolve("missing.txt").toString()}));
+        assertNull(cliController.handleRun(new String[]{"Run"}));
+        verifyNoInteractions(accountService);
+    }
+
+    @Test
+    void testHandleTransfer_validInput() {
+        Account from = new Account("John", "Doe", Currency.USD);
+        Account to = new Account("Jane", "Smith", Currency.EUR);
+        when(accountService.transfer(1L, 2L, 25_50, Currency.USD)).thenReturn(new TransferResult(from, to, 25_50, 21_00));
+
+        cliController.handleTransfer(new String[]{"Transfer", "25,5", "usd", "1", "2"});
+
+        verify(accountService).transfer(1L, 2L, 25_50, Currency.USD);
+    }
+
+    @Test
+    void testHandleTransfer_invalidInput() {
+        cliController.handleTransfer(new String[]{"Transfer", "10", "USD", "1"});
+        cliController.handleTransfer(new String[]{"Transfer", "10", "GBP", "1", "2"});
+        cliController.handleTransfer(new String[]{"Transfer", "10", "USD", "1", "x"});
+        verify(accountService, never()).transfer(any(), any(), anyLong(), any());
+    }
 }
@@ -0,0 +1,194 @@
+package com.demo.bank.account.controller;
+
+import com.demo.bank.account.entity.Account;
+import com.demo.bank.account.entity.Currency;
+import com.demo.bank.account.entity.TransferResult;
+import com.demo.bank.account.service.AccountService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class CliScriptRunnerTest {
+    private final AccountService accountService = mock(AccountService.class);
+
+    private static Account account(long id, long balance) {
+        return new Account(id, "John", "Doe", Currency.USD, balance, 0);
+    }
+
+    @Test
+    void testSplit() {
+        String[] fields = new String[6];
+        assertEquals(4, CliScriptRunner.split("  Deposit\t10.50   USD 7 ", fields));
+        assertEquals(List.of("Deposit", "10.50", "USD", "7"), Arrays.asList(fields).subList(0, 4));
+        assertEquals(0, CliScriptRunner.split(" \t ", fields));
+        assertEquals(6, CliScriptRunner.split("a b c d e f g h", fields));
+    }
+
+    @Test
+    void testRun_keepsOrderPerAccountAndRunsAccountsInParallel() throws IOException {
+        Map<Long, List<Long>> amountsByAccount = new ConcurrentHashMap<>();
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        AtomicLong balance = new AtomicLong();
+        when(accountService.deposit(anyLong(), anyLong(), eq(Currency.USD))).thenAnswer(invocation -> {
+            long accountId = invocation.getArgument(0);
+            threads.add(Thread.currentThread().getName());
+            if (ThreadLocalRandom.current().nextInt(10) == 0) {
+                Thread.sleep(1);
+            }
+            // One lane per account: no other thread appends to this list
+            amountsByAccount.computeIfAbsent(accountId, id -> new ArrayList<>()).add(invocation.getArgument(1));
+            return account(accountId, balance.incrementAndGet());
+        });
+        StringBuilder script = new StringBuilder("# nightly deposits\n\n");
+        for (int amount = 1; amount <= 200; amount++) {
+            for (long accountId = 1; accountId <= 4; accountId++) {
+                script.append("Deposit ").append(amount).append(" USD ").append(accountId).append('\n');
+            }
+        }
+        StringWriter output = new StringWriter();
+
+        CliScriptRunner.Summary summary = new CliScriptRunner(accountService, 4).run(new StringReader(script.toString()), output);
+
+        assertEquals(800, summary.getCommands());
+        assertEquals(800, summary.getSucceeded());
+        assertEquals(4, threads.size());
+        for (long accountId = 1; accountId <= 4; accountId++) {
+            List<Long> amounts = amountsByAccount.get(accountId);
+            assertEquals(200, amounts.size());
+            for (int i = 0; i < amounts.size(); i++) {
+                assertEquals((i + 1) * 100L, amounts.get(i));
+            }
+        }
+        assertEquals(800, output.toString().lines().filter(line -> line.contains("\tOK\t")).count());
+    }
+
+    @Test
+    void testRun_reportsEveryLine() throws IOException {
+        when(accountService.deposit(1L, 10_00, Currency.USD)).thenReturn(account(1L, 10_00));
+        when(accountService.withdraw(1L, 50_00, Currency.USD)).thenThrow(new RuntimeException("Withdraw failed. Insufficient balance or invalid amount"));
+        when(accountService.getAccountById(2L)).thenReturn(null);
+        String script = """
+                Deposit 10 USD 1
+                Withdraw 50 usd 1
+                Balance 2
+                Deposit 10.005 USD 1
+                Deposit 10 XYZ 1
+                Withdraw 10 USD
+                Convert 10 USD EUR
+                """;
+        StringWriter output = new StringWriter();
+
+        CliScriptRunner.Summary summary = new CliScriptRunner(accountService, 2).run(new StringReader(script), output);
+
+        List<String> lines = output.toString().lines().sorted().toList();
+        assertEquals(List.of(
+                "1\tOK\t1\t10.00 USD",
+                "2\tFAILED\tWithdraw failed. Insufficient balance or invalid amount",
+                "3\tFAILED\tAccount not found",
+                "4\tINVALID\tAmount has more than 2 decimal places: 10.005",
+                "5\tINVALID\tInvalid currency: XYZ",
+                "6\tINVALID\tUsage: Withdraw [Amount] [Currency] [Account number]",
+                "7\tINVALID\tUnsupported command: Convert. Scripts can run NewAccount, Deposit, Withdraw, Transfer and Balance"), lines);
+        assertEquals(7, summary.getCommands());
+        assertEquals(1, summary.getSucceeded());
+        assertEquals(2, summary.getFailed());
+        assertEquals(4, summary.getInvalid());
+    }
+
+    @Test
+    @Timeout(10)
+    void testRun_errorFailsLineAndKeepsLaneRunning() throws IOException {
+        when(accountService.deposit(1L, 10_00, Currency.USD)).thenThrow(new StackOverflowError());
+        when(accountService.deposit(1L, 20_00, Currency.USD)).thenReturn(account(1L, 20_00));
+        when(accountService.getAccountById(1L)).thenReturn(account(1L, 20_00));
+        String script = "Deposit 10 USD 1\nDeposit 20 USD 1\nBalance 1\n";
+        StringWriter output = new StringWriter();
+
+        CliScriptRunner.Summary summary = new CliScriptRunner(accountService, 2).run(new StringReader(script), output);
+
+        List<String> lines = output.toString().lines().sorted().toList();
+        assertEquals("1\tFAILED\tjava.lang.StackOverflowError", lines.get(0));
+        assertEquals("2\tOK\t1\t20.00 USD", lines.get(1));
+        assertEquals(3, lines.size());
+        assertEquals(1, summary.getFailed());
+        assertEquals(2, summary.getSucceeded());
+    }
+
+    @Test
+    void testRun_readFailureIsNotMaskedByOutputFailure() {
+        when(accountService.deposit(1L, 10_00, Currency.USD)).thenReturn(account(1L, 10_00));
+        Reader input = new Reader() {
+            private boolean read;
+
+            @Override
+            public int read(char[] buffer, int offset, int length) throws IOException {
+                if (read) {
+                    throw new IOException("input gone");
+                }
+                read = true;
+                char[] line = "Deposit 10 USD 1\n".toCharArray();
+                System.arraycopy(line, 0, buffer, offset, line.length);
+                return line.length;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        Writer output = new Writer() {
+            @Override
+            public void write(char[] buffer, int offset, int length) {
+            }
+
+            @Override
+            public void flush() throws IOException {
+                throw new IOException("output gone");
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        IOException ex = assertThrows(IOException.class, () -> new CliScriptRunner(accountService, 2).run(input, output));
+        assertEquals("input gone", ex.getMessage());
+        assertEquals("output gone", ex.getSuppressed()[0].getMessage());
+    }
+
+    @Test
+    void testRun_transferWaitsForQueuedCommands() throws IOException {
+        when(accountService.deposit(anyLong(), anyLong(), any())).thenAnswer(invocation -> {
+            Thread.sleep(20);
+            return account(invocation.getArgument(0), invocation.getArgument(1));
+        });
+        when(accountService.transfer(1L, 2L, 5_00, Currency.USD))
+                .thenReturn(new TransferResult(account(1L, 5_00), account(2L, 15_00), 5_00, 5_00));
+        String script = "Deposit 10 USD 1\nDeposit 10 USD 2\nTransfer 5 USD 1 2\nDeposit 1 USD 1\n";
+        StringWriter output = new StringWriter();
+
+        new CliScriptRunner(accountService, 2).run(new StringReader(script), output);
+
+        var inOrder = inOrder(accountService);
+        inOrder.verify(accountService, times(2)).deposit(anyLong(), eq(10_00L), any());
+        inOrder.verify(accountService).transfer(1L, 2L, 5_00, Currency.USD);
+        inOrder.verify(accountService).deposit(1L, 1_00, Currency.USD);
+        assertTrue(output.toString().contains("3\tOK\t1\t5.00 USD\t2\t15.00 USD"));
+    }
+}
@@ -0,0 +1,65 @@
+package com.demo.bank.account.entity;
+
+import com.demo.bank.utils.JmhBenchmarks;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH throughput of the balance arithmetic of {@link Account}: deposit, withdraw, and the copy the account cache
+ * and the ledger take of every account they hand out. Accounts are not thread-safe, so every thread works on its
+ * own; more threads show how the arithmetic scales with the cores, not contention. Not part of the regular build:
+ * <pre>
+ * mvn test -Pbenchmark -Dtest=AccountBenchmark [-Dbenchmark.threads=1,4,16]
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AccountBenchmark {
+    private Account account;
+
+    @Setup
+    public void setUp() {
+        account = new Account(1L, "Bench", "Mark", Currency.USD, 1_000_000_00L, 0);
+    }
+
+    @Benchmark
+    public long deposit() {
+        account.deposit(1_00);
+        return account.getBalance();
+    }
+
+    @Benchmark
+    public boolean withdrawThenDeposit() {
+        // In pairs, so the balance never runs out
+        boolean withdrawn = account.withdraw(1_00);
+        account.deposit(1_00);
+        return withdrawn;
+    }
+
+    @Benchmark
+    public Account copy() {
+        return new Account(account, account.getBalance(), account.getVersion() + 1);
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void accountArithmetic() throws Exception {
+        JmhBenchmarks.run(AccountBenchmark.class);
+    }
+}
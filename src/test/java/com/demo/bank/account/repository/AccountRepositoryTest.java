@@ -0,0 +1,37 @@
+package com.demo.bank.account.repository;
+
+import com.demo.bank.account.entity.Account;
+import com.demo.bank.account.entity.AccountBalance;
+import com.demo.bank.account.entity.Currency;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(showSql = false)
+// The cli profile would start the interactive command loop
+@ActiveProfiles("web")
+class AccountRepositoryTest {
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Test
+    void testFindBalanceById_versionFollowsBalanceChanges() {
+        Account account = new Account("John", "Doe", Currency.RON);
+        account.deposit(250_00);
+        Long id = accountRepository.saveAndFlush(account).getId();
+
+        AccountBalance balance = accountRepository.findBalanceById(id).orElseThrow();
+        assertEquals(id, balance.getId());
+        assertEquals(250_00, balance.getBalance());
+        assertEquals(Currency.RON, balance.getCurrency());
+
+        accountRepository.depositAndGet(id, 10_00, "RON");
+        AccountBalance changed = accountRepository.findBalanceById(id).orElseThrow();
+        assertEquals(260_00, changed.getBalance());
+        assertEquals(balance.getVersion() + 1, changed.getVersion());
+        assertTrue(accountRepository.findBalanceById(id + 1).isEmpty());
+    }
+}
@@ -0,0 +1,197 @@
+package com.demo.bank.account.repository;
+
+import com.demo.bank.Application;
+import com.demo.bank.account.entity.Account;
+import com.demo.bank.account.entity.Currency;
+import com.demo.bank.account.service.AccountService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionJournalTest {
+    @TempDir
+    Path directory;
+
+    private final Map<Long, Account> restored = new HashMap<>();
+    private final List<TransactionJournal> opened = new ArrayList<>();
+
+    private TransactionJournal open(long segmentSize, boolean awaitSync) throws IOException {
+        restored.clear();
+        TransactionJournal journal = new TransactionJournal(directory, segmentSize, Duration.ofHours(1), awaitSync,
+                Duration.ZERO, (Collection<Account> accounts) -> accounts.forEach(account -> restored.put(account.getId(), account)));
+        journal.afterSingletonsInstantiated();
+        opened.add(journal);
+        return journal;
+    }
+
+    @AfterEach
+    void tearDown() {
+        opened.forEach(TransactionJournal::close);
+    }
+
+    private static Account account(long id, long balance, long version) {
+        return new Account(id, "John", "Doe", Currency.EUR, balance, version);
+    }
+
+    private List<String> files(String prefix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString()).filter(name -> name.startsWith(prefix)).sorted().toList();
+        }
+    }
+
+    @Test
+    void testRecordRoundTrip() {
+        Account account = new Account(7L, "Ștefan", "Doe", Currency.RON, 1250, 3);
+        JournalFile.Entry entry = JournalFile.decode(ByteBuffer.wrap(JournalFile.encode(42, account)));
+
+        assertEquals(42, entry.sequence());
+        assertEquals(7L, entry.account().getId());
+        assertEquals("Ștefan Doe", entry.account().getFullName());
+        assertEquals(Currency.RON, entry.account().getCurrency());
+        assertEquals(1250, entry.account().getBalance());
+        assertEquals(3, entry.account().getVersion());
+    }
+
+    @Test
+    void testDecode_unknownRecordTypeRejected() {
+        ByteBuffer payload = ByteBuffer.wrap(JournalFile.encode(5, account(7L, 30, 3)));
+        payload.put(0, (byte) 1);
+
+        assertThrows(IllegalArgumentException.class, () -> JournalFile.decode(payload));
+    }
+
+    @Test
+    void testReadSegment_stopsAtTornRecord() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        JournalFile.writeRecord(buffer, JournalFile.encode(1, account(1L, 1000, 1)));
+        int second = buffer.position();
+        JournalFile.writeRecord(buffer, JournalFile.encode(2, account(1L, 2000, 2)));
+        // A crash in the middle of the second record
+        buffer.put(second + JournalFile.RECORD_HEADER_SIZE + 10, (byte) 0x7F);
+        Path segment = directory.resolve("torn.seg");
+        Files.write(segment, buffer.array());
+
+        List<JournalFile.Entry> entries = JournalFile.readSegment(segment);
+        assertEquals(1, entries.size());
+        assertEquals(1000, entries.get(0).account().getBalance());
+    }
+
+    @Test
+    void testReplay_afterCrashRestoresLatestImages() throws IOException {
+        TransactionJournal journal = open(1 << 20, false);
+        journal.append(account(1L, 0, 0));
+        journal.append(account(2L, 0, 0));
+        journal.append(account(1L, 1000, 1));
+        journal.append(account(1L, 2500, 2));
+        // Appended out of order by concurrent writers: the newer version wins
+        journal.append(account(2L, 500, 2));
+        journal.append(account(2L, 300, 1));
+
+        // No close: nothing but the segment itself to recover from
+        TransactionJournal reopened = open(1 << 20, false);
+
+        assertEquals(2, restored.size());
+        assertEquals(2500, restored.get(1L).getBalance());
+        assertEquals(2, restored.get(1L).getVersion());
+        assertEquals(500, restored.get(2L).getBalance());
+        assertEquals(journal.getLastSequence(), reopened.getLastSequence());
+    }
+
+    @Test
+    void testSnapshot_replacesCoveredSegments() throws IOException {
+        // Small segments: the appends below span many of them
+        TransactionJournal journal = open(1024, false);
+        for (int version = 0; version < 200; version++) {
+            journal.append(account(version % 10, version, version));
+        }
+        assertTrue(files("journal-").size() > 10);
+
+        journal.snapshot();
+        assertEquals(1, files("journal-").size());
+        assertEquals(1, files("snapshot-").size());
+        journal.append(account(3L, 100000, 1000));
+
+        open(1024, false);
+        assertEquals(10, restored.size());
+        assertEquals(199, restored.get(9L).getBalance());
+        assertEquals(100000, restored.get(3L).getBalance());
+    }
+
+    @Test
+    void testClose_writesSnapshotSoNothingIsReplayed() throws IOException {
+        TransactionJournal journal = open(1 << 20, false);
+        journal.append(account(1L, 1000, 1));
+        journal.close();
+
+        assertEquals(1, files("snapshot-").size());
+        open(1 << 20, false);
+        assertEquals(1000, restored.get(1L).getBalance());
+        assertThrows(IllegalStateException.class, () -> journal.append(account(1L, 2000, 2)));
+    }
+
+    @Test
+    void testAppend_awaitsGroupSync() throws IOException {
+        TransactionJournal journal = open(1 << 20, true);
+        CompletableFuture<Void> first = journal.append(account(1L, 1000, 1));
+        CompletableFuture<Void> second = journal.append(account(2L, 1000, 1));
+        assertFalse(first.isDone());
+        assertFalse(second.isDone());
+
+        // One sync acknowledges every append before it
+        journal.sync();
+
+        assertTrue(first.isDone());
+        assertTrue(second.isDone());
+        assertFalse(journal.append(account(1L, 2000, 2)).isDone());
+    }
+
+    @Test
+    void testApplicationRestart_restoresAccountsIntoFreshDatabase() {
+        Long id;
+        try (ConfigurableApplicationContext context = start()) {
+            AccountService accountService = context.getBean(AccountService.class);
+            id = accountService.createAccount("John", "Doe", Currency.USD).getId();
+            accountService.deposit(id, 12_50, Currency.USD);
+        }
+
+        // A new in-memory database: everything it holds comes from the journal
+        try (ConfigurableApplicationContext context = start()) {
+            AccountService accountService = context.getBean(AccountService.class);
+            Account restoredAccount = accountService.getAccountById(id);
+            assertEquals(12_50, restoredAccount.getBalance());
+            assertEquals("John Doe", restoredAccount.getFullName());
+            assertTrue(accountService.createAccount("Jane", "Doe", Currency.EUR).getId() > id);
+        }
+    }
+
+    private ConfigurableApplicationContext start() {
+        return new SpringApplicationBuilder(Application.class)
+                .web(WebApplicationType.NONE)
+                // Command-line arguments, so they take precedence over spring.profiles.active=cli
+                .run("--spring.profiles.active=web",
+                        "--spring.datasource.url=jdbc:h2:mem:journal-" + UUID.randomUUID(),
+                        "--account.journal.enabled=true",
+                        "--account.journal.directory=" + directory,
+                        "--conversion.rates.source=live",
+                        "--logging.level.root=WARN");
+    }
+}
@@ -0,0 +1,85 @@
+package com.demo.bank.account.service;
+
+import com.demo.bank.account.entity.Account;
+import com.demo.bank.account.entity.AccountCacheStats;
+import com.demo.bank.account.entity.Currency;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccountCacheTest {
+    private final AtomicInteger loads = new AtomicInteger();
+    private final Function<Long, Optional<Account>> loader = id -> {
+        loads.incrementAndGet();
+        return Optional.of(account(id, 100_00, 1));
+    };
+
+    private static Account account(long id, long balance, long version) {
+        return new Account(id, "John", "Doe", Currency.EUR, balance, version);
+    }
+
+    @Test
+    void testGet_keepsOwnCopy() {
+        AccountCache cache = new AccountCache(100, Duration.ofMinutes(1));
+        Account account = account(1L, 100_00, 1);
+        cache.put(account);
+        account.deposit(50_00);
+
+        assertEquals(100_00, cache.get(1L, loader).getBalance());
+        assertEquals(0, loads.get());
+    }
+
+    @Test
+    void testGet_boundedByEvictingLeastRecentlyUsed() {
+        AccountCache cache = new AccountCache(32, Duration.ofMinutes(1));
+        cache.get(0L, loader);
+        for (long id = 1; id <= 1000; id++) {
+            cache.get(id, loader);
+            // Read all the time: always the most recently used account of its segment
+            cache.get(0L, loader);
+        }
+
+        AccountCacheStats stats = cache.getStats();
+        assertEquals(32, stats.getMaxSize());
+        assertTrue(stats.getSize() <= 32);
+        assertEquals(1001 - stats.getSize(), stats.getEvictions());
+        assertEquals(1001, loads.get());
+        assertEquals(1000, stats.getHits());
+        assertEquals(1001, stats.getMisses());
+    }
+
+    @Test
+    void testGet_expiredEntryIsLoadedAgain() {
+        AccountCache cache = new AccountCache(100, Duration.ZERO);
+        cache.get(1L, loader);
+        cache.get(1L, loader);
+
+        assertEquals(2, loads.get());
+        assertEquals(0.0, cache.getStats().getHitRatio());
+    }
+
+    @Test
+    void testPut_keepsNewerVersion() {
+        AccountCache cache = new AccountCache(100, Duration.ofMinutes(1));
+        cache.put(account(1L, 150_00, 2));
+        cache.put(account(1L, 100_00, 1));
+        assertEquals(150_00, cache.get(1L, loader).getBalance());
+
+        cache.put(account(1L, 120_00, 3));
+        assertEquals(120_00, cache.get(1L, loader).getBalance());
+        cache.invalidate(1L);
+        assertEquals(100_00, cache.get(1L, loader).getBalance());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void testConstructor_rejectsInvalidSize() {
+        assertThrows(IllegalArgumentException.class, () -> new AccountCache(0, Duration.ofMinutes(1)));
+        assertEquals(16, new AccountCache(1, Duration.ofMinutes(1)).getStats().getMaxSize());
+    }
+}
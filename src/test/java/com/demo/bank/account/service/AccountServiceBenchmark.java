@@ -0,0 +1,119 @@
+package com.demo.bank.account.service;
+
+import com.demo.bank.Application;
+import com.demo.bank.account.entity.Account;
+import com.demo.bank.account.entity.Currency;
+import com.demo.bank.conversion.entity.RateSnapshot;
+import com.demo.bank.conversion.repository.RateSnapshotFile;
+import com.demo.bank.utils.JmhBenchmarks;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH throughput of {@link AccountService#deposit} and {@link AccountService#withdraw} as the application runs
+ * them: the full Spring context on the in-memory database, with the rates served from a snapshot file so no
+ * network call is involved. Operations are spread over a set of USD accounts; {@code currency=EUR} adds the
+ * conversion to every operation. All threads share the service, like the request threads of the application.
+ * Not part of the regular build:
+ * <pre>
+ * mvn test -Pbenchmark -Dtest=AccountServiceBenchmark [-Dbenchmark.threads=1,4,16] [-Dbenchmark.param.updateMode=atomic,ledger]
+ * </pre>
+ * Logging is raised to WARN, otherwise the log line of every conversion would be measured too.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AccountServiceBenchmark {
+    private static final int ACCOUNTS = 256;
+
+    @Param({"atomic", "ledger"})
+    public String updateMode;
+    // The accounts are in USD: EUR deposits and withdrawals are converted
+    @Param({"USD", "EUR"})
+    public Currency currency;
+
+    private Path ratesFile;
+    private ConfigurableApplicationContext context;
+    private AccountService accountService;
+    private long[] accountIds;
+
+    @Setup
+    public void setUp() throws IOException {
+        ratesFile = Files.createTempFile("benchmark-rates", ".bin");
+        double[] euroRates = new double[Currency.values().length];
+        Arrays.fill(euroRates, Double.NaN);
+        euroRates[Currency.EUR.ordinal()] = 1.0;
+        euroRates[Currency.USD.ordinal()] = 1.1708;
+        euroRates[Currency.RON.ordinal()] = 5.0765;
+        RateSnapshotFile.write(ratesFile, RateSnapshot.fromBaseRates(LocalDate.of(2025, 9, 1), euroRates), Currency.EUR);
+
+        // As arguments, so they win over application.properties; the web profile keeps the CLI from starting
+        context = new SpringApplicationBuilder(Application.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.profiles.active=web",
+                        "--account.update-mode=" + updateMode,
+                        "--conversion.rates.source=file",
+                        "--conversion.rates.file=" + ratesFile,
+                        "--logging.level.root=WARN",
+                        "--logging.level.com.demo.bank=WARN");
+        accountService = context.getBean(AccountService.class);
+        accountIds = new long[ACCOUNTS];
+        for (int i = 0; i < ACCOUNTS; i++) {
+            Account account = accountService.createAccount("Bench", "Mark", Currency.USD);
+            accountService.deposit(account.getId(), 1_000_000_000_00L, Currency.USD);
+            accountIds[i] = account.getId();
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        context.close();
+        Files.deleteIfExists(ratesFile);
+    }
+
+    private long pick() {
+        return accountIds[ThreadLocalRandom.current().nextInt(ACCOUNTS)];
+    }
+
+    @Benchmark
+    public Account deposit() {
+        return accountService.deposit(pick(), 1_00, currency);
+    }
+
+    @Benchmark
+    public Account withdraw() {
+        return accountService.withdraw(pick(), 1_00, currency);
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void depositAndWithdraw() throws Exception {
+        JmhBenchmarks.run(AccountServiceBenchmark.class);
+    }
+}
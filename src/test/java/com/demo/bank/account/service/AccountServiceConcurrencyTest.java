@@ -0,0 +1,365 @@
+package com.demo.bank.account.service;
+
+import com.demo.bank.account.entity.Account;
+import com.demo.bank.account.entity.Currency;
+import com.demo.bank.account.entity.TransactionRequest;
+import com.demo.bank.account.entity.TransactionResult;
+import com.demo.bank.account.entity.TransactionType;
+import com.demo.bank.account.repository.AccountRepository;
+import com.demo.bank.conversion.service.CurrencyConversionService;
+import com.demo.bank.utils.OptimisticRetry;
+import com.demo.bank.utils.StripedLock;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Hammers a single account from many threads against the real database and checks that no update is lost.
+ */
+@DataJpaTest(showSql = false)
+// The cli profile would start the interactive command loop
+@ActiveProfiles("web")
+// Every thread commits its own transaction, so the test itself must not hold one open
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class AccountServiceConcurrencyTest {
+    private static final int THREADS = 200;
+    private static final int OPERATIONS_PER_THREAD = 5;
+    // Unless stated otherwise, every operation moves one minor unit, so balances equal operation counts
+
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private AccountService service(AccountService.UpdateMode updateMode, OptimisticRetry optimisticRetry) {
+        return new AccountService(accountRepository, mock(CurrencyConversionService.class), transactionTemplate,
+                updateMode, optimisticRetry, new StripedLock(16), null, null, null, new SimpleMeterRegistry());
+    }
+
+    private AccountService atomicService() {
+        return service(AccountService.UpdateMode.ATOMIC, new OptimisticRetry("test", 1, Duration.ZERO, Duration.ZERO));
+    }
+
+    private void runConcurrently(Runnable operation) throws Exception {
+        runConcurrently(THREADS, operation);
+    }
+
+    private void runConcurrently(int threads, Runnable operation) throws Exception {
+        runConcurrently(threads, thread -> operation.run());
+    }
+
+    // The operation is given the index of the thread running it, so tests can split the threads between operations
+    private void runConcurrently(IntConsumer operation) throws Exception {
+        runConcurrently(THREADS, operation);
+    }
+
+    private void runConcurrently(int threads, IntConsumer operation) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                int thread = i;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int j = 0; j < OPERATIONS_PER_THREAD; j++) {
+                        operation.accept(thread);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testConcurrentDeposits_noLostUpdates() throws Exception {
+        AccountService accountService = atomicService();
+        Long id = accountRepository.save(new Account("John", "Doe", Currency.USD)).getId();
+
+        runConcurrently(() -> accountService.deposit(id, 1, Currency.USD));
+
+        assertEquals(THREADS * OPERATIONS_PER_THREAD, accountRepository.findById(id).orElseThrow().getBalance());
+    }
+
+    @Test
+    void testConcurrentDepositsAndCachedReads_cacheEndsAtCommittedBalance() throws Exception {
+        AccountService accountService = new AccountService(accountRepository, mock(CurrencyConversionService.class),
+                transactionTemplate, AccountService.UpdateMode.ATOMIC, new OptimisticRetry("test", 1, Duration.ZERO, Duration.ZERO),
+                new StripedLock(16), new AccountCache(100, Duration.ofMinutes(1)), null, null, new SimpleMeterRegistry());
+        Long id = accountRepository.save(new Account("John", "Doe", Currency.USD)).getId();
+        AtomicInteger deposited = new AtomicInteger();
+
+        // Half of the threads read while the others write: a read that loaded the row before a deposit must not
+        // put the older balance back once the deposit is cached
+        runConcurrently(thread -> {
+            if (thread % 2 == 0) {
+                accountService.deposit(id, 1, Currency.USD);
+                deposited.incrementAndGet();
+            } else {
+                assertNotNull(accountService.getAccountById(id));
+            }
+        });
+
+        assertEquals(deposited.get(), accountRepository.findById(id).orElseThrow().getBalance());
+        assertEquals(deposited.get(), accountService.getAccountById(id).getBalance());
+    }
+
+    @Test
+    void testConcurrentWithdrawals_neverOverdraw() throws Exception {
+        AccountService accountService = atomicService();
+        Account account = new Account("John", "Doe", Currency.USD);
+        // Enough for exactly half of the withdrawals
+        account.deposit(THREADS * OPERATIONS_PER_THREAD / 2);
+        Long id = accountRepository.save(account).getId();
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+
+        runConcurrently(() -> {
+            try {
+                accountService.withdraw(id, 1, Currency.USD);
+                succeeded.incrementAndGet();
+            } catch (RuntimeException e) {
+                assertEquals("Withdraw failed. Insufficient balance or invalid amount", e.getMessage());
+                rejected.incrementAndGet();
+            }
+        });
+
+        assertEquals(THREADS * OPERATIONS_PER_THREAD / 2, succeeded.get());
+        assertEquals(THREADS * OPERATIONS_PER_THREAD / 2, rejected.get());
+        assertEquals(0, accountRepository.findById(id).orElseThrow().getBalance());
+    }
+
+    @Test
+    void testConcurrentDepositsAndWithdrawals_balanceMatchesSucceededOperations() throws Exception {
+        AccountService accountService = atomicService();
+        Long id = accountRepository.save(new Account("John", "Doe", Currency.USD)).getId();
+        AtomicInteger withdrawn = new AtomicInteger();
+        AtomicInteger deposited = new AtomicInteger();
+
+        runConcurrently(thread -> {
+            if (thread % 2 == 0) {
+                accountService.deposit(id, 2, Currency.USD);
+                deposited.addAndGet(2);
+            } else {
+                try {
+                    accountService.withdraw(id, 1, Currency.USD);
+                    withdrawn.incrementAndGet();
+                } catch (RuntimeException e) {
+                    // Insufficient balance at that moment
+                }
+            }
+        });
+
+        Account account = accountRepository.findById(id).orElseThrow();
+        assertEquals(deposited.get() - withdrawn.get(), account.getBalance());
+        assertTrue(account.getBalance() >= 0);
+    }
+
+    @Test
+    void testAtomicUpdate_returnsNewBalanceAndVersion() {
+        AccountService accountService = atomicService();
+        Account created = accountRepository.save(new Account("John", "Doe", Currency.EUR));
+
+        Account deposited = accountService.deposit(created.getId(), 10_00, Currency.EUR);
+        assertEquals(10_00, deposited.getBalance());
+        assertEquals(created.getVersion() + 1, deposited.getVersion());
+        assertEquals(7_50, accountService.withdraw(created.getId(), 2_50, Currency.EUR).getBalance());
+        assertEquals("John Doe", accountService.withdraw(created.getId(), 2_50, Currency.EUR).getFullName());
+    }
+
+    @Test
+    void testOptimisticDeposits_retriedUntilApplied() throws Exception {
+        // Conflicts grow with the number of writers on one account; fewer threads keep the test fast
+        int threads = 50;
+        // Enough attempts that no deposit gives up, even with every thread on the same account
+        OptimisticRetry optimisticRetry = new OptimisticRetry("test", 1000, Duration.ofMillis(1), Duration.ofMillis(20));
+        AccountService accountService = service(AccountService.UpdateMode.OPTIMISTIC, optimisticRetry);
+        Long id = accountRepository.save(new Account("John", "Doe", Currency.USD)).getId();
+
+        runConcurrently(threads, () -> accountService.deposit(id, 1, Currency.USD));
+
+        assertEquals(threads * OPERATIONS_PER_THREAD, accountRepository.findById(id).orElseThrow().getBalance());
+        assertEquals(threads * OPERATIONS_PER_THREAD, optimisticRetry.getStats().getOperations());
+        assertEquals(0, optimisticRetry.getStats().getGiveUps());
+        assertEquals(optimisticRetry.getStats().getConflicts(), optimisticRetry.getStats().getRetries());
+    }
+
+    @Test
+    void testStripedDeposits_serializedWithoutConflicts() throws Exception {
+        AccountService accountService = service(AccountService.UpdateMode.STRIPED,
+                new OptimisticRetry("test", 1, Duration.ZERO, Duration.ZERO));
+        Long id = accountRepository.save(new Account("John", "Doe", Currency.USD)).getId();
+
+        // Without retries, any version conflict would fail the operation and the test
+        runConcurrently(() -> accountService.deposit(id, 1, Currency.USD));
+
+        assertEquals(THREADS * OPERATIONS_PER_THREAD, accountRepository.findById(id).orElseThrow().getBalance());
+    }
+
+    @Test
+    void testAtomicBatchesAndSingleDeposits_batchesRetriedOnConflict() throws Exception {
+        OptimisticRetry optimisticRetry = new OptimisticRetry("test", 1000, Duration.ofMillis(1), Duration.ofMillis(20));
+        batchesAndSingleDeposits(service(AccountService.UpdateMode.ATOMIC, optimisticRetry));
+        assertTrue(optimisticRetry.getStats().getOperations() > 0);
+        assertEquals(0, optimisticRetry.getStats().getGiveUps());
+    }
+
+    @Test
+    void testStripedBatchesAndSingleDeposits_serializedWithoutConflicts() throws Exception {
+        // Without retries, any version conflict would fail the batch and the test
+        batchesAndSingleDeposits(service(AccountService.UpdateMode.STRIPED,
+                new OptimisticRetry("test", 1, Duration.ZERO, Duration.ZERO)));
+    }
+
+    // Half of the threads deposit into every account with one batch, the others into one account at a time
+    private void batchesAndSingleDeposits(AccountService accountService) throws Exception {
+        int threads = 16;
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            ids.add(accountRepository.save(new Account("John", "Doe", Currency.USD)).getId());
+        }
+        List<TransactionRequest> batch = ids.stream()
+                .map(id -> new TransactionRequest(id, TransactionType.DEPOSIT, 1, Currency.USD))
+                .toList();
+        AtomicInteger batches = new AtomicInteger();
+        AtomicInteger singles = new AtomicInteger();
+
+        runConcurrently(threads, thread -> {
+            if (thread % 2 == 0) {
+                List<TransactionResult> results = accountService.applyTransactions(batch);
+                assertTrue(results.stream().allMatch(TransactionResult::isSuccess));
+                batches.incrementAndGet();
+            } else {
+                accountService.deposit(ids.get(ThreadLocalRandom.current().nextInt(ids.size())), 1, Currency.USD);
+                singles.incrementAndGet();
+            }
+        });
+
+        long total = 0;
+        for (Long id : ids) {
+            long balance = accountRepository.findById(id).orElseThrow().getBalance();
+            assertTrue(balance >= batches.get());
+            total += balance;
+        }
+        assertEquals(batches.get() * ids.size() + singles.get(), total);
+    }
+
+    @Test
+    void testLedgerDeposits_appliedInMemoryAndWrittenToDatabase() throws Exception {
+        LedgerEngine ledgerEngine = new LedgerEngine(accountRepository, jdbcTemplate, transactionTemplate, 4, Duration.ofMillis(5));
+        AccountService accountService = new AccountService(accountRepository, mock(CurrencyConversionService.class),
+                transactionTemplate, AccountService.UpdateMode.LEDGER, new OptimisticRetry("test", 1, Duration.ZERO, Duration.ZERO),
+                new StripedLock(16), null, ledgerEngine, null, new SimpleMeterRegistry());
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            ids.add(accountRepository.save(new Account("John", "Doe", Currency.USD)).getId());
+        }
+        AtomicInteger next = new AtomicInteger();
+
+        runConcurrently(() -> accountService.deposit(ids.get(next.getAndIncrement() % ids.size()), 1, Currency.USD));
+        ledgerEngine.close();
+
+        int perAccount = THREADS * OPERATIONS_PER_THREAD / ids.size();
+        for (Long id : ids) {
+            Account account = accountRepository.findById(id).orElseThrow();
+            assertEquals(perAccount, account.getBalance());
+            assertEquals(perAccount, account.getVersion());
+        }
+    }
+
+    @Test
+    @Timeout(120)
+    void testConcurrentTransfersAtomic_moneyConservedWithoutDeadlock() throws Exception {
+        assertTransfersConserveMoney(atomicService());
+    }
+
+    @Test
+    @Timeout(120)
+    void testConcurrentTransfersStriped_moneyConservedWithoutDeadlock() throws Exception {
+        assertTransfersConserveMoney(service(AccountService.UpdateMode.STRIPED,
+                new OptimisticRetry("test", 1, Duration.ZERO, Duration.ZERO)));
+    }
+
+    // Transfers in both directions between a few accounts: a deadlock would hang the test, a lost update would change the total
+    private void assertTransfersConserveMoney(AccountService accountService) throws Exception {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Account account = new Account("John", "Doe", Currency.USD);
+            account.deposit(100_00);
+            ids.add(accountRepository.save(account).getId());
+        }
+        AtomicInteger transferred = new AtomicInteger();
+
+        // The test datasource is not pooled: with every thread in its own transaction on four rows, waits for row
+        // locks would exceed the H2 lock timeout long before a real deadlock could show
+        runConcurrently(20, () -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int from = random.nextInt(ids.size());
+            int to = (from + 1 + random.nextInt(ids.size() - 1)) % ids.size();
+            try {
+                accountService.transfer(ids.get(from), ids.get(to), (1 + random.nextInt(20)) * 1_00L, Currency.USD);
+                transferred.incrementAndGet();
+            } catch (RuntimeException e) {
+                assertEquals("Transfer failed. Insufficient balance", e.getMessage());
+            }
+        });
+
+        long total = 0;
+        for (Long id : ids) {
+            long balance = accountRepository.findById(id).orElseThrow().getBalance();
+            assertTrue(balance >= 0);
+            total += balance;
+        }
+        assertEquals(400_00, total);
+        assertTrue(transferred.get() > 0);
+    }
+
+    @Test
+    void testReadModifyWrite_conflictsFailInsteadOfLosingUpdates() throws Exception {
+        AccountService accountService = service(AccountService.UpdateMode.READ_MODIFY_WRITE,
+                new OptimisticRetry("test", 1, Duration.ZERO, Duration.ZERO));
+        Long id = accountRepository.save(new Account("John", "Doe", Currency.USD)).getId();
+        AtomicInteger applied = new AtomicInteger();
+
+        runConcurrently(() -> {
+            try {
+                accountService.deposit(id, 1, Currency.USD);
+                applied.incrementAndGet();
+            } catch (OptimisticLockingFailureException e) {
+                // Rejected because another deposit changed the account first
+            }
+        });
+
+        assertEquals(applied.get(), accountRepository.findById(id).orElseThrow().getBalance());
+    }
+}
@@ -1,16 +1,41 @@
 package com.demo.bank.account.service;
 
 import com.demo.bank.account.entity.Account;
+import com.demo.bank.account.entity.AccountBalance;
 import com.demo.bank.account.entity.Currency;
+import com.demo.bank.account.entity.NewAccountRequest;
+import com.demo.bank.account.entity.TransactionRequest;
+import com.demo.bank.account.entity.TransactionResult;
+import com.demo.bank.account.entity.TransactionType;
+import com.demo.bank.account.entity.TransferResult;
 import com.demo.bank.account.repository.AccountRepository;
+import com.demo.bank.account.repository.TransactionJournal;
+import com.demo.bank.conversion.entity.RateQuote;
+import com.demo.bank.conversion.entity.RateSnapshot;
+import com.demo.bank.conversion.entity.RateSource;
 import com.demo.bank.conversion.service.CurrencyConversionService;
+import com.demo.bank.utils.OptimisticRetry;
+import com.demo.bank.utils.StripedLock;
+import com.demo.bank.utils.OptimisticRetryStats;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.mockito.InjectMocks;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.support.TransactionOperations;
 
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -21,12 +46,19 @@ class AccountServiceTest {
     private AccountRepository accountRepository;
     @Mock
     private CurrencyConversionService currencyConversionService;
-    @InjectMocks
     private AccountService accountService;
+    private final OptimisticRetry optimisticRetry = new OptimisticRetry("test", 3, Duration.ZERO, Duration.ZERO);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private AccountService service(AccountService.UpdateMode updateMode) {
+        return new AccountService(accountRepository, currencyConversionService, TransactionOperations.withoutTransaction(),
+                updateMode, optimisticRetry, new StripedLock(16), null, null, null, meterRegistry);
+    }
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        accountService = service(AccountService.UpdateMode.READ_MODIFY_WRITE);
     }
 
     @Test
@@ -40,6 +72,32 @@ class AccountServiceTest {
         verify(accountRepository).save(any(Account.class));
     }
 
+    @Test
+    void testCreateAccounts_savesAllInOneCall() {
+        when(accountRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        List<Account> accounts = accountService.createAccounts(List.of(
+                new NewAccountRequest("John", "Doe", Currency.USD),
+                new NewAccountRequest("Jane", "Smith", Currency.EUR)));
+
+        assertEquals(2, accounts.size());
+        assertEquals("Jane Smith", accounts.get(1).getFullName());
+        assertEquals(Currency.EUR, accounts.get(1).getCurrency());
+        assertEquals(0, accounts.get(1).getBalance());
+        verify(accountRepository, times(1)).saveAll(anyList());
+        verify(accountRepository, never()).save(any());
+    }
+
+    @Test
+    void testCreateAccounts_invalidItemRejectsBatch() {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () ->
+                accountService.createAccounts(List.of(
+                        new NewAccountRequest("John", "Doe", Currency.USD),
+                        new NewAccountRequest("Jane", " ", Currency.EUR))));
+        assertEquals("Account 2: firstName, lastName and currency are required", ex.getMessage());
+        verify(accountRepository, never()).saveAll(anyList());
+    }
+
     @Test
     void testGetAccountById_found() {
         Account account = new Account("Jane", "Smith", Currency.EUR);
@@ -56,33 +114,76 @@ class AccountServiceTest {
         assertNull(result);
     }
 
+    @Test
+    void testGetAccountBalance() {
+        when(accountRepository.findBalanceById(1L)).thenReturn(Optional.of(new AccountBalance(1L, 250_00, Currency.EUR, 3)));
+        when(accountRepository.findBalanceById(2L)).thenReturn(Optional.empty());
+
+        AccountBalance balance = accountService.getAccountBalance(1L);
+        assertEquals(250_00, balance.getBalance());
+        assertEquals(3, balance.getVersion());
+        Exception ex = assertThrows(IllegalArgumentException.class, () -> accountService.getAccountBalance(2L));
+        assertEquals("Account not found", ex.getMessage());
+        verify(accountRepository, never()).findById(any());
+    }
+
     @Test
     void testDeposit_sameCurrency() {
         Account account = new Account("John", "Doe", Currency.USD);
         when(accountRepository.findById(1L)).thenReturn(Optional.of(account));
         when(accountRepository.save(any(Account.class))).thenReturn(account);
-        Account result = accountService.deposit(1L, 100.0, Currency.USD);
-        assertEquals(100.0, result.getBalance());
+        Account result = accountService.deposit(1L, 100_00, Currency.USD);
+        assertEquals(100_00, result.getBalance());
         verify(accountRepository).save(account);
-        verify(currencyConversionService, never()).convert(any(), any(), anyDouble());
+        verify(currencyConversionService, never()).quote(any(), any(), anyLong());
     }
 
     @Test
     void testDeposit_differentCurrency() {
         Account account = new Account("John", "Doe", Currency.USD);
         when(accountRepository.findById(1L)).thenReturn(Optional.of(account));
-        when(currencyConversionService.convert(Currency.EUR, Currency.USD, 100.0)).thenReturn(110.0);
+        when(currencyConversionService.quote(Currency.EUR, Currency.USD, 100_00))
+                .thenReturn(rateQuote(100_00, Currency.EUR, Currency.USD, 110_000_000L, 110_00));
         when(accountRepository.save(any(Account.class))).thenReturn(account);
-        Account result = accountService.deposit(1L, 100.0, Currency.EUR);
-        assertEquals(110.0, result.getBalance());
-        verify(currencyConversionService).convert(Currency.EUR, Currency.USD, 100.0);
+        Account result = accountService.deposit(1L, 100_00, Currency.EUR);
+        assertEquals(110_00, result.getBalance());
+        verify(currencyConversionService).quote(Currency.EUR, Currency.USD, 100_00);
         verify(accountRepository).save(account);
     }
 
+    @Test
+    void testDeposit_ratesFetchedWhileAccountIsRead() {
+        Account account = new Account("John", "Doe", Currency.USD);
+        when(accountRepository.findById(1L)).thenReturn(Optional.of(account));
+        when(currencyConversionService.quote(Currency.EUR, Currency.USD, 100_00))
+                .thenReturn(rateQuote(100_00, Currency.EUR, Currency.USD, 110_000_000L, 110_00));
+        when(accountRepository.save(any(Account.class))).thenReturn(account);
+
+        accountService.deposit(1L, 100_00, Currency.EUR);
+
+        var inOrder = inOrder(currencyConversionService, accountRepository);
+        inOrder.verify(currencyConversionService).prefetchRates();
+        inOrder.verify(accountRepository).findById(1L);
+        inOrder.verify(currencyConversionService).quote(Currency.EUR, Currency.USD, 100_00);
+    }
+
+    @Test
+    void testDeposit_noRateFetchForAccountKnownToBeInSameCurrency() {
+        AccountService cached = cachedService(AccountService.UpdateMode.OPTIMISTIC);
+        Account account = account(1L, Currency.USD, 100_00);
+        when(accountRepository.findById(1L)).thenReturn(Optional.of(account));
+        when(accountRepository.save(any(Account.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        cached.getAccountById(1L);
+
+        cached.deposit(1L, 10_00, Currency.USD);
+
+        verify(currencyConversionService, never()).prefetchRates();
+    }
+
     @Test
     void testDeposit_negativeAmount() {
         Exception ex = assertThrows(IllegalArgumentException.class, () ->
-            accountService.deposit(1L, -50.0, Currency.USD)
+            accountService.deposit(1L, -50_00, Currency.USD)
         );
         assertEquals("Deposit amount must be positive", ex.getMessage());
     }
@@ -91,7 +192,7 @@ class AccountServiceTest {
     void testDeposit_accountNotFound() {
         when(accountRepository.findById(99L)).thenReturn(Optional.empty());
         Exception ex = assertThrows(IllegalArgumentException.class, () ->
-            accountService.deposit(99L, 100.0, Currency.USD)
+            accountService.deposit(99L, 100_00, Currency.USD)
         );
         assertEquals("Account not found", ex.getMessage());
     }
@@ -100,9 +201,9 @@ class AccountServiceTest {
     void testDeposit_conversionFails() {
         Account account = new Account("John", "Doe", Currency.USD);
         when(accountRepository.findById(1L)).thenReturn(Optional.of(account));
-        when(currencyConversionService.convert(Currency.EUR, Currency.USD, 100.0)).thenThrow(new RuntimeException("Conversion error"));
+        when(currencyConversionService.quote(Currency.EUR, Currency.USD, 100_00)).thenThrow(new RuntimeException("Conversion error"));
         Exception ex = assertThrows(RuntimeException.class, () ->
-            accountService.deposit(1L, 100.0, Currency.EUR)
+            accountService.deposit(1L, 100_00, Currency.EUR)
         );
         assertTrue(ex.getMessage().contains("Currency conversion failed"));
     }
@@ -110,32 +211,33 @@ class AccountServiceTest {
     @Test
     void testWithdraw_sameCurrency_success() {
         Account account = new Account("John", "Doe", Currency.USD);
-        account.deposit(200.0);
+        account.deposit(200_00);
         when(accountRepository.findById(1L)).thenReturn(Optional.of(account));
         when(accountRepository.save(any(Account.class))).thenReturn(account);
-        Account result = accountService.withdraw(1L, 50.0, Currency.USD);
-        assertEquals(150.0, result.getBalance());
+        Account result = accountService.withdraw(1L, 50_00, Currency.USD);
+        assertEquals(150_00, result.getBalance());
         verify(accountRepository).save(account);
-        verify(currencyConversionService, never()).convert(any(), any(), anyDouble());
+        verify(currencyConversionService, never()).quote(any(), any(), anyLong());
     }
 
     @Test
     void testWithdraw_differentCurrency_success() {
         Account account = new Account("John", "Doe", Currency.USD);
-        account.deposit(200.0);
+        account.deposit(200_00);
         when(accountRepository.findById(1L)).thenReturn(Optional.of(account));
-        when(currencyConversionService.convert(Currency.EUR, Currency.USD, 50.0)).thenReturn(60.0);
+        when(currencyConversionService.quote(Currency.EUR, Currency.USD, 50_00))
+                .thenReturn(rateQuote(50_00, Currency.EUR, Currency.USD, 120_000_000L, 60_00));
         when(accountRepository.save(any(Account.class))).thenReturn(account);
-        Account result = accountService.withdraw(1L, 50.0, Currency.EUR);
-        assertEquals(140.0, result.getBalance());
-        verify(currencyConversionService).convert(Currency.EUR, Currency.USD, 50.0);
+        Account result = accountService.withdraw(1L, 50_00, Currency.EUR);
+        assertEquals(140_00, result.getBalance());
+        verify(currencyConversionService).quote(Currency.EUR, Currency.USD, 50_00);
         verify(accountRepository).save(account);
     }
 
     @Test
     void testWithdraw_negativeAmount() {
         Exception ex = assertThrows(IllegalArgumentException.class, () ->
-            accountService.withdraw(1L, -10.0, Currency.USD)
+            accountService.withdraw(1L, -10_00, Currency.USD)
         );
         assertEquals("Withdraw amount must be positive", ex.getMessage());
     }
@@ -144,7 +246,7 @@ class AccountServiceTest {
     void testWithdraw_accountNotFound() {
         when(accountRepository.findById(99L)).thenReturn(Optional.empty());
         Exception ex = assertThrows(IllegalArgumentException.class, () ->
-            accountService.withdraw(99L, 50.0, Currency.USD)
+            accountService.withdraw(99L, 50_00, Currency.USD)
         );
         assertEquals("Account not found", ex.getMessage());
     }
@@ -152,10 +254,10 @@ class AccountServiceTest {
     @Test
     void testWithdraw_insufficientBalance() {
         Account account = new Account("John", "Doe", Currency.USD);
-        account.deposit(30.0);
+        account.deposit(30_00);
         when(accountRepository.findById(1L)).thenReturn(Optional.of(account));
         Exception ex = assertThrows(RuntimeException.class, () ->
-            accountService.withdraw(1L, 50.0, Currency.USD)
+            accountService.withdraw(1L, 50_00, Currency.USD)
         );
         assertEquals("Withdraw failed. Insufficient balance or invalid amount", ex.getMessage());
     }
@@ -163,12 +265,626 @@ class AccountServiceTest {
     @Test
     void testWithdraw_conversionFails() {
         Account account = new Account("John", "Doe", Currency.USD);
-        account.deposit(100.0);
+        account.deposit(100_00);
         when(accountRepository.findById(1L)).thenReturn(Optional.of(account));
-        when(currencyConversionService.convert(Currency.EUR, Currency.USD, 50.0)).thenThrow(new RuntimeException("Conversion error"));
+        when(currencyConversionService.quote(Currency.EUR, Currency.USD, 50_00)).thenThrow(new RuntimeException("Conversion error"));
         Exception ex = assertThrows(RuntimeException.class, () ->
-            accountService.withdraw(1L, 50.0, Currency.EUR)
+            accountService.withdraw(1L, 50_00, Currency.EUR)
         );
         assertTrue(ex.getMessage().contains("Currency conversion failed"));
     }
+
+    @Test
+    void testOperations_timedByOutcomeAndConversion() {
+        Account account = new Account("John", "Doe", Currency.USD);
+        when(accountRepository.findById(1L)).thenReturn(Optional.of(account));
+        when(accountRepository.save(any(Account.class))).thenReturn(account);
+        when(currencyConversionService.quote(Currency.EUR, Currency.USD, 10_00))
+                .thenReturn(rateQuote(10_00, Currency.EUR, Currency.USD, 110_000_000L, 11_00));
+
+        accountService.createAccount("John", "Doe", Currency.USD);
+        accountService.deposit(1L, 10_00, Currency.USD);
+        accountService.deposit(1L, 10_00, Currency.EUR);
+        assertThrows(RuntimeException.class, () -> accountService.withdraw(1L, 500_00, Currency.USD));
+        assertThrows(IllegalArgumentException.class, () -> accountService.withdraw(1L, -1, Currency.USD));
+        accountService.getAccountById(2L);
+        when(accountRepository.findCurrencyById(1L)).thenReturn(Optional.of(Currency.USD));
+        when(accountRepository.findCurrencyById(3L)).thenReturn(Optional.of(Currency.USD));
+        when(accountRepository.findById(3L)).thenReturn(Optional.of(new Account("Jane", "Doe", Currency.USD)));
+        accountService.transfer(1L, 3L, 5_00, Currency.USD);
+        assertThrows(IllegalArgumentException.class, () ->
+                accountService.createAccounts(List.of(new NewAccountRequest("Jane", " ", Currency.EUR))));
+
+        assertEquals(1, operations("create", "success", "none"));
+        assertEquals(1, operations("deposit", "success", "same-currency"));
+        assertEquals(1, operations("deposit", "success", "cross-currency"));
+        assertEquals(1, operations("withdraw", "failed", "unknown"));
+        assertEquals(1, operations("withdraw", "rejected", "unknown"));
+        assertEquals(1, operations("balance", "rejected", "none"));
+        assertEquals(1, operations("transfer", "success", "same-currency"));
+        assertEquals(1, operations("create-batch", "rejected", "none"));
+    }
+
+    private long operations(String operation, String outcome, String conversion) {
+        return meterRegistry.get("bank.account.operations")
+                .tags("operation", operation, "outcome", outcome, "conversion", conversion)
+                .timer().count();
+    }
+
+    private static RateQuote rateQuote(long amount, Currency from, Currency to, long rate, long convertedAmount) {
+        return new RateQuote(amount, from, to, rate, convertedAmount, LocalDate.of(2025, 9, 1), RateSource.LIVE);
+    }
+
+    private static Account account(Long id, Currency currency, long balance) {
+        return new Account(id, "John", "Doe", currency, balance, 0);
+    }
+
+    @Test
+    void testApplyTransactions_loadsAccountsOnceAndAppliesInOrder() {
+        Account first = account(1L, Currency.USD, 100_00);
+        Account second = account(2L, Currency.EUR, 0);
+        when(accountRepository.findAllById(any())).thenReturn(List.of(first, second));
+
+        List<TransactionResult> results = accountService.applyTransactions(List.of(
+                new TransactionRequest(1L, TransactionType.WITHDRAW, 150_00, Currency.USD),
+                new TransactionRequest(2L, TransactionType.DEPOSIT, 10_00, Currency.EUR),
+                new TransactionRequest(1L, TransactionType.DEPOSIT, 100_00, Currency.USD),
+                new TransactionRequest(1L, TransactionType.WITHDRAW, 150_00, Currency.USD)));
+
+        assertFalse(results.get(0).isSuccess());
+        assertEquals("Withdraw failed. Insufficient balance or invalid amount", results.get(0).getError());
+        assertEquals(10_00, results.get(1).getBalance());
+        assertEquals(200_00, results.get(2).getBalance());
+        assertEquals(50_00, results.get(3).getBalance());
+        assertEquals(50_00, first.getBalance());
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Iterable<Long>> ids = ArgumentCaptor.forClass(Iterable.class);
+        verify(accountRepository, times(1)).findAllById(ids.capture());
+        assertEquals(List.of(1L, 2L), new ArrayList<>((Collection<Long>) ids.getValue()));
+        verify(accountRepository).saveAll(List.of(first, second));
+        verify(accountRepository, never()).findById(any());
+        verify(accountRepository, never()).save(any());
+    }
+
+    @Test
+    void testApplyTransactions_convertsWithOneRateSnapshot() {
+        Account account = account(1L, Currency.EUR, 0);
+        RateSnapshot rates = mock(RateSnapshot.class);
+        when(accountRepository.findAllById(any())).thenReturn(List.of(account));
+        when(currencyConversionService.getRates()).thenReturn(rates);
+        when(currencyConversionService.quote(rates, Currency.USD, Currency.EUR, 100_00))
+                .thenReturn(rateQuote(100_00, Currency.USD, Currency.EUR, 90_000_000L, 90_00));
+
+        List<TransactionResult> results = accountService.applyTransactions(List.of(
+                new TransactionRequest(1L, TransactionType.DEPOSIT, 100_00, Currency.USD),
+                new TransactionRequest(1L, TransactionType.DEPOSIT, 100_00, Currency.USD)));
+
+        assertEquals(180_00, results.get(1).getBalance());
+        verify(currencyConversionService, times(1)).getRates();
+        verify(currencyConversionService, never()).quote(any(), any(), anyLong());
+    }
+
+    @Test
+    void testApplyTransactions_rejectedItemsDoNotAffectOthers() {
+        Account account = account(1L, Currency.USD, 0);
+        when(accountRepository.findAllById(any())).thenReturn(List.of(account));
+        when(currencyConversionService.quote(any(), eq(Currency.XXX), eq(Currency.USD), anyLong()))
+                .thenThrow(new RuntimeException("Currency conversion not supported: from XXX to USD"));
+
+        List<TransactionResult> results = accountService.applyTransactions(Arrays.asList(
+                new TransactionRequest(1L, TransactionType.DEPOSIT, -5_00, Currency.USD),
+                new TransactionRequest(9L, TransactionType.DEPOSIT, 5_00, Currency.USD),
+                new TransactionRequest(1L, TransactionType.DEPOSIT, 5_00, Currency.XXX),
+                new TransactionRequest(1L, null, 5_00, Currency.USD),
+                null,
+                new TransactionRequest(1L, TransactionType.DEPOSIT, 5_00, Currency.USD)));
+
+        assertEquals("Deposit amount must be positive", results.get(0).getError());
+        assertEquals("Account not found", results.get(1).getError());
+        assertEquals("Currency conversion failed: Currency conversion not supported: from XXX to USD", results.get(2).getError());
+        assertEquals("accountId, type and currency are required", results.get(3).getError());
+        assertFalse(results.get(4).isSuccess());
+        assertTrue(results.get(5).isSuccess());
+        assertEquals(5_00, account.getBalance());
+    }
+
+    @Test
+    void testApplyTransactions_nothingAppliedSavesNothing() {
+        when(accountRepository.findAllById(any())).thenReturn(List.of());
+        List<TransactionResult> results = accountService.applyTransactions(List.of(
+                new TransactionRequest(1L, TransactionType.WITHDRAW, 5_00, Currency.USD)));
+        assertFalse(results.get(0).isSuccess());
+        verify(accountRepository).saveAll(List.of());
+    }
+
+    private AccountService atomicService() {
+        return service(AccountService.UpdateMode.ATOMIC);
+    }
+
+    @Test
+    void testDepositAtomic_sameCurrencyIsOneUpdate() {
+        Account updated = account(1L, Currency.USD, 150_00);
+        when(accountRepository.depositAndGet(1L, 100_00, "USD")).thenReturn(Optional.of(updated));
+
+        assertSame(updated, atomicService().deposit(1L, 100_00, Currency.USD));
+        verify(accountRepository, never()).findById(any());
+        verify(accountRepository, never()).findCurrencyById(any());
+        verify(accountRepository, never()).save(any());
+        verify(currencyConversionService, never()).prefetchRates();
+    }
+
+    @Test
+    void testDepositAtomic_differentCurrencyConvertsThenUpdates() {
+        Account updated = account(1L, Currency.USD, 110_00);
+        when(accountRepository.depositAndGet(1L, 100_00, "EUR")).thenReturn(Optional.empty());
+        when(accountRepository.findCurrencyById(1L)).thenReturn(Optional.of(Currency.USD));
+        when(currencyConversionService.quote(Currency.EUR, Currency.USD, 100_00))
+                .thenReturn(rateQuote(100_00, Currency.EUR, Currency.USD, 110_000_000L, 110_00));
+        when(accountRepository.depositAndGet(1L, 110_00, "USD")).thenReturn(Optional.of(updated));
+
+        assertEquals(110_00, atomicService().deposit(1L, 100_00, Currency.EUR).getBalance());
+        // The rates are fetched while the account currency is looked up
+        var inOrder = inOrder(currencyConversionService, accountRepository);
+        inOrder.verify(accountRepository).depositAndGet(1L, 100_00, "EUR");
+        inOrder.verify(currencyConversionService).prefetchRates();
+        inOrder.verify(accountRepository).findCurrencyById(1L);
+        inOrder.verify(currencyConversionService).quote(Currency.EUR, Currency.USD, 100_00);
+    }
+
+    @Test
+    void testDepositAtomic_accountKnownInOtherCurrencySkipsFirstUpdate() {
+        AccountService cached = cachedService(AccountService.UpdateMode.ATOMIC);
+        when(accountRepository.findById(1L)).thenReturn(Optional.of(account(1L, Currency.USD, 0)));
+        cached.getAccountById(1L);
+        when(currencyConversionService.quote(Currency.EUR, Currency.USD, 100_00))
+                .thenReturn(rateQuote(100_00, Currency.EUR, Currency.USD, 110_000_000L, 110_00));
+        when(accountRepository.depositAndGet(1L, 110_00, "USD")).thenReturn(Optional.of(account(1L, Currency.USD, 110_00)));
+
+        assertEquals(110_00, cached.deposit(1L, 100_00, Currency.EUR).getBalance());
+        verify(accountRepository, never()).depositAndGet(1L, 100_00, "EUR");
+        verify(accountRepository, never()).findCurrencyById(any());
+    }
+
+    @Test
+    void testDepositAtomic_accountNotFound() {
+        when(accountRepository.depositAndGet(99L, 100_00, "USD")).thenReturn(Optional.empty());
+        when(accountRepository.findCurrencyById(99L)).thenReturn(Optional.empty());
+
+        Exception ex = assertThrows(IllegalArgumentException.class, () -> atomicService().deposit(99L, 100_00, Currency.USD));
+        assertEquals("Account not found", ex.getMessage());
+    }
+
+    @Test
+    void testWithdrawAtomic_sameCurrencyIsOneUpdate() {
+        Account updated = account(1L, Currency.USD, 50_00);
+        when(accountRepository.withdrawAndGet(1L, 50_00, "USD")).thenReturn(Optional.of(updated));
+
+        assertEquals(50_00, atomicService().withdraw(1L, 50_00, Currency.USD).getBalance());
+        verify(accountRepository, never()).findCurrencyById(any());
+    }
+
+    @Test
+    void testWithdrawAtomic_insufficientBalance() {
+        when(accountRepository.withdrawAndGet(1L, 500_00, "USD")).thenReturn(Optional.empty());
+        when(accountRepository.findCurrencyById(1L)).thenReturn(Optional.of(Currency.USD));
+
+        Exception ex = assertThrows(RuntimeException.class, () -> atomicService().withdraw(1L, 500_00, Currency.USD));
+        assertEquals("Withdraw failed. Insufficient balance or invalid amount", ex.getMessage());
+        verify(accountRepository, times(1)).withdrawAndGet(anyLong(), anyLong(), anyString());
+        verify(currencyConversionService, never()).quote(any(), any(), anyLong());
+        verify(currencyConversionService, never()).prefetchRates();
+    }
+
+    @Test
+    void testWithdrawAtomic_differentCurrencyInsufficientBalance() {
+        when(accountRepository.withdrawAndGet(1L, 500_00, "EUR")).thenReturn(Optional.empty());
+        when(accountRepository.findCurrencyById(1L)).thenReturn(Optional.of(Currency.USD));
+        when(currencyConversionService.quote(Currency.EUR, Currency.USD, 500_00))
+                .thenReturn(rateQuote(500_00, Currency.EUR, Currency.USD, 110_000_000L, 550_00));
+        when(accountRepository.withdrawAndGet(1L, 550_00, "USD")).thenReturn(Optional.empty());
+
+        Exception ex = assertThrows(RuntimeException.class, () -> atomicService().withdraw(1L, 500_00, Currency.EUR));
+        assertEquals("Withdraw failed. Insufficient balance or invalid amount", ex.getMessage());
+    }
+
+    private static ObjectOptimisticLockingFailureException conflict() {
+        return new ObjectOptimisticLockingFailureException(Account.class, 1L);
+    }
+
+    @Test
+    void testDepositOptimistic_retriesConflictWithFreshRead() {
+        Account stale = account(1L, Currency.USD, 100_00);
+        Account fresh = account(1L, Currency.USD, 200_00);
+        when(accountRepository.findById(1L)).thenReturn(Optional.of(stale), Optional.of(fresh));
+        when(accountRepository.save(stale)).thenThrow(conflict());
+        when(accountRepository.save(fresh)).thenReturn(fresh);
+
+        Account result = service(AccountService.UpdateMode.OPTIMISTIC).deposit(1L, 50_00, Currency.USD);
+
+        assertEquals(250_00, result.getBalance());
+        OptimisticRetryStats stats = accountService.getOptimisticRetryStats();
+        assertEquals(1, stats.getOperations());
+        assertEquals(2, stats.getAttempts());
+        assertEquals(1, stats.getConflicts());
+        assertEquals(1, stats.getRetries());
+        assertEquals(0, stats.getGiveUps());
+    }
+
+    @Test
+    void testWithdrawOptimistic_givesUpAfterMaxAttempts() {
+        when(accountRepository.findById(1L)).thenAnswer(invocation -> Optional.of(account(1L, Currency.USD, 100_00)));
+        when(accountRepository.save(any(Account.class))).thenThrow(conflict());
+
+        assertThrows(OptimisticLockingFailureException.class, () ->
+                service(AccountService.UpdateMode.OPTIMISTIC).withdraw(1L, 50_00, Currency.USD));
+        verify(accountRepository, times(3)).findById(1L);
+        assertEquals(1, accountService.getOptimisticRetryStats().getGiveUps());
+        assertEquals(1.0, accountService.getOptimisticRetryStats().getConflictRate());
+    }
+
+    @Test
+    void testWithdrawOptimistic_insufficientBalanceIsNotRetried() {
+        when(accountRepository.findById(1L)).thenReturn(Optional.of(account(1L, Currency.USD, 10_00)));
+
+        Exception ex = assertThrows(RuntimeException.class, () ->
+                service(AccountService.UpdateMode.OPTIMISTIC).withdraw(1L, 50_00, Currency.USD));
+        assertEquals("Withdraw failed. Insufficient balance or invalid amount", ex.getMessage());
+        verify(accountRepository, times(1)).findById(1L);
+        assertEquals(0, accountService.getOptimisticRetryStats().getConflicts());
+    }
+
+    @Test
+    void testDepositReadModifyWrite_conflictIsNotRetried() {
+        when(accountRepository.findById(1L)).thenReturn(Optional.of(account(1L, Currency.USD, 100_00)));
+        when(accountRepository.save(any(Account.class))).thenThrow(conflict());
+
+        assertThrows(OptimisticLockingFailureException.class, () -> accountService.deposit(1L, 50_00, Currency.USD));
+        verify(accountRepository, times(1)).findById(1L);
+    }
+
+    @Test
+    void testDepositStriped_readModifyWrite() {
+        Account account = account(1L, Currency.USD, 100_00);
+        when(accountRepository.findById(1L)).thenReturn(Optional.of(account));
+        when(accountRepository.save(account)).thenReturn(account);
+
+        assertEquals(150_00, service(AccountService.UpdateMode.STRIPED).deposit(1L, 50_00, Currency.USD).getBalance());
+        verify(accountRepository).save(account);
+    }
+
+    @Test
+    void testWithdrawStriped_insufficientBalance() {
+        when(accountRepository.findById(1L)).thenReturn(Optional.of(account(1L, Currency.USD, 10_00)));
+
+        Exception ex = assertThrows(RuntimeException.class, () ->
+                service(AccountService.UpdateMode.STRIPED).withdraw(1L, 50_00, Currency.USD));
+        assertEquals("Withdraw failed. Insufficient balance or invalid amount", ex.getMessage());
+        verify(accountRepository, never()).save(any());
+    }
+
+    private LedgerEngine ledgerEngine(List<Account> written) {
+        return new LedgerEngine(accountRepository::findById, written::addAll, 2, Duration.ofHours(1));
+    }
+
+    private AccountService ledgerService(LedgerEngine ledgerEngine) {
+        return new AccountService(accountRepository, currencyConversionService, TransactionOperations.withoutTransaction(),
+                AccountService.UpdateMode.LEDGER, optimisticRetry, new StripedLock(16), null, ledgerEngine, null, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void testLedger_requiresEngine() {
+        assertThrows(IllegalStateException.class, () -> service(AccountService.UpdateMode.LEDGER));
+    }
+
+    @Test
+    void testDepositLedger_convertsBeforeSubmittingAndWritesInBackground() {
+        when(accountRepository.findById(1L)).thenReturn(Optional.of(account(1L, Currency.EUR, 100_00)));
+        when(currencyConversionService.quote(Currency.USD, Currency.EUR, 10_00))
+                .thenReturn(rateQuote(10_00, Currency.USD, Currency.EUR, 85_000_000L, 8_50));
+        List<Account> written = new ArrayList<>();
+        LedgerEngine ledgerEngine = ledgerEngine(written);
+        AccountService ledgerService = ledgerService(ledgerEngine);
+
+        assertEquals(108_50, ledgerService.deposit(1L, 10_00, Currency.USD).getBalance());
+        assertEquals(103_50, ledgerService.withdraw(1L, 5_00, Currency.EUR).getBalance());
+        assertEquals(103_50, ledgerService.getAccountById(1L).getBalance());
+        verify(accountRepository, never()).save(any());
+
+        ledgerEngine.close();
+        assertEquals(1, written.size());
+        assertEquals(103_50, written.get(0).getBalance());
+        assertEquals(2, written.get(0).getVersion());
+        // The account is read once, when the ledger first sees it
+        verify(accountRepository, times(1)).findById(1L);
+    }
+
+    @Test
+    void testWithdrawLedger_insufficientBalanceAndUnknownAccount() {
+        when(accountRepository.findById(1L)).thenReturn(Optional.of(account(1L, Currency.USD, 10_00)));
+        when(accountRepository.findById(2L)).thenReturn(Optional.empty());
+        LedgerEngine ledgerEngine = ledgerEngine(new ArrayList<>());
+        AccountService ledgerService = ledgerService(ledgerEngine);
+
+        Exception ex = assertThrows(RuntimeException.class, () -> ledgerService.withdraw(1L, 50_00, Currency.USD));
+        assertEquals("Withdraw failed. Insufficient balance or invalid amount", ex.getMessage());
+        ex = assertThrows(IllegalArgumentException.class, () -> ledgerService.deposit(2L, 50_00, Currency.USD));
+        assertEquals("Account not found", ex.getMessage());
+        assertNull(ledgerService.getAccountById(2L));
+        ledgerEngine.close();
+    }
+
+    @Test
+    void testApplyTransactionsLedger_appliesInOrderPerAccount() {
+        when(accountRepository.findById(1L)).thenReturn(Optional.of(account(1L, Currency.USD, 0)));
+        when(accountRepository.findById(2L)).thenReturn(Optional.empty());
+        LedgerEngine ledgerEngine = ledgerEngine(new ArrayList<>());
+
+        List<TransactionResult> results = ledgerService(ledgerEngine).applyTransactions(Arrays.asList(
+                new TransactionRequest(1L, TransactionType.WITHDRAW, 5_00, Currency.USD),
+                new TransactionRequest(1L, TransactionType.DEPOSIT, 10_00, Currency.USD),
+                new TransactionRequest(2L, TransactionType.DEPOSIT, 10_00, Currency.USD),
+                new TransactionRequest(1L, TransactionType.WITHDRAW, 5_00, Currency.USD),
+                null));
+
+        assertEquals("Withdraw failed. Insufficient balance or invalid amount", results.get(0).getError());
+        assertEquals(10_00, results.get(1).getBalance());
+        assertEquals("Account not found", results.get(2).getError());
+        assertEquals(5_00, results.get(3).getBalance());
+        assertEquals("accountId, type and currency are required", results.get(4).getError());
+        verify(accountRepository, never()).saveAll(anyList());
+        ledgerEngine.close();
+    }
+
+    private AccountService journaledService(AccountService.UpdateMode updateMode, TransactionJournal journal) {
+        return new AccountService(accountRepository, currencyConversionService, TransactionOperations.withoutTransaction(),
+                updateMode, optimisticRetry, new StripedLock(16), null, null, journal, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void testJournal_appendsEveryChangeOnceApplied() {
+        TransactionJournal journal = mock(TransactionJournal.class);
+        when(journal.append(any())).thenReturn(CompletableFuture.completedFuture(null));
+        Account updated = account(1L, Currency.USD, 150_00);
+        when(accountRepository.depositAndGet(1L, 50_00, "USD")).thenReturn(Optional.of(updated));
+        when(accountRepository.save(any(Account.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        AccountService journaled = journaledService(AccountService.UpdateMode.ATOMIC, journal);
+        journaled.deposit(1L, 50_00, Currency.USD);
+        Account created = journaled.createAccount("Jane", "Smith", Currency.EUR);
+
+        verify(journal).append(updated);
+        verify(journal).append(created);
+    }
+
+    @Test
+    void testJournal_batchFlushesThenAppendsChangedAccounts() {
+        TransactionJournal journal = mock(TransactionJournal.class);
+        when(journal.append(any())).thenReturn(CompletableFuture.completedFuture(null));
+        Account account = account(1L, Currency.USD, 100_00);
+        when(accountRepository.findAllById(any())).thenReturn(List.of(account));
+
+        journaledService(AccountService.UpdateMode.ATOMIC, journal).applyTransactions(List.of(
+                new TransactionRequest(1L, TransactionType.DEPOSIT, 10_00, Currency.USD),
+                new TransactionRequest(1L, TransactionType.WITHDRAW, 500_00, Currency.USD)));
+
+        var inOrder = inOrder(accountRepository, journal);
+        inOrder.verify(accountRepository).saveAll(List.of(account));
+        inOrder.verify(accountRepository).flush();
+        inOrder.verify(journal, times(1)).append(account);
+    }
+
+    @Test
+    void testJournal_failedWriteIsReported() {
+        TransactionJournal journal = mock(TransactionJournal.class);
+        when(journal.append(any())).thenReturn(CompletableFuture.failedFuture(new IOException("disk full")));
+        when(accountRepository.depositAndGet(1L, 50_00, "USD")).thenReturn(Optional.of(account(1L, Currency.USD, 150_00)));
+
+        Exception ex = assertThrows(RuntimeException.class, () ->
+                journaledService(AccountService.UpdateMode.ATOMIC, journal).deposit(1L, 50_00, Currency.USD));
+        assertEquals("Journal write failed: disk full", ex.getMessage());
+    }
+
+    @Test
+    void testTransferAtomic_locksLowerAccountIdFirst() {
+        when(accountRepository.findCurrencyById(1L)).thenReturn(Optional.of(Currency.USD));
+        when(accountRepository.findCurrencyById(2L)).thenReturn(Optional.of(Currency.USD));
+        when(accountRepository.withdrawAndGet(2L, 30_00, "USD")).thenReturn(Optional.of(account(2L, Currency.USD, 70_00)));
+        when(accountRepository.depositAndGet(1L, 30_00, "USD")).thenReturn(Optional.of(account(1L, Currency.USD, 30_00)));
+
+        TransferResult result = service(AccountService.UpdateMode.ATOMIC).transfer(2L, 1L, 30_00, Currency.USD);
+
+        assertEquals(70_00, result.getFromAccount().getBalance());
+        assertEquals(30_00, result.getToAccount().getBalance());
+        var inOrder = inOrder(accountRepository);
+        inOrder.verify(accountRepository).depositAndGet(1L, 30_00, "USD");
+        inOrder.verify(accountRepository).withdrawAndGet(2L, 30_00, "USD");
+        verify(currencyConversionService, never()).prefetchRates();
+        verify(currencyConversionService, never()).getRates();
+    }
+
+    @Test
+    void testTransferAtomic_insufficientBalanceFailsTransfer() {
+        when(accountRepository.findCurrencyById(1L)).thenReturn(Optional.of(Currency.USD));
+        when(accountRepository.findCurrencyById(2L)).thenReturn(Optional.of(Currency.USD));
+        when(accountRepository.withdrawAndGet(1L, 30_00, "USD")).thenReturn(Optional.empty());
+
+        Exception ex = assertThrows(RuntimeException.class, () ->
+                service(AccountService.UpdateMode.ATOMIC).transfer(1L, 2L, 30_00, Currency.USD));
+        assertEquals("Transfer failed. Insufficient balance", ex.getMessage());
+        // The debit goes first here, so nothing is credited
+        verify(accountRepository, never()).depositAndGet(any(), anyLong(), any());
+    }
+
+    @Test
+    void testTransfer_convertsBothLegsWithOneRateSnapshot() {
+        RateSnapshot rates = mock(RateSnapshot.class);
+        when(currencyConversionService.getRates()).thenReturn(rates);
+        when(currencyConversionService.quote(rates, Currency.USD, Currency.EUR, 100_00))
+                .thenReturn(rateQuote(100_00, Currency.USD, Currency.EUR, 90_000_000L, 90_00));
+        when(currencyConversionService.quote(rates, Currency.USD, Currency.RON, 100_00))
+                .thenReturn(rateQuote(100_00, Currency.USD, Currency.RON, 450_000_000L, 450_00));
+        when(accountRepository.findCurrencyById(1L)).thenReturn(Optional.of(Currency.EUR));
+        when(accountRepository.findCurrencyById(2L)).thenReturn(Optional.of(Currency.RON));
+        Account from = account(1L, Currency.EUR, 100_00);
+        Account to = account(2L, Currency.RON, 0);
+        when(accountRepository.findById(1L)).thenReturn(Optional.of(from));
+        when(accountRepository.findById(2L)).thenReturn(Optional.of(to));
+        when(accountRepository.save(any(Account.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        TransferResult result = accountService.transfer(1L, 2L, 100_00, Currency.USD);
+
+        assertEquals(90_00, result.getDebitedAmount());
+        assertEquals(450_00, result.getCreditedAmount());
+        assertEquals(10_00, from.getBalance());
+        assertEquals(450_00, to.getBalance());
+        var inOrder = inOrder(currencyConversionService, accountRepository);
+        inOrder.verify(accountRepository).findCurrencyById(1L);
+        inOrder.verify(currencyConversionService).prefetchRates();
+        inOrder.verify(accountRepository).findCurrencyById(2L);
+        verify(currencyConversionService, times(1)).getRates();
+    }
+
+    @Test
+    void testTransfer_invalidRequests() {
+        Exception ex = assertThrows(IllegalArgumentException.class, () -> accountService.transfer(1L, 1L, 5_00, Currency.USD));
+        assertEquals("Cannot transfer to the same account", ex.getMessage());
+        ex = assertThrows(IllegalArgumentException.class, () -> accountService.transfer(1L, 2L, 0, Currency.USD));
+        assertEquals("Transfer amount must be positive", ex.getMessage());
+        when(accountRepository.findCurrencyById(1L)).thenReturn(Optional.of(Currency.USD));
+        ex = assertThrows(IllegalArgumentException.class, () -> accountService.transfer(1L, 2L, 5_00, Currency.USD));
+        assertEquals("Account not found", ex.getMessage());
+        verify(accountRepository, never()).save(any());
+    }
+
+    @Test
+    void testTransferStriped_readModifyWriteUnderBothLocks() {
+        when(accountRepository.findCurrencyById(any())).thenReturn(Optional.of(Currency.USD));
+        Account from = account(1L, Currency.USD, 10_00);
+        when(accountRepository.findById(1L)).thenReturn(Optional.of(from));
+        when(accountRepository.findById(2L)).thenReturn(Optional.of(account(2L, Currency.USD, 0)));
+
+        Exception ex = assertThrows(RuntimeException.class, () ->
+                service(AccountService.UpdateMode.STRIPED).transfer(1L, 2L, 50_00, Currency.USD));
+        assertEquals("Transfer failed. Insufficient balance", ex.getMessage());
+        assertEquals(10_00, from.getBalance());
+        verify(accountRepository, never()).save(any());
+    }
+
+    @Test
+    void testTransferLedger_debitsThenCredits() {
+        when(accountRepository.findById(1L)).thenReturn(Optional.of(account(1L, Currency.USD, 100_00)));
+        when(accountRepository.findById(2L)).thenReturn(Optional.of(account(2L, Currency.USD, 0)));
+        LedgerEngine ledgerEngine = ledgerEngine(new ArrayList<>());
+        AccountService ledgerService = ledgerService(ledgerEngine);
+
+        TransferResult result = ledgerService.transfer(1L, 2L, 40_00, Currency.USD);
+        assertEquals(60_00, result.getFromAccount().getBalance());
+        assertEquals(40_00, result.getToAccount().getBalance());
+        Exception ex = assertThrows(RuntimeException.class, () -> ledgerService.transfer(1L, 2L, 100_00, Currency.USD));
+        assertEquals("Transfer failed. Insufficient balance", ex.getMessage());
+        assertEquals(40_00, ledgerService.getAccountById(2L).getBalance());
+        // Read from the ledger, which the database lags behind
+        assertEquals(40_00, ledgerService.getAccountBalance(2L).getBalance());
+        assertEquals(1, ledgerService.getAccountBalance(2L).getVersion());
+        verify(accountRepository, never()).findBalanceById(any());
+        ledgerEngine.close();
+    }
+
+    private AccountService cachedService(AccountService.UpdateMode updateMode) {
+        return new AccountService(accountRepository, currencyConversionService, TransactionOperations.withoutTransaction(),
+                updateMode, optimisticRetry, new StripedLock(16), new AccountCache(100, Duration.ofMinutes(1)), null, null,
+                new SimpleMeterRegistry());
+    }
+
+    @Test
+    void testCache_readsThroughOnce() {
+        when(accountRepository.findById(1L)).thenReturn(Optional.of(account(1L, Currency.USD, 100_00)));
+        when(accountRepository.findById(2L)).thenReturn(Optional.empty());
+        AccountService cached = cachedService(AccountService.UpdateMode.ATOMIC);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(100_00, cached.getAccountById(1L).getBalance());
+            assertNull(cached.getAccountById(2L));
+        }
+        verify(accountRepository, times(1)).findById(1L);
+        // Missing accounts are not cached
+        verify(accountRepository, times(3)).findById(2L);
+        assertEquals(2, cached.getAccountCacheStats().getHits());
+        assertEquals(4, cached.getAccountCacheStats().getMisses());
+    }
+
+    @Test
+    void testCache_depositUpdatesCachedAccount() {
+        when(accountRepository.findById(1L)).thenReturn(Optional.of(new Account(1L, "John", "Doe", Currency.USD, 100_00, 1)));
+        when(accountRepository.depositAndGet(1L, 50_00, "USD"))
+                .thenReturn(Optional.of(new Account(1L, "John", "Doe", Currency.USD, 150_00, 2)));
+        AccountService cached = cachedService(AccountService.UpdateMode.ATOMIC);
+
+        cached.getAccountById(1L);
+        cached.deposit(1L, 50_00, Currency.USD);
+
+        assertEquals(150_00, cached.getAccountById(1L).getBalance());
+        verify(accountRepository, times(1)).findById(1L);
+    }
+
+    @Test
+    void testCache_readModifyWriteDoesNotChangeCachedCopy() {
+        Account account = account(1L, Currency.USD, 100_00);
+        when(accountRepository.findById(1L)).thenReturn(Optional.of(account));
+        when(accountRepository.save(any(Account.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        AccountService cached = cachedService(AccountService.UpdateMode.OPTIMISTIC);
+
+        Account before = cached.getAccountById(1L);
+        cached.deposit(1L, 50_00, Currency.USD);
+
+        assertEquals(100_00, before.getBalance());
+        assertEquals(150_00, cached.getAccountById(1L).getBalance());
+        verify(accountRepository, times(2)).findById(1L);
+    }
+
+    @Test
+    void testCache_failedWriteInvalidates() {
+        when(accountRepository.findById(1L)).thenReturn(Optional.of(account(1L, Currency.USD, 10_00)));
+        when(accountRepository.withdrawAndGet(1L, 50_00, "USD")).thenReturn(Optional.empty());
+        when(accountRepository.findCurrencyById(1L)).thenReturn(Optional.of(Currency.USD));
+        AccountService cached = cachedService(AccountService.UpdateMode.ATOMIC);
+
+        cached.getAccountById(1L);
+        assertThrows(RuntimeException.class, () -> cached.withdraw(1L, 50_00, Currency.USD));
+        cached.getAccountById(1L);
+
+        verify(accountRepository, times(2)).findById(1L);
+    }
+
+    @Test
+    void testCache_olderVersionDoesNotReplaceNewer() {
+        // A read that started before the deposit returns the balance before it
+        when(accountRepository.findById(1L)).thenReturn(Optional.of(new Account(1L, "John", "Doe", Currency.USD, 100_00, 1)));
+        AccountCache cache = new AccountCache(100, Duration.ofMinutes(1));
+        cache.put(new Account(1L, "John", "Doe", Currency.USD, 150_00, 2));
+
+        assertEquals(150_00, cache.put(new Account(1L, "John", "Doe", Currency.USD, 100_00, 1)).getBalance());
+        assertEquals(150_00, cache.get(1L, accountRepository::findById).getBalance());
+        verify(accountRepository, never()).findById(any());
+    }
+
+    @Test
+    void testCache_transferAndBatchUpdateCachedAccounts() {
+        when(accountRepository.findCurrencyById(any())).thenReturn(Optional.of(Currency.USD));
+        when(accountRepository.withdrawAndGet(1L, 30_00, "USD")).thenReturn(Optional.of(account(1L, Currency.USD, 70_00)));
+        when(accountRepository.depositAndGet(2L, 30_00, "USD")).thenReturn(Optional.of(account(2L, Currency.USD, 30_00)));
+        Account third = account(3L, Currency.USD, 0);
+        when(accountRepository.findAllById(any())).thenReturn(List.of(third));
+        AccountService cached = cachedService(AccountService.UpdateMode.ATOMIC);
+
+        cached.transfer(1L, 2L, 30_00, Currency.USD);
+        cached.applyTransactions(List.of(new TransactionRequest(3L, TransactionType.DEPOSIT, 5_00, Currency.USD)));
+
+        assertEquals(70_00, cached.getAccountById(1L).getBalance());
+        assertEquals(30_00, cached.getAccountById(2L).getBalance());
+        assertEquals(5_00, cached.getAccountById(3L).getBalance());
+        verify(accountRepository, never()).findById(any());
+        assertEquals(1.0, cached.getAccountCacheStats().getHitRatio());
+    }
 }
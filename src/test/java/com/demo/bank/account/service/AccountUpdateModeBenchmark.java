@@ -0,0 +1,172 @@
+package com.demo.bank.account.service;
+
+import com.demo.bank.account.entity.Account;
+import com.demo.bank.account.entity.Currency;
+import com.demo.bank.account.repository.AccountRepository;
+import com.demo.bank.conversion.service.CurrencyConversionService;
+import com.demo.bank.utils.OptimisticRetry;
+import com.demo.bank.utils.StripedLock;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.mockito.Mockito.*;
+
+/**
+ * Stress benchmarks of the update modes against the real database, across thread counts: deposits on one hot
+ * account and spread over many accounts, and transfers against the withdraw-then-deposit pair they replace.
+ * Not part of the regular build:
+ * <pre>
+ * mvn test -Dtest=AccountUpdateModeBenchmark -Dbenchmark=true [-Dbenchmark.threads=1,4,16,64] [-Dbenchmark.duration=2s]
+ * </pre>
+ * The database modes are also bounded by the connection pool size (spring.datasource.hikari.maximum-pool-size).
+ */
+@DataJpaTest(showSql = false)
+@ActiveProfiles("web")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class AccountUpdateModeBenchmark {
+    private static final int SPREAD_ACCOUNTS = 256;
+
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final int[] threadCounts = Arrays.stream(System.getProperty("benchmark.threads", "1,4,16,64").split(","))
+            .mapToInt(value -> Integer.parseInt(value.trim()))
+            .toArray();
+    private final Duration duration = Duration.parse("PT" + System.getProperty("benchmark.duration", "2s"));
+
+    @Test
+    void compareUpdateModes() throws Exception {
+        List<Long> hot = List.of(createAccount(0));
+        List<Long> spread = createAccounts(SPREAD_ACCOUNTS, 0);
+
+        System.out.printf("%-18s %-8s %8s %14s %10s%n", "mode", "accounts", "threads", "ops/s", "failed");
+        for (AccountService.UpdateMode mode : AccountService.UpdateMode.values()) {
+            for (List<Long> accounts : List.of(hot, spread)) {
+                for (int threads : threadCounts) {
+                    LedgerEngine ledgerEngine = mode == AccountService.UpdateMode.LEDGER
+                            ? new LedgerEngine(accountRepository, jdbcTemplate, transactionTemplate, 4, Duration.ofMillis(10))
+                            : null;
+                    AccountService accountService = service(mode, ledgerEngine);
+                    Result result = run(threads, () -> accountService.deposit(pick(accounts), 1_00, Currency.USD));
+                    if (ledgerEngine != null) {
+                        ledgerEngine.close();
+                    }
+                    System.out.printf("%-18s %-8s %8d %14.0f %10d%n", mode, accounts.size() == 1 ? "hot" : "spread",
+                            threads, result.succeeded / (duration.toNanos() / 1e9), result.failed);
+                }
+            }
+        }
+    }
+
+    @Test
+    void compareTransferWithWithdrawThenDeposit() throws Exception {
+        List<Long> accounts = createAccounts(SPREAD_ACCOUNTS, 1_000_000_000_00L);
+
+        System.out.printf("%-18s %-20s %8s %14s %10s%n", "mode", "operation", "threads", "transfers/s", "failed");
+        for (AccountService.UpdateMode mode : List.of(AccountService.UpdateMode.ATOMIC, AccountService.UpdateMode.STRIPED)) {
+            AccountService accountService = service(mode, null);
+            for (int threads : threadCounts) {
+                Result transfers = run(threads, () -> {
+                    Long from = pick(accounts);
+                    Long to = pick(accounts);
+                    if (!from.equals(to)) {
+                        accountService.transfer(from, to, 1_00, Currency.USD);
+                    }
+                });
+                // The same money movement as two calls, each committed on its own
+                Result twoCalls = run(threads, () -> {
+                    accountService.withdraw(pick(accounts), 1_00, Currency.USD);
+                    accountService.deposit(pick(accounts), 1_00, Currency.USD);
+                });
+                System.out.printf("%-18s %-20s %8d %14.0f %10d%n", mode, "transfer", threads,
+                        transfers.succeeded / (duration.toNanos() / 1e9), transfers.failed);
+                System.out.printf("%-18s %-20s %8d %14.0f %10d%n", mode, "withdraw+deposit", threads,
+                        twoCalls.succeeded / (duration.toNanos() / 1e9), twoCalls.failed);
+            }
+        }
+    }
+
+    private Long createAccount(long balance) {
+        Account account = new Account("Bench", "Mark", Currency.USD);
+        account.deposit(balance);
+        return accountRepository.save(account).getId();
+    }
+
+    private List<Long> createAccounts(int count, long balance) {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ids.add(createAccount(balance));
+        }
+        return ids;
+    }
+
+    private static Long pick(List<Long> accounts) {
+        return accounts.get(ThreadLocalRandom.current().nextInt(accounts.size()));
+    }
+
+    private AccountService service(AccountService.UpdateMode mode, LedgerEngine ledgerEngine) {
+        return new AccountService(accountRepository, mock(CurrencyConversionService.class), transactionTemplate, mode,
+                new OptimisticRetry("benchmark", 10, Duration.ofMillis(1), Duration.ofMillis(20)), new StripedLock(64), null, ledgerEngine, null,
+                new SimpleMeterRegistry());
+    }
+
+    private Result run(int threads, Runnable operation) throws Exception {
+        LongAdder succeeded = new LongAdder();
+        LongAdder failed = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    long deadline = System.nanoTime() + duration.toNanos();
+                    while (System.nanoTime() - deadline < 0) {
+                        try {
+                            operation.run();
+                            succeeded.increment();
+                        } catch (RuntimeException e) {
+                            // Version conflicts in the modes that do not serialize or retry
+                            failed.increment();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return new Result(succeeded.sum(), failed.sum());
+    }
+
+    private record Result(long succeeded, long failed) {
+    }
+}
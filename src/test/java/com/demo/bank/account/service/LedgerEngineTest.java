@@ -0,0 +1,191 @@
+package com.demo.bank.account.service;
+
+import com.demo.bank.account.entity.Account;
+import com.demo.bank.account.entity.Currency;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LedgerEngineTest {
+    private final Map<Long, Account> database = new ConcurrentHashMap<>();
+    private final AtomicInteger loads = new AtomicInteger();
+    private final List<Account> written = new ArrayList<>();
+    private LedgerEngine ledgerEngine;
+
+    private LedgerEngine ledgerEngine(int shards, Consumer<Collection<Account>> writer) {
+        ledgerEngine = new LedgerEngine(id -> {
+            loads.incrementAndGet();
+            return Optional.ofNullable(database.get(id));
+        }, writer, shards, Duration.ofHours(1));
+        return ledgerEngine;
+    }
+
+    private LedgerEngine ledgerEngine(int shards) {
+        return ledgerEngine(shards, balances -> written.addAll(balances));
+    }
+
+    @AfterEach
+    void tearDown() {
+        ledgerEngine.close();
+    }
+
+    private void account(long id, Currency currency, long balance) {
+        database.put(id, new Account(id, "John", "Doe", currency, balance, 0));
+    }
+
+    @Test
+    void testDepositAndWithdraw() throws Exception {
+        account(1L, Currency.EUR, 100_00);
+        LedgerEngine ledgerEngine = ledgerEngine(2);
+
+        assertEquals(Currency.EUR, ledgerEngine.currencyOf(1L));
+        Account deposited = ledgerEngine.deposit(1L, 50_00).join();
+        assertEquals(150_00, deposited.getBalance());
+        assertEquals(1, deposited.getVersion());
+        assertEquals("John Doe", deposited.getFullName());
+        assertEquals(120_00, ledgerEngine.withdraw(1L, 30_00).join().getBalance());
+        assertEquals(120_00, ledgerEngine.get(1L).join().getBalance());
+        // Loaded once; the database copy is not changed by the ledger itself
+        assertEquals(1, loads.get());
+        assertEquals(100_00, database.get(1L).getBalance());
+    }
+
+    @Test
+    void testWithdraw_insufficientBalanceLeavesBalance() throws Exception {
+        account(1L, Currency.USD, 10_00);
+        LedgerEngine ledgerEngine = ledgerEngine(1);
+
+        CompletionException ex = assertThrows(CompletionException.class, () -> ledgerEngine.withdraw(1L, 10_50).join());
+        assertEquals("Withdraw failed. Insufficient balance or invalid amount", ex.getCause().getMessage());
+        Account account = ledgerEngine.get(1L).join();
+        assertEquals(10_00, account.getBalance());
+        assertEquals(0, account.getVersion());
+    }
+
+    @Test
+    void testUnknownAccount() {
+        LedgerEngine ledgerEngine = ledgerEngine(1);
+
+        assertThrows(IllegalArgumentException.class, () -> ledgerEngine.currencyOf(7L));
+        CompletionException ex = assertThrows(CompletionException.class, () -> ledgerEngine.deposit(7L, 1_00).join());
+        assertInstanceOf(IllegalArgumentException.class, ex.getCause());
+        assertNull(ledgerEngine.get(7L).join());
+    }
+
+    @Test
+    void testConcurrentSubmitters_noLostUpdates() throws Exception {
+        int accounts = 16;
+        int threads = 32;
+        int operationsPerThread = 2000;
+        for (long id = 1; id <= accounts; id++) {
+            account(id, Currency.USD, 0);
+        }
+        LedgerEngine ledgerEngine = ledgerEngine(4);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    List<CompletableFuture<Account>> pending = new ArrayList<>(operationsPerThread);
+                    for (int i = 0; i < operationsPerThread; i++) {
+                        pending.add(ledgerEngine.deposit(1 + i % accounts, 1));
+                    }
+                    pending.forEach(CompletableFuture::join);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        long perAccount = (long) threads * operationsPerThread / accounts;
+        for (long id = 1; id <= accounts; id++) {
+            assertEquals(perAccount, ledgerEngine.get(id).join().getBalance());
+        }
+    }
+
+    @Test
+    void testFlush_writesLatestBalancePerAccount() throws Exception {
+        account(1L, Currency.USD, 0);
+        account(2L, Currency.USD, 0);
+        LedgerEngine ledgerEngine = ledgerEngine(2);
+        for (int i = 0; i < 100; i++) {
+            ledgerEngine.deposit(1L, 1_00);
+        }
+        ledgerEngine.deposit(2L, 5_00).join();
+        ledgerEngine.get(1L).join();
+
+        ledgerEngine.flush();
+
+        assertEquals(2, written.size());
+        Account first = written.stream().filter(account -> account.getId() == 1L).findFirst().orElseThrow();
+        assertEquals(100_00, first.getBalance());
+        assertEquals(100, first.getVersion());
+        // Nothing changed since: nothing more to write
+        written.clear();
+        ledgerEngine.flush();
+        assertTrue(written.isEmpty());
+    }
+
+    @Test
+    void testFlush_failedWriteIsRetried() throws Exception {
+        account(1L, Currency.USD, 0);
+        AtomicInteger attempts = new AtomicInteger();
+        LedgerEngine ledgerEngine = ledgerEngine(1, balances -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new IllegalStateException("database down");
+            }
+            written.addAll(balances);
+        });
+        ledgerEngine.deposit(1L, 5_00).join();
+
+        ledgerEngine.flush();
+        assertTrue(written.isEmpty());
+        ledgerEngine.deposit(1L, 5_00).join();
+        ledgerEngine.flush();
+
+        assertEquals(1, written.size());
+        assertEquals(10_00, written.get(0).getBalance());
+    }
+
+    @Test
+    void testClose_appliesQueuedCommandsAndWritesThem() throws Exception {
+        account(1L, Currency.USD, 0);
+        LedgerEngine ledgerEngine = ledgerEngine(1);
+        List<CompletableFuture<Account>> pending = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            pending.add(ledgerEngine.deposit(1L, 1_00));
+        }
+
+        ledgerEngine.close();
+
+        pending.forEach(future -> assertTrue(future.isDone()));
+        assertEquals(1000_00, written.get(written.size() - 1).getBalance());
+        CompletionException ex = assertThrows(CompletionException.class, () -> ledgerEngine.deposit(1L, 1_00).join());
+        assertEquals("Ledger is shut down", ex.getCause().getMessage());
+    }
+}
@@ -1,18 +1,33 @@
 package com.demo.bank.conversion.controller;
 
 import com.demo.bank.account.entity.Currency;
+import com.demo.bank.conversion.entity.RateQuote;
+import com.demo.bank.conversion.entity.RateSnapshot;
+import com.demo.bank.conversion.entity.RateSource;
 import com.demo.bank.conversion.service.CurrencyConversionService;
 import com.demo.bank.utils.GlobalExceptionHandler;
+import com.demo.bank.utils.Money;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+
+import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -29,10 +44,24 @@ class CurrencyConversionControllerTest {
                 .build();
     }
 
+    // The convert endpoint completes asynchronously, so the result is read from the async dispatch
+    private ResultActions performAsync(RequestBuilder requestBuilder) throws Exception {
+        MvcResult result = mockMvc.perform(requestBuilder)
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(result));
+    }
+
+    private static CompletableFuture<RateQuote> converted(long amount, Currency from, Currency to, double rate) {
+        long fixedRate = Money.toFixedRate(rate);
+        return CompletableFuture.completedFuture(new RateQuote(amount, from, to, fixedRate, Money.convert(amount, fixedRate),
+                LocalDate.of(2025, 9, 1), RateSource.LIVE));
+    }
+
     @Test
     void testConvert_success() throws Exception {
-        when(currencyConversionService.convert(Currency.USD, Currency.EUR, 100.0)).thenReturn(90.0);
-        mockMvc.perform(get("/api/currency/convert")
+        when(currencyConversionService.quoteAsync(Currency.USD, Currency.EUR, 100_00)).thenReturn(converted(100_00, Currency.USD, Currency.EUR, 0.9));
+        performAsync(get("/api/currency/convert")
                 .param("amount", "100.0")
                 .param("from", "USD")
                 .param("to", "EUR"))
@@ -41,40 +70,53 @@ class CurrencyConversionControllerTest {
                 .andExpect(jsonPath("$.from").value("USD"))
                 .andExpect(jsonPath("$.to").value("EUR"))
                 .andExpect(jsonPath("$.rate").value(0.9))
-                .andExpect(jsonPath("$.convertedAmount").value(90.0));
-        verify(currencyConversionService).convert(Currency.USD, Currency.EUR, 100.0);
+                .andExpect(jsonPath("$.convertedAmount").value(90.0))
+                .andExpect(jsonPath("$.rateDate").value("2025-09-01"))
+                .andExpect(jsonPath("$.source").value("LIVE"));
+        verify(currencyConversionService).quoteAsync(Currency.USD, Currency.EUR, 100_00);
     }
 
     @Test
     void testConvert_zeroAmount() throws Exception {
-        when(currencyConversionService.convert(Currency.USD, Currency.EUR, 0.0)).thenReturn(0.0);
-        mockMvc.perform(get("/api/currency/convert")
+        when(currencyConversionService.quoteAsync(Currency.USD, Currency.EUR, 0)).thenReturn(converted(0, Currency.USD, Currency.EUR, 0.9));
+        performAsync(get("/api/currency/convert")
                 .param("amount", "0.0")
                 .param("from", "USD")
                 .param("to", "EUR"))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.amount").value(0.0))
                 .andExpect(jsonPath("$.convertedAmount").value(0.0));
-        verify(currencyConversionService).convert(Currency.USD, Currency.EUR, 0.0);
+        verify(currencyConversionService).quoteAsync(Currency.USD, Currency.EUR, 0);
     }
 
     @Test
     void testConvert_negativeAmount() throws Exception {
-        when(currencyConversionService.convert(Currency.USD, Currency.EUR, -50.0)).thenReturn(-45.0);
-        mockMvc.perform(get("/api/currency/convert")
+        when(currencyConversionService.quoteAsync(Currency.USD, Currency.EUR, -50_00)).thenReturn(converted(-50_00, Currency.USD, Currency.EUR, 0.9));
+        performAsync(get("/api/currency/convert")
                 .param("amount", "-50.0")
                 .param("from", "USD")
                 .param("to", "EUR"))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.amount").value(-50.0))
                 .andExpect(jsonPath("$.convertedAmount").value(-45.0));
-        verify(currencyConversionService).convert(Currency.USD, Currency.EUR, -50.0);
+        verify(currencyConversionService).quoteAsync(Currency.USD, Currency.EUR, -50_00);
     }
 
     @Test
-    void testConvert_sameCurrency() throws Exception {
-        when(currencyConversionService.convert(Currency.USD, Currency.USD, 100.0)).thenReturn(100.0);
+    void testConvert_tooManyDecimals() throws Exception {
         mockMvc.perform(get("/api/currency/convert")
+                .param("amount", "1.005")
+                .param("from", "USD")
+                .param("to", "EUR"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Amount has more than 2 decimal places: 1.005"));
+        verifyNoInteractions(currencyConversionService);
+    }
+
+    @Test
+    void testConvert_sameCurrency() throws Exception {
+        when(currencyConversionService.quoteAsync(Currency.USD, Currency.USD, 100_00)).thenReturn(converted(100_00, Currency.USD, Currency.USD, 1.0));
+        performAsync(get("/api/currency/convert")
                 .param("amount", "100.0")
                 .param("from", "USD")
                 .param("to", "USD"))
@@ -82,18 +124,100 @@ class CurrencyConversionControllerTest {
                 .andExpect(jsonPath("$.amount").value(100.0))
                 .andExpect(jsonPath("$.convertedAmount").value(100.0))
                 .andExpect(jsonPath("$.rate").value(1.0));
-        verify(currencyConversionService).convert(Currency.USD, Currency.USD, 100.0);
+        verify(currencyConversionService).quoteAsync(Currency.USD, Currency.USD, 100_00);
     }
 
     @Test
     void testConvert_invalidCurrency() throws Exception {
-        when(currencyConversionService.convert(Currency.XXX, Currency.YYY, 100.0)).thenThrow(new RuntimeException("Invalid currency code"));
-        mockMvc.perform(get("/api/currency/convert")
+        when(currencyConversionService.quoteAsync(Currency.XXX, Currency.YYY, 100_00))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("Invalid currency code")));
+        performAsync(get("/api/currency/convert")
                 .param("amount", "100.0")
                 .param("from", "XXX")
                 .param("to", "YYY"))
                 .andExpect(status().isInternalServerError())
                 .andExpect(content().string("Invalid currency code"));
-        verify(currencyConversionService).convert(Currency.XXX, Currency.YYY, 100.0);
+        verify(currencyConversionService).quoteAsync(Currency.XXX, Currency.YYY, 100_00);
+    }
+
+    @Test
+    void testConvert_asOfDate() throws Exception {
+        when(currencyConversionService.quoteAsync(Currency.USD, Currency.EUR, 100_00, LocalDate.of(2024, 3, 15)))
+                .thenReturn(converted(100_00, Currency.USD, Currency.EUR, 0.92));
+        performAsync(get("/api/currency/convert")
+                .param("amount", "100.0")
+                .param("from", "USD")
+                .param("to", "EUR")
+                .param("date", "2024-03-15"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.convertedAmount").value(92.0));
+        verify(currencyConversionService).quoteAsync(Currency.USD, Currency.EUR, 100_00, LocalDate.of(2024, 3, 15));
+        verify(currencyConversionService, never()).quoteAsync(Currency.USD, Currency.EUR, 100_00);
+    }
+
+    @Test
+    void testConvertBatch_usesOneSnapshotForAllItems() throws Exception {
+        double[] euroRates = new double[Currency.values().length];
+        Arrays.fill(euroRates, Double.NaN);
+        euroRates[Currency.EUR.ordinal()] = 1.0;
+        euroRates[Currency.USD.ordinal()] = 1.25;
+        euroRates[Currency.RON.ordinal()] = 5.0;
+        RateSnapshot rates = RateSnapshot.fromBaseRates(LocalDate.of(2025, 9, 1), euroRates);
+        when(currencyConversionService.getRates()).thenReturn(rates);
+        when(currencyConversionService.quote(eq(rates), any(), any(), anyLong())).thenAnswer(invocation -> {
+            Currency from = invocation.getArgument(1);
+            Currency to = invocation.getArgument(2);
+            long amount = invocation.getArgument(3);
+            long rate = Money.toFixedRate(rates.getRate(from, to));
+            return new RateQuote(amount, from, to, rate, Money.convert(amount, rate), rates.getDate(), RateSource.CACHED);
+        });
+
+        performAsync(post("/api/currency/convert/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[{\"amount\":100,\"from\":\"USD\",\"to\":\"RON\"},"
+                        + "{\"from\":\"EUR\",\"to\":\"USD\",\"amount\":10,\"note\":{\"ignored\":true}}]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].rate").value(4.0))
+                .andExpect(jsonPath("$[0].convertedAmount").value(400.0))
+                .andExpect(jsonPath("$[1].from").value("EUR"))
+                .andExpect(jsonPath("$[1].convertedAmount").value(12.5))
+                .andExpect(jsonPath("$[1].rateDate").value("2025-09-01"))
+                .andExpect(jsonPath("$[1].source").value("CACHED"));
+        verify(currencyConversionService, times(1)).getRates();
+    }
+
+    @Test
+    void testConvertBatch_invalidItemsReportErrors() throws Exception {
+        when(currencyConversionService.quote(any(), eq(Currency.XXX), eq(Currency.USD), anyLong()))
+                .thenThrow(new RuntimeException("Currency conversion not supported: from XXX to USD"));
+
+        performAsync(post("/api/currency/convert/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[{\"amount\":1,\"from\":\"ABC\",\"to\":\"USD\"},"
+                        + "{\"amount\":1,\"from\":\"XXX\",\"to\":\"USD\"},"
+                        + "{\"from\":\"EUR\",\"to\":\"USD\"}]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].error").value("Unknown currency: ABC"))
+                .andExpect(jsonPath("$[1].error").value("Currency conversion not supported: from XXX to USD"))
+                .andExpect(jsonPath("$[2].error").value("amount, from and to are required"));
+    }
+
+    @Test
+    void testConvertBatch_emptyArray() throws Exception {
+        performAsync(post("/api/currency/convert/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[]"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("[]"));
+    }
+
+    @Test
+    void testConvertBatch_bodyNotAnArray() throws Exception {
+        mockMvc.perform(post("/api/currency/convert/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"amount\":1,\"from\":\"USD\",\"to\":\"EUR\"}"))
+                .andExpect(status().isBadRequest());
+        verify(currencyConversionService, never()).getRates();
     }
 }
@@ -0,0 +1,355 @@
+package com.demo.bank.conversion.repository;
+
+import com.demo.bank.account.entity.Currency;
+import com.demo.bank.conversion.entity.ExchangeRate;
+import com.demo.bank.conversion.entity.RateCacheStats;
+import com.demo.bank.conversion.entity.RateSnapshot;
+import com.demo.bank.conversion.entity.RateSource;
+import com.demo.bank.utils.CircuitBreaker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CurrencyConversionRepositoryTest {
+    @Mock
+    private FrankfurterClient frankfurterClient;
+    @Mock
+    private RateHistory rateHistory;
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    private static RateSnapshot euroSnapshot(double usd, double ron) {
+        return FrankfurterClient.parseSnapshot("{\"base\":\"EUR\",\"date\":\"2025-09-01\",\"rates\":{\"USD\":" + usd
+                + ",\"RON\":" + ron + ",\"GBP\":0.86}}");
+    }
+
+    private void givenEuroRates(double usd, double ron) {
+        when(frankfurterClient.fetchLatest()).thenReturn(CompletableFuture.completedFuture(euroSnapshot(usd, ron)));
+    }
+
+    private CurrencyConversionRepository repository(Duration ttl, Duration refreshAhead) {
+        return new CurrencyConversionRepository(frankfurterClient, Optional.empty(), rateHistory, ttl, refreshAhead,
+                meterRegistry);
+    }
+
+    @Test
+    void testGetExchangeRate_cachesSnapshot() {
+        givenEuroRates(1.25, 5.0);
+        CurrencyConversionRepository repository = repository(Duration.ofHours(1), Duration.ZERO);
+
+        assertEquals(1.25, repository.getExchangeRate(Currency.EUR, Currency.USD).getRate());
+        assertEquals(1.25, repository.getExchangeRate(Currency.EUR, Currency.USD).getRate());
+
+        verify(frankfurterClient, times(1)).fetchLatest();
+        RateCacheStats stats = repository.getCacheStats();
+        assertEquals(1, stats.getHits());
+        assertEquals(1, stats.getMisses());
+        assertEquals(0, stats.getRefreshes());
+    }
+
+    @Test
+    void testGetExchangeRate_allPairsFromOneSnapshot() {
+        givenEuroRates(1.25, 5.0);
+        CurrencyConversionRepository repository = repository(Duration.ofHours(1), Duration.ZERO);
+
+        assertEquals(0.8, repository.getExchangeRate(Currency.USD, Currency.EUR).getRate(), 1e-12);
+        assertEquals(4.0, repository.getExchangeRate(Currency.USD, Currency.RON).getRate(), 1e-12);
+        assertEquals(0.25, repository.getExchangeRate(Currency.RON, Currency.USD).getRate(), 1e-12);
+        assertEquals(0.2, repository.getExchangeRate(Currency.RON, Currency.EUR).getRate(), 1e-12);
+        assertEquals(LocalDate.of(2025, 9, 1), repository.getSnapshot().getDate());
+
+        verify(frankfurterClient, times(1)).fetchLatest();
+    }
+
+    @Test
+    void testGetExchangeRate_unquotedCurrencyThrows() {
+        givenEuroRates(1.25, 5.0);
+        CurrencyConversionRepository repository = repository(Duration.ofHours(1), Duration.ZERO);
+
+        RuntimeException ex = assertThrows(RuntimeException.class, () ->
+                repository.getExchangeRate(Currency.XXX, Currency.YYY));
+        assertEquals("Currency conversion not supported: from XXX to YYY", ex.getMessage());
+    }
+
+    @Test
+    void testGetExchangeRate_expiredSnapshotIsFetchedAgain() {
+        givenEuroRates(1.25, 5.0);
+        CurrencyConversionRepository repository = repository(Duration.ZERO, Duration.ZERO);
+
+        repository.getExchangeRate(Currency.USD, Currency.EUR);
+        repository.getExchangeRate(Currency.USD, Currency.EUR);
+
+        verify(frankfurterClient, times(2)).fetchLatest();
+        assertEquals(2, repository.getCacheStats().getMisses());
+    }
+
+    @Test
+    void testGetExchangeRate_refreshAheadServesCachedRateAndUpdates() {
+        givenEuroRates(1.25, 5.0);
+        CurrencyConversionRepository repository = repository(Duration.ofHours(1), Duration.ofHours(1));
+
+        assertEquals(1.25, repository.getExchangeRate(Currency.EUR, Currency.USD).getRate());
+        CompletableFuture<RateSnapshot> pending = new CompletableFuture<>();
+        when(frankfurterClient.fetchLatest()).thenReturn(pending);
+        // Snapshot is inside the refresh-ahead window: stale value is served while the refresh is in flight
+        assertEquals(1.25, repository.getExchangeRate(Currency.EUR, Currency.USD).getRate());
+        assertEquals(1.25, repository.getExchangeRate(Currency.EUR, Currency.USD).getRate());
+        verify(frankfurterClient, times(2)).fetchLatest();
+
+        pending.complete(euroSnapshot(1.5, 5.0));
+        assertEquals(1, repository.getCacheStats().getRefreshes());
+        assertEquals(1.5, repository.getExchangeRate(Currency.EUR, Currency.USD).getRate());
+    }
+
+    @Test
+    void testGetExchangeRate_fallbackIsNotCached() {
+        when(frankfurterClient.fetchLatest()).thenReturn(CompletableFuture.failedFuture(new IOException("down")));
+        CurrencyConversionRepository repository = repository(Duration.ofHours(1), Duration.ZERO);
+
+        assertEquals(0.85, repository.getExchangeRate(Currency.USD, Currency.EUR).getRate());
+        assertEquals(0.85, repository.getExchangeRate(Currency.USD, Currency.EUR).getRate());
+        verify(frankfurterClient, times(2)).fetchLatest();
+    }
+
+    @Test
+    void testGetExchangeRate_sameCurrencySkipsRemote() {
+        CurrencyConversionRepository repository = repository(Duration.ofHours(1), Duration.ZERO);
+
+        assertEquals(1.0, repository.getExchangeRate(Currency.RON, Currency.RON).getRate());
+        verifyNoInteractions(frankfurterClient);
+    }
+
+    @Test
+    void testGetExchangeRateAsync_completesFromSnapshot() {
+        CompletableFuture<RateSnapshot> pending = new CompletableFuture<>();
+        when(frankfurterClient.fetchLatest()).thenReturn(pending);
+        CurrencyConversionRepository repository = repository(Duration.ofHours(1), Duration.ZERO);
+
+        CompletableFuture<ExchangeRate> rate = repository.getExchangeRateAsync(Currency.EUR, Currency.RON);
+        assertFalse(rate.isDone());
+
+        pending.complete(euroSnapshot(1.25, 5.0));
+        assertEquals(5.0, rate.join().getRate());
+    }
+
+    @Test
+    void testGetSnapshotAsync_concurrentMissesShareOneFetch() {
+        CompletableFuture<RateSnapshot> pending = new CompletableFuture<>();
+        when(frankfurterClient.fetchLatest()).thenReturn(pending);
+        CurrencyConversionRepository repository = repository(Duration.ofHours(1), Duration.ZERO);
+
+        CompletableFuture<RateSnapshot> first = repository.getSnapshotAsync();
+        CompletableFuture<RateSnapshot> second = repository.getSnapshotAsync();
+        CompletableFuture<ExchangeRate> third = repository.getExchangeRateAsync(Currency.USD, Currency.RON);
+        verify(frankfurterClient, times(1)).fetchLatest();
+
+        RateSnapshot snapshot = euroSnapshot(1.25, 5.0);
+        pending.complete(snapshot);
+        assertSame(snapshot, first.join());
+        assertSame(snapshot, second.join());
+        assertEquals(4.0, third.join().getRate(), 1e-12);
+        assertEquals(2, repository.getCacheStats().getCoalesced());
+
+        // Once the shared fetch is done, the result is served from the cache
+        assertSame(snapshot, repository.getSnapshot());
+        verify(frankfurterClient, times(1)).fetchLatest();
+    }
+
+    @Test
+    void testPrefetch_startsFetchThatLaterLookupsJoin() {
+        CompletableFuture<RateSnapshot> pending = new CompletableFuture<>();
+        when(frankfurterClient.fetchLatest()).thenReturn(pending);
+        CurrencyConversionRepository repository = repository(Duration.ofHours(1), Duration.ZERO);
+
+        repository.prefetch();
+        repository.prefetch();
+        verify(frankfurterClient, times(1)).fetchLatest();
+        assertEquals(1, repository.getCacheStats().getPrefetches());
+        assertEquals(0, repository.getCacheStats().getMisses());
+        CompletableFuture<ExchangeRate> rate = repository.getExchangeRateAsync(Currency.EUR, Currency.USD);
+        assertFalse(rate.isDone());
+
+        pending.complete(euroSnapshot(1.25, 5.0));
+        assertEquals(1.25, rate.join().getRate());
+        // Cached now: nothing left to prefetch
+        repository.prefetch();
+        assertEquals(1.25, repository.getExchangeRate(Currency.EUR, Currency.USD).getRate());
+        verify(frankfurterClient, times(1)).fetchLatest();
+        assertEquals(1, repository.getCacheStats().getHits());
+    }
+
+    @Test
+    void testGetExchangeRate_concurrentThreadsShareOneFetch() throws Exception {
+        CompletableFuture<RateSnapshot> pending = new CompletableFuture<>();
+        when(frankfurterClient.fetchLatest()).thenReturn(pending);
+        CurrencyConversionRepository repository = repository(Duration.ofHours(1), Duration.ZERO);
+
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Double>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(() -> repository.getExchangeRate(Currency.EUR, Currency.USD).getRate()));
+            }
+            pending.complete(euroSnapshot(1.25, 5.0));
+            for (Future<Double> result : results) {
+                assertEquals(1.25, result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        verify(frankfurterClient, times(1)).fetchLatest();
+    }
+
+    @Test
+    void testGetSnapshotAsync_failedFetchIsRetriedByNextCaller() {
+        when(frankfurterClient.fetchLatest())
+                .thenReturn(CompletableFuture.failedFuture(new IOException("down")))
+                .thenReturn(CompletableFuture.completedFuture(euroSnapshot(1.25, 5.0)));
+        CurrencyConversionRepository repository = repository(Duration.ofHours(1), Duration.ZERO);
+
+        assertNull(repository.getSnapshot());
+        assertNotNull(repository.getSnapshot());
+        verify(frankfurterClient, times(2)).fetchLatest();
+    }
+
+    @Test
+    void testGetExchangeRate_failedFetchServesLastKnownRates() {
+        when(frankfurterClient.fetchLatest())
+                .thenReturn(CompletableFuture.completedFuture(euroSnapshot(1.25, 5.0)))
+                .thenReturn(CompletableFuture.failedFuture(new CircuitBreaker.CallNotPermittedException("frankfurter")));
+        CurrencyConversionRepository repository = repository(Duration.ZERO, Duration.ZERO);
+
+        assertEquals(1.25, repository.getExchangeRate(Currency.EUR, Currency.USD).getRate());
+        // Snapshot has expired and the upstream is unavailable: last known rates win over mock rates
+        assertEquals(1.25, repository.getExchangeRate(Currency.EUR, Currency.USD).getRate());
+        verify(frankfurterClient, times(2)).fetchLatest();
+    }
+
+    @Test
+    void testGetSnapshot_freshSnapshotIsRecordedInHistory() {
+        givenEuroRates(1.25, 5.0);
+        CurrencyConversionRepository repository = repository(Duration.ofHours(1), Duration.ZERO);
+
+        RateSnapshot snapshot = repository.getSnapshot();
+        repository.getSnapshot();
+
+        verify(rateHistory, times(1)).recordLatest(snapshot);
+    }
+
+    @Test
+    void testGetExchangeRate_asOfDateUsesHistory() {
+        when(rateHistory.getSnapshotAsync(LocalDate.of(2025, 9, 1)))
+                .thenReturn(CompletableFuture.completedFuture(euroSnapshot(1.25, 5.0)));
+        CurrencyConversionRepository repository = repository(Duration.ofHours(1), Duration.ZERO);
+
+        assertEquals(4.0, repository.getExchangeRate(Currency.USD, Currency.RON, LocalDate.of(2025, 9, 1)).getRate(), 1e-12);
+        RuntimeException ex = assertThrows(RuntimeException.class, () ->
+                repository.getExchangeRate(Currency.XXX, Currency.USD, LocalDate.of(2025, 9, 1)));
+        assertTrue(ex.getMessage().startsWith("Currency conversion not supported"));
+        verifyNoInteractions(frankfurterClient);
+    }
+
+    @Test
+    void testGetExchangeRate_fromGivenSnapshot() {
+        CurrencyConversionRepository repository = repository(Duration.ofHours(1), Duration.ZERO);
+        RateSnapshot snapshot = euroSnapshot(1.25, 5.0);
+
+        assertEquals(4.0, repository.getExchangeRate(snapshot, Currency.USD, Currency.RON).getRate(), 1e-12);
+        // Unquoted pairs and a missing snapshot fall back like the live lookups
+        assertEquals(0.85, repository.getExchangeRate(null, Currency.USD, Currency.EUR).getRate());
+        assertEquals(1.0, repository.getExchangeRate(null, Currency.XXX, Currency.XXX).getRate());
+        verifyNoInteractions(frankfurterClient);
+    }
+
+    @Test
+    void testGetExchangeRate_reportsWhereTheRateCameFrom() {
+        givenEuroRates(1.25, 5.0);
+        CurrencyConversionRepository repository = repository(Duration.ofHours(1), Duration.ZERO);
+
+        ExchangeRate fetched = repository.getExchangeRate(Currency.EUR, Currency.USD);
+        assertEquals(RateSource.LIVE, fetched.getSource());
+        assertEquals(LocalDate.of(2025, 9, 1), fetched.getDate());
+        ExchangeRate cached = repository.getExchangeRateAsync(Currency.EUR, Currency.USD).join();
+        assertEquals(RateSource.CACHED, cached.getSource());
+        assertEquals(LocalDate.of(2025, 9, 1), cached.getDate());
+        assertEquals(RateSource.IDENTITY, repository.getExchangeRate(Currency.RON, Currency.RON).getSource());
+    }
+
+    @Test
+    void testGetExchangeRate_upstreamDownReportsFallbackThenLastKnown() {
+        when(frankfurterClient.fetchLatest())
+                .thenReturn(CompletableFuture.failedFuture(new IOException("down")))
+                .thenReturn(CompletableFuture.completedFuture(euroSnapshot(1.25, 5.0)))
+                .thenReturn(CompletableFuture.failedFuture(new IOException("down")));
+        CurrencyConversionRepository repository = repository(Duration.ZERO, Duration.ZERO);
+
+        ExchangeRate mock = repository.getExchangeRate(Currency.USD, Currency.EUR);
+        assertEquals(RateSource.FALLBACK, mock.getSource());
+        assertNull(mock.getDate());
+        assertEquals(RateSource.LIVE, repository.getExchangeRate(Currency.EUR, Currency.USD).getSource());
+        // Expired and the upstream fails again: the last known snapshot is served
+        ExchangeRate lastKnown = repository.getExchangeRate(Currency.EUR, Currency.USD);
+        assertEquals(1.25, lastKnown.getRate());
+        assertEquals(RateSource.CACHED, lastKnown.getSource());
+    }
+
+    @Test
+    void testGetExchangeRate_countsConversionsPerPairAndFallbacks() {
+        when(frankfurterClient.fetchLatest())
+                .thenReturn(CompletableFuture.failedFuture(new IOException("down")))
+                .thenReturn(CompletableFuture.completedFuture(euroSnapshot(1.25, 5.0)));
+        CurrencyConversionRepository repository = repository(Duration.ZERO, Duration.ZERO);
+
+        repository.getExchangeRate(Currency.USD, Currency.EUR);
+        repository.getExchangeRate(Currency.USD, Currency.EUR);
+        repository.getExchangeRateAsync(Currency.EUR, Currency.RON).join();
+        repository.getExchangeRate(Currency.RON, Currency.RON);
+
+        assertEquals(1, conversions(Currency.USD, Currency.EUR, RateSource.FALLBACK));
+        assertEquals(1, conversions(Currency.USD, Currency.EUR, RateSource.LIVE));
+        assertEquals(1, conversions(Currency.RON, Currency.RON, RateSource.IDENTITY));
+        assertEquals(1, conversions(Currency.EUR, Currency.RON, RateSource.LIVE));
+        assertEquals(1, meterRegistry.get("bank.conversion.fallbacks").tags("from", "USD", "to", "EUR").counter().count());
+    }
+
+    private double conversions(Currency from, Currency to, RateSource source) {
+        return meterRegistry.get("bank.conversions").tags("from", from.name(), "to", to.name(), "source", source.name())
+                .counter().count();
+    }
+
+    @Test
+    void testGetExchangeRate_asOfDateReportsWhetherHistoryCoveredIt() {
+        RateSnapshot snapshot = euroSnapshot(1.25, 5.0);
+        when(rateHistory.find(LocalDate.of(2025, 9, 2))).thenReturn(snapshot);
+        when(rateHistory.getSnapshotAsync(LocalDate.of(2025, 9, 1))).thenReturn(CompletableFuture.completedFuture(snapshot));
+        CurrencyConversionRepository repository = repository(Duration.ofHours(1), Duration.ZERO);
+
+        ExchangeRate covered = repository.getExchangeRate(Currency.EUR, Currency.USD, LocalDate.of(2025, 9, 2));
+        assertEquals(RateSource.CACHED, covered.getSource());
+        assertEquals(LocalDate.of(2025, 9, 1), covered.getDate());
+        assertEquals(RateSource.LIVE, repository.getExchangeRate(Currency.EUR, Currency.USD, LocalDate.of(2025, 9, 1)).getSource());
+        verify(rateHistory, never()).getSnapshotAsync(LocalDate.of(2025, 9, 2));
+    }
+}
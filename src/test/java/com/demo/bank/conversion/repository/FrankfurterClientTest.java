@@ -0,0 +1,140 @@
+package com.demo.bank.conversion.repository;
+
+import com.demo.bank.account.entity.Currency;
+import com.demo.bank.conversion.entity.RateSnapshot;
+import com.demo.bank.utils.CircuitBreaker;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FrankfurterClientTest {
+    private static final String BODY = "{\"base\":\"EUR\",\"date\":\"2025-09-01\",\"rates\":{\"USD\":1.25,\"RON\":5.0}}";
+
+    private static final String SERIES_BODY = "{\"base\":\"EUR\",\"start_date\":\"2025-01-03\",\"end_date\":\"2025-01-07\","
+            + "\"rates\":{\"2025-01-07\":{\"USD\":1.07},\"2025-01-03\":{\"USD\":1.03},\"2025-01-06\":{\"USD\":1.06}}}";
+
+    private HttpServer server;
+    private final AtomicLong responseDelayMillis = new AtomicLong();
+    private final AtomicInteger responseStatus = new AtomicInteger(200);
+    private final AtomicInteger requests = new AtomicInteger();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @BeforeEach
+    void startServer() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/v1/latest", exchange -> {
+            requests.incrementAndGet();
+            try {
+                Thread.sleep(responseDelayMillis.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = BODY.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(responseStatus.get(), body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.createContext("/v1/2025-01-04..2025-01-07", exchange -> {
+            byte[] body = SERIES_BODY.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    private FrankfurterClient client(Duration readTimeout, int failureThreshold) {
+        return new FrankfurterClient(HttpClient.newHttpClient(),
+                "http://127.0.0.1:" + server.getAddress().getPort() + "/v1",
+                readTimeout,
+                new CircuitBreaker("test", failureThreshold, readTimeout, Duration.ofMinutes(1)), meterRegistry);
+    }
+
+    @Test
+    void testFetchLatest_parsesSnapshot() {
+        RateSnapshot snapshot = client(Duration.ofSeconds(2), 5).fetchLatest().join();
+        assertEquals(1.25, snapshot.getRate(Currency.EUR, Currency.USD));
+        assertEquals(4.0, snapshot.getRate(Currency.USD, Currency.RON), 1e-12);
+        assertTrue(Double.isNaN(snapshot.getRate(Currency.XXX, Currency.EUR)));
+    }
+
+    @Test
+    void testFetchLatest_failsOnHttpError() {
+        responseStatus.set(503);
+        CompletableFuture<RateSnapshot> result = client(Duration.ofSeconds(2), 5).fetchLatest();
+        CompletionException ex = assertThrows(CompletionException.class, result::join);
+        assertTrue(ex.getCause().getMessage().contains("503"));
+    }
+
+    @Test
+    void testFetchLatest_slowUpstreamTimesOutQuickly() {
+        responseDelayMillis.set(2000);
+        long start = System.nanoTime();
+        CompletableFuture<RateSnapshot> result = client(Duration.ofMillis(200), 5).fetchLatest();
+        assertThrows(CompletionException.class, result::join);
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() < 1500);
+    }
+
+    @Test
+    void testFetchLatest_openCircuitSkipsUpstream() {
+        responseStatus.set(500);
+        FrankfurterClient client = client(Duration.ofSeconds(2), 2);
+        assertThrows(CompletionException.class, () -> client.fetchLatest().join());
+        assertThrows(CompletionException.class, () -> client.fetchLatest().join());
+        assertEquals(CircuitBreaker.State.OPEN, client.getCircuitState());
+
+        CompletionException ex = assertThrows(CompletionException.class, () -> client.fetchLatest().join());
+        assertInstanceOf(CircuitBreaker.CallNotPermittedException.class, ex.getCause());
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    void testFetchLatest_callsAreTimedByOutcome() {
+        FrankfurterClient client = client(Duration.ofSeconds(2), 1);
+        client.fetchLatest().join();
+        responseStatus.set(503);
+        assertThrows(CompletionException.class, () -> client.fetchLatest().join());
+        assertThrows(CompletionException.class, () -> client.fetchLatest().join());
+
+        assertEquals(1, meterRegistry.get("bank.frankfurter.requests").tags("endpoint", "latest", "outcome", "success").timer().count());
+        assertEquals(1, meterRegistry.get("bank.frankfurter.requests").tags("endpoint", "latest", "outcome", "error").timer().count());
+        // Refused by the open circuit: counted, but not timed as an upstream call
+        assertEquals(1, meterRegistry.get("bank.frankfurter.short-circuited").tags("endpoint", "latest").counter().count());
+    }
+
+    @Test
+    void testFetchTimeSeries_returnsSnapshotsOldestFirst() {
+        List<RateSnapshot> series = client(Duration.ofSeconds(2), 5)
+                .fetchTimeSeries(LocalDate.of(2025, 1, 4), LocalDate.of(2025, 1, 7)).join();
+
+        assertEquals(3, series.size());
+        assertEquals(LocalDate.of(2025, 1, 3), series.get(0).getDate());
+        assertEquals(1.03, series.get(0).getRate(Currency.EUR, Currency.USD));
+        assertEquals(LocalDate.of(2025, 1, 7), series.get(2).getDate());
+    }
+}
@@ -0,0 +1,167 @@
+package com.demo.bank.conversion.repository;
+
+import com.demo.bank.account.entity.Currency;
+import com.demo.bank.conversion.entity.HistoricalRateSnapshot;
+import com.demo.bank.conversion.entity.RateSnapshot;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class RateHistoryTest {
+    @Mock
+    private HistoricalRateSnapshotRepository historyRepository;
+    @Mock
+    private FrankfurterClient frankfurterClient;
+
+    private RateHistory rateHistory;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(historyRepository.findAllByOrderByRateDateAsc()).thenReturn(List.of());
+        rateHistory = new RateHistory(historyRepository, frankfurterClient, Duration.ofDays(31));
+        rateHistory.load();
+    }
+
+    private static RateSnapshot euroSnapshot(String date, double usd) {
+        return FrankfurterClient.parseSnapshot("{\"date\":\"" + date + "\",\"rates\":{\"USD\":" + usd + ",\"RON\":5.0}}");
+    }
+
+    private static LocalDate date(String date) {
+        return LocalDate.parse(date);
+    }
+
+    @Test
+    void testRecord_doesNotWaitForAnotherRecordBeingPersisted() throws Exception {
+        CountDownLatch saving = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(historyRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            saving.countDown();
+            release.await();
+            return invocation.getArgument(0);
+        });
+        CompletableFuture<Void> first = CompletableFuture.runAsync(() ->
+                rateHistory.record(List.of(euroSnapshot("2025-08-29", 1.10)), date("2025-08-29")));
+        assertTrue(saving.await(5, TimeUnit.SECONDS));
+
+        // The first write is still in progress: a second record is in the index all the same
+        CompletableFuture<Void> second = CompletableFuture.runAsync(() ->
+                rateHistory.record(List.of(euroSnapshot("2025-09-01", 1.20)), date("2025-09-01")));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (rateHistory.find(date("2025-09-01")) == null && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(1.20, rateHistory.find(date("2025-09-01")).getRate(Currency.EUR, Currency.USD));
+        assertEquals(1.10, rateHistory.find(date("2025-08-29")).getRate(Currency.EUR, Currency.USD));
+
+        release.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS);
+        verify(historyRepository, times(2)).saveAll(anyList());
+    }
+
+    @Test
+    void testFind_usesLastPublicationWhileItIsInEffect() {
+        // Friday and Monday publications; the weekend is covered by Friday's rates
+        rateHistory.record(List.of(euroSnapshot("2025-08-29", 1.10), euroSnapshot("2025-09-01", 1.20)), date("2025-09-02"));
+
+        assertEquals(1.10, rateHistory.find(date("2025-08-29")).getRate(Currency.EUR, Currency.USD));
+        assertEquals(1.10, rateHistory.find(date("2025-08-31")).getRate(Currency.EUR, Currency.USD));
+        assertEquals(1.20, rateHistory.find(date("2025-09-01")).getRate(Currency.EUR, Currency.USD));
+        assertEquals(1.20, rateHistory.find(date("2025-09-02")).getRate(Currency.EUR, Currency.USD));
+        // Not covered: before the first publication, or after the coverage of the last one
+        assertNull(rateHistory.find(date("2025-08-28")));
+        assertNull(rateHistory.find(date("2025-09-03")));
+    }
+
+    @Test
+    void testRecord_persistsSnapshots() {
+        rateHistory.record(List.of(euroSnapshot("2025-08-29", 1.10)), date("2025-08-31"));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<HistoricalRateSnapshot>> saved = ArgumentCaptor.forClass(List.class);
+        verify(historyRepository).saveAll(saved.capture());
+        assertEquals(date("2025-08-29"), saved.getValue().get(0).getRateDate());
+        assertEquals(date("2025-08-31"), saved.getValue().get(0).getCoveredThrough());
+    }
+
+    @Test
+    void testRecord_unchangedSnapshotIsNotWrittenAgain() {
+        rateHistory.record(List.of(euroSnapshot("2025-08-29", 1.10)), date("2025-08-31"));
+        rateHistory.record(List.of(euroSnapshot("2025-08-29", 1.10)), date("2025-08-30"));
+        verify(historyRepository, times(1)).saveAll(anyList());
+    }
+
+    @Test
+    void testLoad_restoresPersistedHistory() {
+        byte[] rates = RateSnapshotFile.encode(euroSnapshot("2025-08-29", 1.10), Currency.EUR);
+        when(historyRepository.findAllByOrderByRateDateAsc())
+                .thenReturn(List.of(new HistoricalRateSnapshot(date("2025-08-29"), date("2025-08-31"), rates)));
+        RateHistory restored = new RateHistory(historyRepository, frankfurterClient, Duration.ofDays(31));
+        restored.load();
+
+        assertEquals(1.10, restored.find(date("2025-08-30")).getRate(Currency.EUR, Currency.USD));
+    }
+
+    @Test
+    void testGetSnapshotAsync_coveredDateDoesNotCallFrankfurter() {
+        rateHistory.record(List.of(euroSnapshot("2025-08-29", 1.10)), date("2025-08-31"));
+
+        assertEquals(1.10, rateHistory.getSnapshotAsync(date("2025-08-30")).join().getRate(Currency.EUR, Currency.USD));
+        verifyNoInteractions(frankfurterClient);
+    }
+
+    @Test
+    void testGetSnapshotAsync_missingDateFetchesWindowOnce() {
+        CompletableFuture<List<RateSnapshot>> pending = new CompletableFuture<>();
+        when(frankfurterClient.fetchTimeSeries(date("2025-01-04"), date("2025-02-04"))).thenReturn(pending);
+
+        CompletableFuture<RateSnapshot> first = rateHistory.getSnapshotAsync(date("2025-01-04"));
+        CompletableFuture<RateSnapshot> second = rateHistory.getSnapshotAsync(date("2025-01-04"));
+        pending.complete(List.of(euroSnapshot("2025-01-03", 1.03), euroSnapshot("2025-01-06", 1.04)));
+
+        assertEquals(1.03, first.join().getRate(Currency.EUR, Currency.USD));
+        assertSame(first.join(), second.join());
+        // The rest of the window is now served from memory
+        assertEquals(1.04, rateHistory.getSnapshotAsync(date("2025-01-20")).join().getRate(Currency.EUR, Currency.USD));
+        verify(frankfurterClient, times(1)).fetchTimeSeries(any(), any());
+    }
+
+    @Test
+    void testGetSnapshotAsync_fetchFailure() {
+        when(frankfurterClient.fetchTimeSeries(any(), any())).thenReturn(CompletableFuture.failedFuture(new IOException("down")));
+
+        CompletionException ex = assertThrows(CompletionException.class, () ->
+                rateHistory.getSnapshotAsync(date("2025-01-04")).join());
+        assertTrue(ex.getCause().getMessage().startsWith("No exchange rates available for 2025-01-04"));
+    }
+
+    @Test
+    void testGetSnapshotAsync_futureDateRejected() {
+        CompletionException ex = assertThrows(CompletionException.class, () ->
+                rateHistory.getSnapshotAsync(LocalDate.now().plusDays(1)).join());
+        assertInstanceOf(IllegalArgumentException.class, ex.getCause());
+    }
+
+    @Test
+    void testRecordLatest_coversThroughToday() {
+        RateSnapshot latest = euroSnapshot(LocalDate.now().minusDays(2).toString(), 1.10);
+        rateHistory.recordLatest(latest);
+        assertSame(latest, rateHistory.find(LocalDate.now()));
+    }
+}
@@ -0,0 +1,144 @@
+package com.demo.bank.conversion.repository;
+
+import com.demo.bank.account.entity.Currency;
+import com.demo.bank.conversion.entity.ExchangeRate;
+import com.demo.bank.conversion.entity.RateSnapshot;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class SnapshotFileRateSourceTest {
+    @TempDir
+    Path tempDir;
+
+    private static RateSnapshot euroSnapshot(String date, double usd, double ron) {
+        return FrankfurterClient.parseSnapshot("{\"base\":\"EUR\",\"date\":\"" + date + "\",\"rates\":{\"USD\":" + usd
+                + ",\"RON\":" + ron + "}}");
+    }
+
+    @Test
+    void testWriteAndRead_roundTrip() throws Exception {
+        Path file = tempDir.resolve("rates.bin");
+        RateSnapshotFile.write(file, euroSnapshot("2025-09-01", 1.25, 5.0), Currency.EUR);
+
+        RateSnapshot snapshot = RateSnapshotFile.read(file);
+        assertEquals(LocalDate.of(2025, 9, 1), snapshot.getDate());
+        assertEquals(1.25, snapshot.getRate(Currency.EUR, Currency.USD));
+        assertEquals(4.0, snapshot.getRate(Currency.USD, Currency.RON), 1e-12);
+        assertTrue(Double.isNaN(snapshot.getRate(Currency.EUR, Currency.XXX)));
+    }
+
+    @Test
+    void testRead_rejectsOtherFiles() throws Exception {
+        Path file = tempDir.resolve("rates.bin");
+        Files.writeString(file, "USD,EUR,0.85");
+        assertThrows(IllegalArgumentException.class, () -> RateSnapshotFile.read(file));
+    }
+
+    @Test
+    void testDecode_rejectsRateCountBeyondFile() {
+        byte[] encoded = RateSnapshotFile.encode(euroSnapshot("2025-09-01", 1.25, 5.0), Currency.EUR);
+        // The count follows the magic, version, base currency and date; 0xFFFF must not read as -1
+        encoded[4 + 2 + 3 + 8] = (byte) 0xFF;
+        encoded[4 + 2 + 3 + 8 + 1] = (byte) 0xFF;
+
+        Exception ex = assertThrows(IllegalArgumentException.class, () -> RateSnapshotFile.decode(ByteBuffer.wrap(encoded)));
+        assertEquals("Truncated rate snapshot file", ex.getMessage());
+    }
+
+    @Test
+    void testSource_reloadsChangedFile() throws Exception {
+        Path file = tempDir.resolve("rates.bin");
+        RateSnapshotFile.write(file, euroSnapshot("2025-09-01", 1.25, 5.0), Currency.EUR);
+        SnapshotFileRateSource source = new SnapshotFileRateSource(file, Duration.ZERO);
+        assertEquals(1.25, source.getSnapshot().getRate(Currency.EUR, Currency.USD));
+
+        RateSnapshotFile.write(file, euroSnapshot("2025-09-02", 1.5, 5.0), Currency.EUR);
+        Files.setLastModifiedTime(file, FileTime.from(Instant.now().plusSeconds(60)));
+        source.reloadIfChanged();
+
+        assertEquals(LocalDate.of(2025, 9, 2), source.getSnapshot().getDate());
+        assertEquals(1.5, source.getSnapshot().getRate(Currency.EUR, Currency.USD));
+    }
+
+    @Test
+    void testSource_keepsPreviousSnapshotWhenReloadFails() throws Exception {
+        Path file = tempDir.resolve("rates.bin");
+        RateSnapshotFile.write(file, euroSnapshot("2025-09-01", 1.25, 5.0), Currency.EUR);
+        SnapshotFileRateSource source = new SnapshotFileRateSource(file, Duration.ZERO);
+
+        Files.writeString(file, "garbage");
+        Files.setLastModifiedTime(file, FileTime.from(Instant.now().plusSeconds(60)));
+        source.reloadIfChanged();
+
+        assertEquals(1.25, source.getSnapshot().getRate(Currency.EUR, Currency.USD));
+    }
+
+    @Test
+    void testSource_missingFileFailsAtStartup() {
+        assertThrows(IllegalStateException.class, () ->
+                new SnapshotFileRateSource(tempDir.resolve("missing.bin"), Duration.ZERO));
+    }
+
+    @Test
+    void testRepository_fileModeNeverCallsFrankfurter() throws Exception {
+        Path file = tempDir.resolve("rates.bin");
+        RateSnapshotFile.write(file, euroSnapshot("2025-09-01", 1.25, 5.0), Currency.EUR);
+        FrankfurterClient frankfurterClient = mock(FrankfurterClient.class);
+        CurrencyConversionRepository repository = new CurrencyConversionRepository(frankfurterClient,
+                Optional.of(new SnapshotFileRateSource(file, Duration.ZERO)), mock(RateHistory.class), Duration.ofHours(1), Duration.ZERO,
+                new SimpleMeterRegistry());
+
+        assertEquals(0.8, repository.getExchangeRate(Currency.USD, Currency.EUR).getRate(), 1e-12);
+        assertEquals(5.0, repository.getExchangeRateAsync(Currency.EUR, Currency.RON).join().getRate());
+        verifyNoInteractions(frankfurterClient);
+    }
+
+    @Test
+    void testRepository_fileModeServesDatesMissingFromHistoryWithoutFrankfurter() throws Exception {
+        Path file = tempDir.resolve("rates.bin");
+        RateSnapshotFile.write(file, euroSnapshot("2025-09-01", 1.25, 5.0), Currency.EUR);
+        FrankfurterClient frankfurterClient = mock(FrankfurterClient.class);
+        RateHistory rateHistory = mock(RateHistory.class);
+        CurrencyConversionRepository repository = new CurrencyConversionRepository(frankfurterClient,
+                Optional.of(new SnapshotFileRateSource(file, Duration.ZERO)), rateHistory, Duration.ofHours(1), Duration.ZERO,
+                new SimpleMeterRegistry());
+
+        ExchangeRate rate = repository.getExchangeRate(Currency.EUR, Currency.RON, LocalDate.of(2025, 9, 3));
+        assertEquals(5.0, rate.getRate());
+        assertEquals(LocalDate.of(2025, 9, 1), rate.getDate());
+        // Before the file was published: no rates, and no fetch to find them
+        Exception ex = assertThrows(RuntimeException.class, () ->
+                repository.getExchangeRate(Currency.EUR, Currency.RON, LocalDate.of(2025, 8, 1)));
+        assertTrue(ex.getMessage().contains("2025-08-01"));
+        verify(rateHistory, never()).getSnapshotAsync(any());
+        verifyNoInteractions(frankfurterClient);
+    }
+
+    @Test
+    void testRepository_dumpSnapshotWritesLiveRates() throws Exception {
+        FrankfurterClient frankfurterClient = mock(FrankfurterClient.class);
+        when(frankfurterClient.fetchLatest())
+                .thenReturn(CompletableFuture.completedFuture(euroSnapshot("2025-09-01", 1.25, 5.0)));
+        CurrencyConversionRepository repository = new CurrencyConversionRepository(frankfurterClient,
+                Optional.empty(), mock(RateHistory.class), Duration.ofHours(1), Duration.ZERO, new SimpleMeterRegistry());
+
+        Path file = tempDir.resolve("dump.bin");
+        repository.dumpSnapshot(file);
+
+        assertEquals(5.0, RateSnapshotFile.read(file).getRate(Currency.EUR, Currency.RON));
+    }
+}
@@ -0,0 +1,96 @@
+package com.demo.bank.conversion.service;
+
+import com.demo.bank.account.entity.Currency;
+import com.demo.bank.conversion.entity.RateQuote;
+import com.demo.bank.conversion.entity.RateSnapshot;
+import com.demo.bank.conversion.repository.CurrencyConversionRepository;
+import com.demo.bank.conversion.repository.FrankfurterClient;
+import com.demo.bank.conversion.repository.RateHistory;
+import com.demo.bank.utils.JmhBenchmarks;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.*;
+
+/**
+ * JMH throughput of the conversion path once the rates are cached, which is what nearly every cross-currency
+ * deposit, withdrawal and transfer goes through: the upstream client is stubbed and only answers the first fetch,
+ * so the benchmark measures the cache lookup, the fixed-point conversion and the quote. All threads share one
+ * service, like the request threads of the application. Not part of the regular build:
+ * <pre>
+ * mvn test -Pbenchmark -Dtest=CurrencyConversionServiceBenchmark [-Dbenchmark.threads=1,4,16]
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CurrencyConversionServiceBenchmark {
+    private CurrencyConversionService currencyConversionService;
+    private RateSnapshot rates;
+
+    @Setup
+    public void setUp() {
+        double[] euroRates = new double[Currency.values().length];
+        Arrays.fill(euroRates, Double.NaN);
+        euroRates[Currency.EUR.ordinal()] = 1.0;
+        euroRates[Currency.USD.ordinal()] = 1.1708;
+        euroRates[Currency.RON.ordinal()] = 5.0765;
+        rates = RateSnapshot.fromBaseRates(LocalDate.of(2025, 9, 1), euroRates);
+
+        FrankfurterClient frankfurterClient = mock(FrankfurterClient.class);
+        when(frankfurterClient.fetchLatest()).thenReturn(CompletableFuture.completedFuture(rates));
+        CurrencyConversionRepository repository = new CurrencyConversionRepository(frankfurterClient, Optional.empty(),
+                mock(RateHistory.class), Duration.ofHours(1), Duration.ZERO, new SimpleMeterRegistry());
+        currencyConversionService = new CurrencyConversionService(repository);
+        // Warms the cache: from here on no lookup reaches the stub
+        currencyConversionService.quote(Currency.USD, Currency.EUR, 1_00);
+    }
+
+    @Benchmark
+    public RateQuote quote() {
+        return currencyConversionService.quote(Currency.USD, Currency.RON, 125_50);
+    }
+
+    @Benchmark
+    public RateQuote quoteAsync() {
+        return currencyConversionService.quoteAsync(Currency.USD, Currency.RON, 125_50).join();
+    }
+
+    // The batch path: every item is priced against a snapshot the caller already holds
+    @Benchmark
+    public RateQuote quoteFromSnapshot() {
+        return currencyConversionService.quote(rates, Currency.USD, Currency.RON, 125_50);
+    }
+
+    @Benchmark
+    public RateQuote quoteSameCurrency() {
+        return currencyConversionService.quote(Currency.EUR, Currency.EUR, 125_50);
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void conversionPath() throws Exception {
+        JmhBenchmarks.run(CurrencyConversionServiceBenchmark.class);
+    }
+}
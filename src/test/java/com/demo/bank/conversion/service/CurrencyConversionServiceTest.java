@@ -1,5 +1,9 @@
 package com.demo.bank.conversion.service;
 
+import com.demo.bank.conversion.entity.ExchangeRate;
+import com.demo.bank.conversion.entity.RateQuote;
+import com.demo.bank.conversion.entity.RateSnapshot;
+import com.demo.bank.conversion.entity.RateSource;
 import com.demo.bank.conversion.repository.CurrencyConversionRepository;
 import com.demo.bank.account.entity.Currency;
 import org.junit.jupiter.api.BeforeEach;
@@ -8,10 +12,15 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
+
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
 class CurrencyConversionServiceTest {
+    private static final LocalDate RATE_DATE = LocalDate.of(2025, 9, 1);
+
     @Mock
     private CurrencyConversionRepository currencyConversionRepository;
     @InjectMocks
@@ -22,45 +31,128 @@ class CurrencyConversionServiceTest {
         MockitoAnnotations.openMocks(this);
     }
 
+    private static ExchangeRate live(double rate) {
+        return new ExchangeRate(rate, RATE_DATE, RateSource.LIVE);
+    }
+
     @Test
-    void testConvert_success() {
-        when(currencyConversionRepository.getConversionRate(Currency.USD, Currency.EUR)).thenReturn(0.9);
-        double result = currencyConversionService.convert(Currency.USD, Currency.EUR, 100.0);
-        assertEquals(90.0, result);
-        verify(currencyConversionRepository).getConversionRate(Currency.USD, Currency.EUR);
+    void testQuote_success() {
+        when(currencyConversionRepository.getExchangeRate(Currency.USD, Currency.EUR)).thenReturn(live(0.9));
+        RateQuote quote = currencyConversionService.quote(Currency.USD, Currency.EUR, 100_00);
+        assertEquals(90_00, quote.getConvertedAmount());
+        assertEquals(90_000_000L, quote.getRate());
+        assertEquals(100_00, quote.getAmount());
+        assertEquals(RATE_DATE, quote.getRateDate());
+        assertEquals(RateSource.LIVE, quote.getSource());
+        verify(currencyConversionRepository).getExchangeRate(Currency.USD, Currency.EUR);
     }
 
     @Test
-    void testConvert_sameCurrency() {
-        when(currencyConversionRepository.getConversionRate(Currency.USD, Currency.USD)).thenReturn(1.0);
-        double result = currencyConversionService.convert(Currency.USD, Currency.USD, 50.0);
-        assertEquals(50.0, result);
-        verify(currencyConversionRepository).getConversionRate(Currency.USD, Currency.USD);
+    void testQuote_sameCurrency() {
+        when(currencyConversionRepository.getExchangeRate(Currency.USD, Currency.USD))
+                .thenReturn(new ExchangeRate(1.0, null, RateSource.IDENTITY));
+        RateQuote quote = currencyConversionService.quote(Currency.USD, Currency.USD, 50_00);
+        assertEquals(50_00, quote.getConvertedAmount());
+        assertEquals(RateSource.IDENTITY, quote.getSource());
+        verify(currencyConversionRepository).getExchangeRate(Currency.USD, Currency.USD);
     }
 
     @Test
-    void testConvert_zeroAmount() {
-        when(currencyConversionRepository.getConversionRate(Currency.USD, Currency.EUR)).thenReturn(0.9);
-        double result = currencyConversionService.convert(Currency.USD, Currency.EUR, 0.0);
-        assertEquals(0.0, result);
-        verify(currencyConversionRepository).getConversionRate(Currency.USD, Currency.EUR);
+    void testQuote_zeroAmountKeepsRate() {
+        when(currencyConversionRepository.getExchangeRate(Currency.USD, Currency.EUR)).thenReturn(live(0.9));
+        RateQuote quote = currencyConversionService.quote(Currency.USD, Currency.EUR, 0);
+        assertEquals(0, quote.getConvertedAmount());
+        // The rate is the one looked up, not worked out from the amounts
+        assertEquals(90_000_000L, quote.getRate());
+        verify(currencyConversionRepository).getExchangeRate(Currency.USD, Currency.EUR);
     }
 
     @Test
-    void testConvert_negativeAmount() {
-        when(currencyConversionRepository.getConversionRate(Currency.USD, Currency.EUR)).thenReturn(0.9);
-        double result = currencyConversionService.convert(Currency.USD, Currency.EUR, -100.0);
-        assertEquals(-90.0, result);
-        verify(currencyConversionRepository).getConversionRate(Currency.USD, Currency.EUR);
+    void testQuote_negativeAmount() {
+        when(currencyConversionRepository.getExchangeRate(Currency.USD, Currency.EUR)).thenReturn(live(0.9));
+        RateQuote quote = currencyConversionService.quote(Currency.USD, Currency.EUR, -100_00);
+        assertEquals(-90_00, quote.getConvertedAmount());
+        verify(currencyConversionRepository).getExchangeRate(Currency.USD, Currency.EUR);
     }
 
     @Test
-    void testConvert_invalidCurrency_throws() {
-        when(currencyConversionRepository.getConversionRate(Currency.XXX, Currency.YYY)).thenThrow(new RuntimeException("Invalid currency code"));
+    void testQuote_invalidCurrency_throws() {
+        when(currencyConversionRepository.getExchangeRate(Currency.XXX, Currency.YYY)).thenThrow(new RuntimeException("Invalid currency code"));
         RuntimeException ex = assertThrows(RuntimeException.class, () ->
-            currencyConversionService.convert(Currency.XXX, Currency.YYY, 100.0)
+            currencyConversionService.quote(Currency.XXX, Currency.YYY, 100_00)
         );
         assertEquals("Invalid currency code", ex.getMessage());
-        verify(currencyConversionRepository).getConversionRate(Currency.XXX, Currency.YYY);
+        verify(currencyConversionRepository).getExchangeRate(Currency.XXX, Currency.YYY);
+    }
+
+    @Test
+    void testQuote_exactInMinorUnits() {
+        when(currencyConversionRepository.getExchangeRate(Currency.USD, Currency.EUR)).thenReturn(live(1.1));
+        long sum = 0;
+        for (int i = 0; i < 3; i++) {
+            sum += currencyConversionService.quote(Currency.USD, Currency.EUR, 1_00).getConvertedAmount();
+        }
+        // 1.1 + 1.1 + 1.1 is 3.3000000000000003 in doubles
+        assertEquals(3_30, sum);
+
+        // Half a minor unit goes to the even neighbour
+        when(currencyConversionRepository.getExchangeRate(Currency.USD, Currency.EUR)).thenReturn(live(0.5));
+        assertEquals(0, currencyConversionService.quote(Currency.USD, Currency.EUR, 1).getConvertedAmount());
+        assertEquals(2, currencyConversionService.quote(Currency.USD, Currency.EUR, 3).getConvertedAmount());
+    }
+
+    @Test
+    void testQuote_fallbackRateIsReported() {
+        when(currencyConversionRepository.getExchangeRate(Currency.USD, Currency.EUR))
+                .thenReturn(new ExchangeRate(0.85, null, RateSource.FALLBACK));
+        RateQuote quote = currencyConversionService.quote(Currency.USD, Currency.EUR, 100_00);
+        assertEquals(85_00, quote.getConvertedAmount());
+        assertEquals(RateSource.FALLBACK, quote.getSource());
+        assertNull(quote.getRateDate());
+    }
+
+    @Test
+    void testQuoteAsync_success() {
+        CompletableFuture<ExchangeRate> rate = new CompletableFuture<>();
+        when(currencyConversionRepository.getExchangeRateAsync(Currency.USD, Currency.EUR)).thenReturn(rate);
+        CompletableFuture<RateQuote> result = currencyConversionService.quoteAsync(Currency.USD, Currency.EUR, 100_00);
+        assertFalse(result.isDone());
+        rate.complete(live(0.9));
+        assertEquals(90_00, result.join().getConvertedAmount());
+        assertEquals(90_000_000L, result.join().getRate());
+        assertEquals(RateSource.LIVE, result.join().getSource());
+    }
+
+    @Test
+    void testQuoteAsync_failurePropagates() {
+        when(currencyConversionRepository.getExchangeRateAsync(Currency.XXX, Currency.YYY))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("Invalid currency code")));
+        CompletableFuture<RateQuote> result = currencyConversionService.quoteAsync(Currency.XXX, Currency.YYY, 100_00);
+        assertTrue(result.isCompletedExceptionally());
+    }
+
+    @Test
+    void testQuote_asOfDate() {
+        LocalDate date = LocalDate.of(2024, 3, 15);
+        when(currencyConversionRepository.getExchangeRate(Currency.USD, Currency.RON, date))
+                .thenReturn(new ExchangeRate(4.5, LocalDate.of(2024, 3, 14), RateSource.CACHED));
+        RateQuote quote = currencyConversionService.quote(Currency.USD, Currency.RON, 10_00, date);
+        assertEquals(45_00, quote.getConvertedAmount());
+        // A date without a publication uses the last one before it
+        assertEquals(LocalDate.of(2024, 3, 14), quote.getRateDate());
+    }
+
+    @Test
+    void testQuote_withGivenRates() {
+        RateSnapshot rates = mock(RateSnapshot.class);
+        when(currencyConversionRepository.getExchangeRate(rates, Currency.USD, Currency.RON))
+                .thenReturn(new ExchangeRate(4.0, RATE_DATE, RateSource.CACHED));
+
+        RateQuote quote = currencyConversionService.quote(rates, Currency.USD, Currency.RON, 25_00);
+
+        assertEquals(400_000_000L, quote.getRate());
+        assertEquals(100_00, quote.getConvertedAmount());
+        assertEquals(RateSource.CACHED, quote.getSource());
+        verify(currencyConversionRepository, never()).getSnapshot();
     }
 }
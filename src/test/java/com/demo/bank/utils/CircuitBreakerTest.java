@@ -0,0 +1,110 @@
+package com.demo.bank.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CircuitBreakerTest {
+    private final AtomicLong now = new AtomicLong();
+    private final AtomicInteger calls = new AtomicInteger();
+
+    private CircuitBreaker breaker(int failureThreshold) {
+        return new CircuitBreaker("test", failureThreshold, Duration.ofMillis(100), Duration.ofSeconds(10), now::get);
+    }
+
+    private CompletableFuture<String> fail(CircuitBreaker breaker) {
+        return breaker.execute(() -> {
+            calls.incrementAndGet();
+            return CompletableFuture.failedFuture(new IOException("down"));
+        });
+    }
+
+    private CompletableFuture<String> succeed(CircuitBreaker breaker) {
+        return breaker.execute(() -> {
+            calls.incrementAndGet();
+            return CompletableFuture.completedFuture("ok");
+        });
+    }
+
+    @Test
+    void testOpensAfterConsecutiveFailures() {
+        CircuitBreaker breaker = breaker(3);
+        fail(breaker);
+        fail(breaker);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        fail(breaker);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        CompletableFuture<String> rejected = succeed(breaker);
+        assertEquals(3, calls.get());
+        CompletionException ex = assertThrows(CompletionException.class, rejected::join);
+        assertInstanceOf(CircuitBreaker.CallNotPermittedException.class, ex.getCause());
+    }
+
+    @Test
+    void testSuccessResetsFailureCount() {
+        CircuitBreaker breaker = breaker(2);
+        fail(breaker);
+        succeed(breaker);
+        fail(breaker);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void testSlowCallCountsAsFailure() {
+        CircuitBreaker breaker = breaker(1);
+        CompletableFuture<String> slow = new CompletableFuture<>();
+        CompletableFuture<String> result = breaker.execute(() -> slow);
+        now.addAndGet(Duration.ofMillis(500).toNanos());
+        slow.complete("late");
+
+        assertEquals("late", result.join());
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    void testHalfOpenProbeClosesOnSuccess() {
+        CircuitBreaker breaker = breaker(1);
+        fail(breaker);
+        now.addAndGet(Duration.ofSeconds(10).toNanos());
+
+        CompletableFuture<String> probe = new CompletableFuture<>();
+        CompletableFuture<String> result = breaker.execute(() -> probe);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        // Only one probe at a time
+        assertTrue(succeed(breaker).isCompletedExceptionally());
+
+        probe.complete("ok");
+        assertEquals("ok", result.join());
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void testHalfOpenProbeReopensOnFailure() {
+        CircuitBreaker breaker = breaker(1);
+        fail(breaker);
+        now.addAndGet(Duration.ofSeconds(10).toNanos());
+
+        fail(breaker);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertTrue(succeed(breaker).isCompletedExceptionally());
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void testSynchronousExceptionCountsAsFailure() {
+        CircuitBreaker breaker = breaker(1);
+        CompletableFuture<String> result = breaker.execute(() -> {
+            throw new IllegalStateException("boom");
+        });
+        assertTrue(result.isCompletedExceptionally());
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+}
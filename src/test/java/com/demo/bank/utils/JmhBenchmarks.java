@@ -0,0 +1,75 @@
+package com.demo.bank.utils;
+
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Runs the JMH benchmarks of a class once per thread count, so every result shows how a code path scales and not
+ * only how fast it is on one thread. System properties:
+ * <ul>
+ * <li>{@code benchmark.threads}: comma-separated thread counts, {@code 1,4,16} by default</li>
+ * <li>{@code benchmark.param.<name>}: comma-separated values of a {@code @Param}, instead of those in its
+ * annotation</li>
+ * <li>{@code benchmark.result-dir}: if set, the results of every run are also written there as JMH JSON, one file
+ * per class and thread count, to be kept as a baseline and compared with the results of a later change</li>
+ * </ul>
+ */
+public final class JmhBenchmarks {
+    private static final String PARAM_PREFIX = "benchmark.param.";
+
+    private JmhBenchmarks() {
+    }
+
+    public static List<RunResult> run(Class<?> benchmark) throws Exception {
+        String resultDir = System.getProperty("benchmark.result-dir", "");
+        List<RunResult> results = new ArrayList<>();
+        for (int threads : threadCounts()) {
+            ChainedOptionsBuilder options = new OptionsBuilder()
+                    .include(benchmark.getName() + "\\.")
+                    .threads(threads);
+            for (String name : System.getProperties().stringPropertyNames()) {
+                if (name.startsWith(PARAM_PREFIX)) {
+                    options.param(name.substring(PARAM_PREFIX.length()), System.getProperty(name).split(","));
+                }
+            }
+            if (!resultDir.isBlank()) {
+                Path dir = Files.createDirectories(Path.of(resultDir));
+                options.resultFormat(ResultFormatType.JSON)
+                        .result(dir.resolve(benchmark.getSimpleName() + "-" + threads + "t.json").toString());
+            }
+            results.addAll(new Runner(options.build()).run());
+        }
+        print(results);
+        return results;
+    }
+
+    private static int[] threadCounts() {
+        return Arrays.stream(System.getProperty("benchmark.threads", "1,4,16").split(","))
+                .mapToInt(value -> Integer.parseInt(value.trim()))
+                .toArray();
+    }
+
+    // JMH prints a summary per run; this one lines the thread counts up next to each other
+    private static void print(List<RunResult> results) {
+        System.out.printf("%n%-50s %-32s %8s %16s %12s  %s%n", "benchmark", "params", "threads", "score", "error", "unit");
+        for (RunResult result : results) {
+            String name = result.getParams().getBenchmark();
+            String params = result.getParams().getParamsKeys().stream()
+                    .map(key -> key + "=" + result.getParams().getParam(key))
+                    .collect(Collectors.joining(","));
+            System.out.printf("%-50s %-32s %8d %16.3f %12.3f  %s%n", name.substring(name.lastIndexOf('.', name.lastIndexOf('.') - 1) + 1),
+                    params, result.getParams().getThreads(), result.getPrimaryResult().getScore(),
+                    result.getPrimaryResult().getScoreError(), result.getPrimaryResult().getScoreUnit());
+        }
+    }
+}
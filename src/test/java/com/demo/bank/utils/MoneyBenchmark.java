@@ -0,0 +1,89 @@
+package com.demo.bank.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH comparison of the deposit path in three money representations: parse the amount from its text, convert it
+ * at an exchange rate and add it to the balance. The GC profiler shows the bytes allocated per operation next to
+ * the time. Not part of the regular build:
+ * <pre>
+ * mvn test -Dtest=MoneyBenchmark -Dbenchmark=true
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoneyBenchmark {
+    private static final String[] AMOUNTS = {"12.50", "0.99", "1043.07", "7", "250.10", "3.33", "19999.99", "0.01"};
+    private static final double RATE = 4.9731;
+
+    private int next;
+    private double doubleBalance;
+    private BigDecimal bigDecimalBalance;
+    private BigDecimal bigDecimalRate;
+    private long fixedBalance;
+    private long fixedRate;
+
+    @Setup
+    public void setUp() {
+        doubleBalance = 0;
+        bigDecimalBalance = BigDecimal.ZERO.setScale(2);
+        bigDecimalRate = BigDecimal.valueOf(RATE);
+        fixedBalance = 0;
+        fixedRate = Money.toFixedRate(RATE);
+    }
+
+    private String nextAmount() {
+        next = (next + 1) & (AMOUNTS.length - 1);
+        return AMOUNTS[next];
+    }
+
+    @Benchmark
+    public double depositDouble() {
+        doubleBalance += Double.parseDouble(nextAmount()) * RATE;
+        return doubleBalance;
+    }
+
+    @Benchmark
+    public BigDecimal depositBigDecimal() {
+        BigDecimal converted = new BigDecimal(nextAmount()).multiply(bigDecimalRate).setScale(2, RoundingMode.HALF_EVEN);
+        bigDecimalBalance = bigDecimalBalance.add(converted);
+        return bigDecimalBalance;
+    }
+
+    @Benchmark
+    public long depositFixedPoint() {
+        fixedBalance = Math.addExact(fixedBalance, Money.convert(Money.parse(nextAmount()), fixedRate));
+        return fixedBalance;
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void compareMoneyRepresentations() throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(MoneyBenchmark.class.getName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,83 @@
+package com.demo.bank.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MoneyTest {
+    @Test
+    void testParse() {
+        assertEquals(1250, Money.parse("12.5"));
+        assertEquals(1250, Money.parse("12,50"));
+        assertEquals(1200, Money.parse("12"));
+        assertEquals(1200, Money.parse("12."));
+        assertEquals(5, Money.parse(".05"));
+        assertEquals(-1001, Money.parse("-10.01"));
+        assertEquals(1, Money.parse("+0.01"));
+        assertEquals(9_999_999_999_999_999_99L, Money.parse("9999999999999999.99"));
+    }
+
+    @Test
+    void testParse_rejectsInvalidText() {
+        for (String text : new String[]{"", "-", ".", "abc", "1.2.3", "1e5", " 1", "1.005", "12345678901234567"}) {
+            assertThrows(IllegalArgumentException.class, () -> Money.parse(text), text);
+        }
+        assertThrows(IllegalArgumentException.class, () -> Money.parse(null));
+        assertEquals("Amount has more than 2 decimal places: 1.005",
+                assertThrows(IllegalArgumentException.class, () -> Money.parse("1.005")).getMessage());
+    }
+
+    @Test
+    void testFormat() {
+        assertEquals("12.50", Money.format(1250));
+        assertEquals("0.05", Money.format(5));
+        assertEquals("0.00", Money.format(0));
+        assertEquals("-10.01", Money.format(-1001));
+        assertEquals("-92233720368547758.08", Money.format(Long.MIN_VALUE));
+        assertEquals("4.9731", Money.formatRate(497_310_000L));
+        assertEquals("1.0", Money.formatRate(100_000_000L));
+        assertEquals("0.00000001", Money.formatRate(1));
+    }
+
+    @Test
+    void testToFixedRate() {
+        assertEquals(497_310_000L, Money.toFixedRate(4.9731));
+        assertEquals(20_108_561L, Money.toFixedRate(0.201085612));
+        assertThrows(IllegalArgumentException.class, () -> Money.toFixedRate(Double.NaN));
+        assertThrows(IllegalArgumentException.class, () -> Money.toFixedRate(0.0));
+        assertThrows(IllegalArgumentException.class, () -> Money.toFixedRate(-1.0));
+        assertThrows(IllegalArgumentException.class, () -> Money.toFixedRate(Double.POSITIVE_INFINITY));
+    }
+
+    @Test
+    void testConvert_roundsHalfEven() {
+        assertEquals(497_31, Money.convert(100_00, 497_310_000L));
+        // 0.05 * 0.5 = 0.025 and 0.15 * 0.5 = 0.075: halves go to the even neighbour
+        assertEquals(2, Money.convert(5, 50_000_000L));
+        assertEquals(8, Money.convert(15, 50_000_000L));
+        assertEquals(-2, Money.convert(-5, 50_000_000L));
+        assertEquals(-8, Money.convert(-15, 50_000_000L));
+    }
+
+    @Test
+    void testConvert_matchesBigDecimal() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < 10_000; i++) {
+            long amount = random.nextLong(-1_000_000_000_000_00L, 1_000_000_000_000_00L);
+            long rate = random.nextLong(1, 100 * Money.RATE_UNIT);
+            long expected = BigDecimal.valueOf(amount).multiply(BigDecimal.valueOf(rate))
+                    .divide(BigDecimal.valueOf(Money.RATE_UNIT), 0, RoundingMode.HALF_EVEN)
+                    .longValueExact();
+            assertEquals(expected, Money.convert(amount, rate), amount + " * " + rate);
+        }
+    }
+
+    @Test
+    void testConvert_overflowThrows() {
+        assertThrows(ArithmeticException.class, () -> Money.convert(Long.MAX_VALUE, 2 * Money.RATE_UNIT));
+    }
+}
@@ -0,0 +1,93 @@
+package com.demo.bank.utils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OptimisticRetryTest {
+    private final AtomicInteger calls = new AtomicInteger();
+
+    private String conflictTimes(int conflicts) {
+        if (calls.incrementAndGet() <= conflicts) {
+            throw new OptimisticLockingFailureException("stale");
+        }
+        return "ok";
+    }
+
+    @Test
+    void testFirstAttemptSucceeds() {
+        OptimisticRetry retry = new OptimisticRetry("test", 3, Duration.ZERO, Duration.ZERO);
+
+        assertEquals("ok", retry.execute(() -> conflictTimes(0)));
+
+        OptimisticRetryStats stats = retry.getStats();
+        assertEquals(1, stats.getOperations());
+        assertEquals(1, stats.getAttempts());
+        assertEquals(0, stats.getConflicts());
+        assertEquals(0.0, stats.getConflictRate());
+    }
+
+    @Test
+    void testRetriesConflicts() {
+        OptimisticRetry retry = new OptimisticRetry("test", 3, Duration.ofNanos(1), Duration.ofMillis(1));
+
+        assertEquals("ok", retry.execute(() -> conflictTimes(2)));
+
+        OptimisticRetryStats stats = retry.getStats();
+        assertEquals(3, calls.get());
+        assertEquals(3, stats.getAttempts());
+        assertEquals(2, stats.getConflicts());
+        assertEquals(2, stats.getRetries());
+        assertEquals(0, stats.getGiveUps());
+        assertEquals(2.0 / 3, stats.getConflictRate(), 1e-12);
+    }
+
+    @Test
+    void testGivesUpAfterMaxAttempts() {
+        OptimisticRetry retry = new OptimisticRetry("test", 3, Duration.ZERO, Duration.ZERO);
+
+        OptimisticLockingFailureException ex = assertThrows(OptimisticLockingFailureException.class, () ->
+                retry.execute(() -> conflictTimes(10)));
+
+        assertEquals("Concurrent update conflict, gave up after 3 attempts", ex.getMessage());
+        assertEquals(3, calls.get());
+        assertEquals(1, retry.getStats().getGiveUps());
+        assertEquals(2, retry.getStats().getRetries());
+    }
+
+    @Test
+    void testCountersBoundToMeterRegistry() {
+        OptimisticRetry retry = new OptimisticRetry("test", 3, Duration.ZERO, Duration.ZERO);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        retry.bindTo(registry);
+
+        assertThrows(OptimisticLockingFailureException.class, () -> retry.execute(() -> conflictTimes(10)));
+
+        assertEquals(3, registry.get("bank.optimistic.conflicts").tag("name", "test").functionCounter().count());
+        assertEquals(2, registry.get("bank.optimistic.retries").tag("name", "test").functionCounter().count());
+        assertEquals(1, registry.get("bank.optimistic.give-ups").tag("name", "test").functionCounter().count());
+    }
+
+    @Test
+    void testOtherFailuresAreNotRetried() {
+        OptimisticRetry retry = new OptimisticRetry("test", 3, Duration.ZERO, Duration.ZERO);
+
+        assertThrows(IllegalStateException.class, () -> retry.execute(() -> {
+            calls.incrementAndGet();
+            throw new IllegalStateException("boom");
+        }));
+
+        assertEquals(1, calls.get());
+        assertEquals(0, retry.getStats().getConflicts());
+    }
+
+    @Test
+    void testRejectsInvalidMaxAttempts() {
+        assertThrows(IllegalArgumentException.class, () -> new OptimisticRetry("test", 0, Duration.ZERO, Duration.ZERO));
+    }
+}
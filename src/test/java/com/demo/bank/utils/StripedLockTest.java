@@ -0,0 +1,148 @@
+package com.demo.bank.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StripedLockTest {
+    @Test
+    void testStripeCountRoundedUpToPowerOfTwo() {
+        assertEquals(1, new StripedLock(1).getStripes());
+        assertEquals(2, new StripedLock(2).getStripes());
+        assertEquals(64, new StripedLock(50).getStripes());
+        assertEquals(64, new StripedLock(64).getStripes());
+        assertThrows(IllegalArgumentException.class, () -> new StripedLock(0));
+    }
+
+    @Test
+    void testSequentialKeysSpreadOverStripes() {
+        StripedLock lock = new StripedLock(16);
+        boolean[] used = new boolean[16];
+        for (long key = 1; key <= 64; key++) {
+            used[lock.stripe(key)] = true;
+        }
+        for (boolean stripeUsed : used) {
+            assertTrue(stripeUsed);
+        }
+    }
+
+    @Test
+    void testSameKeyIsSerialized() throws Exception {
+        StripedLock lock = new StripedLock(16);
+        int[] counter = new int[1];
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < 10_000; j++) {
+                        // Unsynchronized read-modify-write: only correct if the lock serializes it
+                        lock.withLock(42L, () -> counter[0]++);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(160_000, counter[0]);
+    }
+
+    @Test
+    void testKeySetsInAnyOrderAreSerializedWithoutDeadlock() throws Exception {
+        StripedLock lock = new StripedLock(16);
+        int[] counter = new int[1];
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                List<Long> keys = i % 2 == 0 ? List.of(1L, 2L, 3L, 2L) : List.of(3L, 2L, 1L);
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < 10_000; j++) {
+                        lock.withLocks(keys, () -> counter[0]++);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(80_000, counter[0]);
+    }
+
+    @Test
+    void testDifferentStripesDoNotBlockEachOther() throws Exception {
+        StripedLock lock = new StripedLock(16);
+        long otherKey = 2;
+        while (lock.stripe(otherKey) == lock.stripe(1)) {
+            otherKey++;
+        }
+        long key = otherKey;
+        CountDownLatch holding = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> holder = executor.submit(() -> lock.withLock(1L, () -> {
+                holding.countDown();
+                try {
+                    return release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            }));
+            assertTrue(holding.await(5, TimeUnit.SECONDS));
+
+            // Completes while key 1 is still locked
+            assertEquals("done", lock.withLock(key, () -> "done"));
+            release.countDown();
+            holder.get();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testPairsInOppositeOrderDoNotDeadlock() throws Exception {
+        StripedLock lock = new StripedLock(64);
+        int[] counter = new int[1];
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                boolean reversed = i % 2 == 1;
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < 10_000; j++) {
+                        long a = j % 5;
+                        long b = 5 + j % 7;
+                        // Every pair shares key 0 with some other pair, so both locks are really needed
+                        lock.withLocks(reversed ? b : 0, reversed ? 0 : a, () -> counter[0]++);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(80_000, counter[0]);
+    }
+
+    @Test
+    void testPairOnSameStripeLocksOnce() {
+        StripedLock lock = new StripedLock(1);
+        assertEquals("done", lock.withLocks(1L, 2L, () -> "done"));
+    }
+}